@@ -103,6 +103,38 @@ public class BrooklynFeatureEnablement {
     public static final String FEATURE_SSH_ASYNC_EXEC = FEATURE_PROPERTY_PREFIX+".ssh.asyncExec";
 
     public static final String FEATURE_VALIDATE_LOCATION_SSH_KEYS = "brooklyn.validate.locationSshKeys";
+
+    /**
+     * When an entity has changed only by setting attributes since it was last persisted, whether to persist it
+     * by patching those attributes into its previous memento, rather than generating a new memento from all
+     * its config, attributes, locations, children, etc (and re-persisting its locations and adjuncts).
+     * This relies on all other changes to the entity being notified to the change listener.
+     * <p>
+     * Off by default, as it costs memory: the change listener keeps the memento last persisted for every entity,
+     * i.e. a copy of all its persisted config and attribute values, which can roughly double the memory
+     * used by entities with large values.
+     * 
+     * @since 0.9.0
+     */
+    public static final String FEATURE_PARTIAL_ENTITY_MEMENTOS = FEATURE_PROPERTY_PREFIX+".partialEntityMementos";
+
+    /**
+     * Whether entities store their attribute values in an array indexed by slots interned per entity type,
+     * which can be read without locking, rather than in a synchronized map keyed by sensor name parts.
+     * Not used with {@link #FEATURE_USE_BROOKLYN_LIVE_OBJECTS_DATAGRID_STORAGE}.
+     * <p>
+     * Slots are allocated per entity class, for every attribute name ever set on any entity of that class,
+     * and are never removed. Each entity's array grows only as far as the highest slot it writes,
+     * but an entity setting an attribute first set elsewhere pays for the slots before it; so this suits
+     * many entities of a type with a common set of attributes, not types with many dynamically named attributes.
+     * <p>
+     * Attributes are listed (e.g. by {@link org.apache.brooklyn.api.entity.Entity#getAllAttributes()}, and so in
+     * persisted mementos) in slot order, i.e. the order in which they were first set on any entity of the class,
+     * rather than the order in which they were set on the entity.
+     * 
+     * @since 0.9.0
+     */
+    public static final String FEATURE_ATTRIBUTE_SLOT_STORAGE = FEATURE_PROPERTY_PREFIX+".attributeSlotStorage";
     
     private static final Map<String, Boolean> FEATURE_ENABLEMENTS = Maps.newLinkedHashMap();
 
@@ -125,6 +157,8 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_PARTIAL_ENTITY_MEMENTOS, false);
+        setDefault(FEATURE_ATTRIBUTE_SLOT_STORAGE, false);
     }
     
     static {
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Proxy;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.util.guava.SerializablePredicate;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+
+/**
+ * Identifies a set of entities which the entity manager can keep indexed as entities are managed
+ * and unmanaged, so that callers such as {@link org.apache.brooklyn.entity.group.DynamicGroup}
+ * need only look at the entities in the index rather than at every managed entity.
+ * <p>
+ * Only properties which are fixed once an entity is managed can be indexed: its type, and the
+ * application it belongs to. Entities in the index are those for which {@link #apply(Entity)} is true.
+ */
+@Beta
+@SuppressWarnings("serial")
+public class EntityIndexKey implements SerializablePredicate<Entity> {
+
+    public enum Kind {
+        TYPE,
+        APPLICATION
+    }
+
+    /** Entities which are instances of the given type (checking both the proxy and the underlying entity). */
+    public static EntityIndexKey ofType(Class<?> type) {
+        return new EntityIndexKey(Kind.TYPE, checkNotNull(type, "type"), null);
+    }
+
+    /** Entities in the application with the given id. */
+    public static EntityIndexKey inApplication(String applicationId) {
+        return new EntityIndexKey(Kind.APPLICATION, null, checkNotNull(applicationId, "applicationId"));
+    }
+
+    private final Kind kind;
+    private final Class<?> type;
+    private final String applicationId;
+
+    private EntityIndexKey(Kind kind, Class<?> type, String applicationId) {
+        this.kind = kind;
+        this.type = type;
+        this.applicationId = applicationId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public boolean apply(@Nullable Entity input) {
+        if (input == null) return false;
+        switch (kind) {
+        case TYPE:
+            if (type.isInstance(input)) return true;
+            return Proxy.isProxyClass(input.getClass()) && type.isInstance(Entities.deproxy(input));
+        case APPLICATION:
+            return applicationId.equals(input.getApplicationId());
+        default:
+            throw new IllegalStateException("Unknown index kind "+kind);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof EntityIndexKey)) return false;
+        EntityIndexKey o = (EntityIndexKey) obj;
+        return kind == o.kind && Objects.equal(type, o.type) && Objects.equal(applicationId, o.applicationId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(kind, type, applicationId);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.TYPE ? "entityIndex(type="+type.getName()+")" : "entityIndex(application="+applicationId+")";
+    }
+}
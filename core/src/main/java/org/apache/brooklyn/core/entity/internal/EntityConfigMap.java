@@ -26,6 +26,8 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -42,10 +44,13 @@ import org.apache.brooklyn.util.core.flags.SetFromFlag;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.internal.ConfigKeySelfExtracting;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -69,6 +74,31 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
     private final ConfigBag localConfigBag;
     private final ConfigBag inheritedConfigBag;
 
+    /** types whose values cannot change once resolved, so can be cached (along with enums and null) */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = ImmutableSet.<Class<?>>of(String.class, Boolean.class, Character.class,
+        Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Duration.class);
+
+    private static class ResolvedValue {
+        final ConfigKey<?> key;
+        final ConfigKey<?> ownKey;
+        final Object value;
+        ResolvedValue(ConfigKey<?> key, ConfigKey<?> ownKey, Object value) {
+            this.key = key;
+            this.ownKey = ownKey;
+            this.value = value;
+        }
+    }
+    
+    /**
+     * Values returned by {@link #getConfig(ConfigKey, Object)}, where the value set (and the value resolved) is immutable;
+     * cleared whenever the config here changes, including when the inherited config is refreshed
+     * (on parent change, or when the parent's config changes). 
+     */
+    private final Map<ConfigKey<?>, ResolvedValue> resolvedValues = new ConcurrentHashMap<ConfigKey<?>, ResolvedValue>();
+    private final AtomicLong resolvedValuesGeneration = new AtomicLong();
+    private final AtomicLong resolvedValuesHits = new AtomicLong();
+    private final AtomicLong resolvedValuesMisses = new AtomicLong();
+
     public EntityConfigMap(AbstractEntity entity) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
@@ -97,6 +127,19 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         //           but that example doesn't have a default...
         ConfigKey<T> ownKey = entity!=null ? (ConfigKey<T>)elvis(entity.getEntityType().getConfigKey(key.getName()), key) : key;
         
+        // an explicit default may differ between calls, so only use the cache without one
+        boolean cacheable = (defaultValue == null);
+        long generation = resolvedValuesGeneration.get();
+        if (cacheable) {
+            ResolvedValue resolved = resolvedValues.get(key);
+            // compare keys by identity, as keys are equal by name (and the entity type's keys can change)
+            if (resolved!=null && resolved.key==key && resolved.ownKey==ownKey) {
+                resolvedValuesHits.incrementAndGet();
+                return (T) resolved.value;
+            }
+            resolvedValuesMisses.incrementAndGet();
+        }
+        
         ConfigInheritance inheritance = key.getInheritance();
         if (inheritance==null) inheritance = ownKey.getInheritance(); 
         if (inheritance==null) {
@@ -116,11 +159,13 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
             if (((ConfigKeySelfExtracting<T>)ownKey).isSet(ownConfig)) {
                 ExecutionContext exec = entity.getExecutionContext();
                 result = ((ConfigKeySelfExtracting<T>)ownKey).extractValue(ownConfig, exec);
+                cacheable &= isImmutable(rawval);
                 complete = true;
             } else if (isInherited(ownKey, inheritance) && 
                     ((ConfigKeySelfExtracting<T>)ownKey).isSet(inheritedConfig)) {
                 ExecutionContext exec = entity.getExecutionContext();
                 result = ((ConfigKeySelfExtracting<T>)ownKey).extractValue(inheritedConfig, exec);
+                cacheable &= isImmutable(inheritedConfig.get(key));
                 complete = true;
             } else if (localConfigBag.containsKey(ownKey)) {
                 // TODO configBag.get doesn't handle tasks/attributeWhenReady - it only uses TypeCoercions
@@ -136,12 +181,44 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
                 entity.getManagementSupport().getEntityChangeListener().onConfigChanged(key);
             }
             if (complete) {
+                if (cacheable) cacheResolvedValue(key, ownKey, result, generation);
                 return result;
             }
         } else {
             LOG.warn("Config key {} of {} is not a ConfigKeySelfExtracting; cannot retrieve value; returning default", ownKey, this);
         }
-        return TypeCoercions.coerce((defaultValue != null) ? defaultValue : ownKey.getDefaultValue(), key.getTypeToken());
+        T result = TypeCoercions.coerce((defaultValue != null) ? defaultValue : ownKey.getDefaultValue(), key.getTypeToken());
+        if (cacheable) cacheResolvedValue(key, ownKey, result, generation);
+        return result;
+    }
+
+    private static boolean isImmutable(Object val) {
+        return val==null || val instanceof Enum || IMMUTABLE_TYPES.contains(val.getClass());
+    }
+    
+    private void cacheResolvedValue(ConfigKey<?> key, ConfigKey<?> ownKey, Object result, long generation) {
+        if (!isImmutable(result)) return;
+        resolvedValues.put(key, new ResolvedValue(key, ownKey, result));
+        // if config changed while we were resolving, our value may be stale
+        if (resolvedValuesGeneration.get()!=generation) resolvedValues.remove(key);
+    }
+    
+    private void invalidateResolvedValues() {
+        // increment first, so that concurrent resolutions do not cache values from before the change
+        resolvedValuesGeneration.incrementAndGet();
+        resolvedValues.clear();
+    }
+    
+    /** the number of calls to {@link #getConfig(ConfigKey, Object)} answered from the cache of resolved values */
+    @Beta
+    public long getResolvedValueCacheHits() {
+        return resolvedValuesHits.get();
+    }
+    
+    /** the number of calls to {@link #getConfig(ConfigKey, Object)} (without a default value) which had to resolve the value */
+    @Beta
+    public long getResolvedValueCacheMisses() {
+        return resolvedValuesMisses.get();
     }
 
     private <T> boolean isInherited(ConfigKey<T> key) {
@@ -207,6 +284,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
             oldVal = ownConfig.put(key, val);
             localConfigBag.put((ConfigKey<Object>)key, v);
         }
+        invalidateResolvedValues();
         entity.config().refreshInheritedConfigOfChildren();
         return oldVal;
     }
@@ -216,6 +294,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         localConfigBag.clear();
         ownConfig.putAll(vals);
         localConfigBag.putAll(vals);
+        invalidateResolvedValues();
     }
     
     public void setInheritedConfig(Map<ConfigKey<?>, ?> valsO, ConfigBag configBagVals) {
@@ -265,6 +344,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
                 inheritedConfigBag.putStringKey(name, value);
             }
         }
+        invalidateResolvedValues();
     }
     
     private Map<ConfigKey<?>, ?> filterUninheritable(Map<ConfigKey<?>, ?> vals) {
@@ -281,16 +361,19 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         localConfigBag.putAll(vals);
         // quick fix for problem that ownConfig can get out of synch
         ownConfig.putAll(localConfigBag.getAllConfigAsConfigKeyMap());
+        invalidateResolvedValues();
     }
 
     public void removeFromLocalBag(String key) {
         localConfigBag.remove(key);
         ownConfig.remove(key);
+        invalidateResolvedValues();
     }
 
     public void clearInheritedConfig() {
         inheritedConfig.clear();
         inheritedConfigBag.clear();
+        invalidateResolvedValues();
     }
 
     @Override
@@ -22,6 +22,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
@@ -33,10 +36,13 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 
 /**
- * Handler for when polling an entity's attribute. On each poll result the entity's attribute is set.
+ * Handler for when polling an entity's attribute. On each poll result the entity's attribute is set,
+ * unless duplicates are suppressed (see {@link FeedConfig#suppressDuplicates(boolean)} and {@link #SUPPRESS_DUPLICATES})
+ * and the value is unchanged.
  * 
  * Calls to onSuccess and onError will happen sequentially, but may be called from different threads 
  * each time. Note that no guarantees of a synchronized block exist, so additional synchronization 
@@ -48,12 +54,25 @@ public class AttributePollHandler<V> implements PollHandler<V> {
 
     public static final Logger log = LoggerFactory.getLogger(AttributePollHandler.class);
 
+    /** default for {@link FeedConfig#suppressDuplicates(boolean)}, where that is not set */
+    @Beta
+    public static final ConfigKey<Boolean> SUPPRESS_DUPLICATES = ConfigKeys.newBooleanConfigKey("brooklyn.feed.suppressDuplicates",
+            "Whether feeds by default skip setting a sensor when the value polled is unchanged", false);
+
+    /** default for {@link FeedConfig#republishDuplicatesAfter(Duration)}, where that is not set */
+    @Beta
+    public static final ConfigKey<Duration> REPUBLISH_DUPLICATES_AFTER = ConfigKeys.newDurationConfigKey("brooklyn.feed.republishDuplicatesAfter",
+            "When feeds suppress duplicates, the max time an unchanged value is not set; after that it is set again. "
+            + "If not set, an unchanged value is never set again.");
+
     private final FeedConfig<V,?,?> config;
     private final EntityLocal entity;
     @SuppressWarnings("rawtypes")
     private final AttributeSensor sensor;
     private final AbstractFeed feed;
     private final boolean suppressDuplicates;
+    /** if suppressing duplicates, the max time since the sensor was last set before setting it again; null for no max */
+    private final Duration republishDuplicatesAfter;
     
     // allow 30 seconds before logging at WARN, if there has been no success yet;
     // after success WARN immediately
@@ -66,6 +85,7 @@ public class AttributePollHandler<V> implements PollHandler<V> {
     private volatile Long currentProblemStartTime = null;
     private volatile boolean currentProblemLoggedAsWarning = false;
     private volatile boolean lastWasProblem = false;
+    private volatile long lastSetTime = System.currentTimeMillis();
 
     
     public AttributePollHandler(FeedConfig<V,?,?> config, EntityLocal entity, AbstractFeed feed) {
@@ -73,7 +93,11 @@ public class AttributePollHandler<V> implements PollHandler<V> {
         this.entity = checkNotNull(entity, "entity");
         this.sensor = checkNotNull(config.getSensor(), "sensor");
         this.feed = checkNotNull(feed, "feed");
-        this.suppressDuplicates = config.getSupressDuplicates();
+        StringConfigMap globalConfig = ((EntityInternal)entity).getManagementContext().getConfig();
+        Boolean suppress = config.getSuppressDuplicatesOrNull();
+        this.suppressDuplicates = (suppress != null) ? suppress : Boolean.TRUE.equals(globalConfig.getConfig(SUPPRESS_DUPLICATES));
+        Duration republishAfter = config.getRepublishDuplicatesAfter();
+        this.republishDuplicatesAfter = (republishAfter != null) ? republishAfter : globalConfig.getConfig(REPUBLISH_DUPLICATES_AFTER);
     }
 
     @Override
@@ -223,14 +247,19 @@ public class AttributePollHandler<V> implements PollHandler<V> {
             // nothing
         } else {
             Object coercedV = TypeCoercions.coerce(v, sensor.getType());
-            if (suppressDuplicates && Objects.equal(coercedV, entity.getAttribute(sensor))) {
+            if (suppressDuplicates && Objects.equal(coercedV, entity.getAttribute(sensor)) && !isDueForRepublish()) {
                 // no change; nothing
             } else {
                 entity.sensors().set(sensor, coercedV);
+                lastSetTime = System.currentTimeMillis();
             }
         }
     }
 
+    private boolean isDueForRepublish() {
+        return republishDuplicatesAfter != null && System.currentTimeMillis() - lastSetTime >= republishDuplicatesAfter.toMilliseconds();
+    }
+
     @Override
     public String toString() {
         return super.toString()+"["+getDescription()+"]";
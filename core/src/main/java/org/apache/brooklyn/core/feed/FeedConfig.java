@@ -28,7 +28,9 @@ import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.guava.Functionals;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
 import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Objects;
@@ -63,7 +65,8 @@ public class FeedConfig<V, T, F extends FeedConfig<V, T, F>> {
     private Function<? super V, T> onfailure;
     private Function<? super Exception, T> onexception;
     private Predicate<? super V> checkSuccess;
-    private boolean suppressDuplicates;
+    private Boolean suppressDuplicates;
+    private Duration republishDuplicatesAfter;
     private boolean enabled = true;
     
     public FeedConfig(AttributeSensor<T> sensor) {
@@ -77,6 +80,7 @@ public class FeedConfig<V, T, F extends FeedConfig<V, T, F>> {
         this.onexception = other.onexception;
         this.checkSuccess = other.checkSuccess;
         this.suppressDuplicates = other.suppressDuplicates;
+        this.republishDuplicatesAfter = other.republishDuplicatesAfter;
         this.enabled = other.enabled;
     }
 
@@ -106,8 +110,20 @@ public class FeedConfig<V, T, F extends FeedConfig<V, T, F>> {
     }
 
     public boolean getSupressDuplicates() {
+        return Boolean.TRUE.equals(suppressDuplicates);
+    }
+
+    /** whether to suppress duplicates, or null if not set (so the default from {@link AttributePollHandler#SUPPRESS_DUPLICATES} applies) */
+    @Beta
+    public Boolean getSuppressDuplicatesOrNull() {
         return suppressDuplicates;
     }
+
+    /** @see #republishDuplicatesAfter(Duration) */
+    @Beta
+    public Duration getRepublishDuplicatesAfter() {
+        return republishDuplicatesAfter;
+    }
     
     public boolean isEnabled() {
         return enabled;
@@ -199,11 +215,28 @@ public class FeedConfig<V, T, F extends FeedConfig<V, T, F>> {
         return onFailureOrException(Functions.constant(val));
     }
 
+    /**
+     * Whether to skip setting the sensor when the (coerced) value is the same as its current value,
+     * saving the publication to subscribers and the persistence of the entity.
+     * If not set, the default is taken from {@link AttributePollHandler#SUPPRESS_DUPLICATES}.
+     */
     public F suppressDuplicates(boolean val) {
         suppressDuplicates = val;
         return self();
     }
 
+    /**
+     * When {@link #suppressDuplicates(boolean) suppressing duplicates}, the longest time for which an unchanged value
+     * will not be set; after this it is set again (and so published) even though unchanged.
+     * If not set, the default is taken from {@link AttributePollHandler#REPUBLISH_DUPLICATES_AFTER}; 
+     * null there means an unchanged value is never set again.
+     */
+    @Beta
+    public F republishDuplicatesAfter(Duration val) {
+        republishDuplicatesAfter = val;
+        return self();
+    }
+
     /**
      * Whether this feed is enabled (defaulting to true).
      */
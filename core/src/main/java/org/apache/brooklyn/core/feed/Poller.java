@@ -25,6 +25,8 @@ import java.util.concurrent.Callable;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
@@ -38,6 +40,7 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 
 
@@ -51,6 +54,11 @@ import com.google.common.base.Objects;
 public class Poller<V> {
     public static final Logger log = LoggerFactory.getLogger(Poller.class);
 
+    @Beta
+    public static final ConfigKey<Duration> POLL_JITTER = ConfigKeys.newDurationConfigKey("brooklyn.feed.pollJitter",
+            "Max random delay before the first poll of each scheduled poll job (capped at its period), "
+            + "to spread out polls started at the same time, e.g. on rebind; zero (the default) for none", Duration.ZERO);
+
     private final EntityLocal entity;
     private final boolean onlyIfServiceUp;
     private final Set<Callable<?>> oneOffJobs = new LinkedHashSet<Callable<?>>();
@@ -140,19 +148,21 @@ public class Poller<V> {
             oneOffTasks.add(((EntityInternal)entity).getExecutionContext().submit(task));
         }
         
+        Duration jitter = ((EntityInternal)entity).getManagementContext().getConfig().getConfig(POLL_JITTER);
         for (final PollJob<V> pollJob : pollJobs) {
             final String scheduleName = pollJob.handler.getDescription();
             if (pollJob.pollPeriod.compareTo(Duration.ZERO) > 0) {
+                // the same body is used for every poll; only the (single-use) task is created each time
+                final Callable<Void> pollBody = new Callable<Void>() { public Void call() {
+                    if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
+                            return null;
+                    }
+                    pollJob.wrappedJob.run();
+                    return null; 
+                } };
                 Callable<Task<?>> pollingTaskFactory = new Callable<Task<?>>() {
                     public Task<?> call() {
-                        DynamicSequentialTask<Void> task = new DynamicSequentialTask<Void>(MutableMap.of("displayName", scheduleName, "entity", entity), 
-                            new Callable<Void>() { public Void call() {
-                                if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
-                                        return null;
-                                }
-                                pollJob.wrappedJob.run();
-                                return null; 
-                            } } );
+                        DynamicSequentialTask<Void> task = new DynamicSequentialTask<Void>(MutableMap.of("displayName", scheduleName, "entity", entity), pollBody);
                         BrooklynTaskTags.setTransient(task);
                         return task;
                     }
@@ -160,7 +170,8 @@ public class Poller<V> {
                 Map<String, ?> taskFlags = MutableMap.of("displayName", "scheduled:" + scheduleName);
                 ScheduledTask task = new ScheduledTask(taskFlags, pollingTaskFactory)
                         .period(pollJob.pollPeriod)
-                        .cancelOnException(false);
+                        .cancelOnException(false)
+                        .jitter(jitter==null ? null : Duration.min(jitter, pollJob.pollPeriod));
                 tasks.add(Entities.submit(entity, task));
             } else {
                 if (log.isDebugEnabled()) log.debug("Activating poll (but leaving off, as period {}) for {} (using {})", new Object[] {pollJob.pollPeriod, entity, this});
@@ -70,6 +70,7 @@ import org.apache.brooklyn.core.mgmt.classloading.JavaBrooklynClassLoadingContex
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.ha.HighAvailabilityManagerImpl;
 import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -79,6 +80,7 @@ import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.groovy.GroovyJavaMethods;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.HttpClientRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -172,6 +174,9 @@ public abstract class AbstractManagementContext implements ManagementContextInte
 
     protected final ExternalConfigSupplierRegistry configSupplierRegistry;
 
+    /** created on first use */
+    private HttpClientRegistry httpClientRegistry;
+
     private volatile boolean running = true;
     protected boolean startupComplete = false;
     protected final List<Throwable> errors = Collections.synchronizedList(MutableList.<Throwable>of());
@@ -209,6 +214,9 @@ public abstract class AbstractManagementContext implements ManagementContextInte
         running = false;
         rebindManager.stop();
         storage.terminate();
+        synchronized (this) {
+            if (httpClientRegistry != null) httpClientRegistry.close();
+        }
         // Don't unmanage everything; different entities get given their events at different times 
         // so can cause problems (e.g. a group finds out that a member is unmanaged, before the
         // group itself has been told that it is unmanaged).
@@ -519,4 +527,17 @@ public abstract class AbstractManagementContext implements ManagementContextInte
         return configSupplierRegistry;
     }
 
+    /** @since 0.9.0 */
+    @Override
+    public synchronized HttpClientRegistry getHttpClientRegistry() {
+        if (httpClientRegistry == null) {
+            httpClientRegistry = new HttpClientRegistry(
+                    configMap.getConfig(BrooklynServerConfig.HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE),
+                    configMap.getConfig(BrooklynServerConfig.HTTP_CLIENT_MAX_CONNECTIONS),
+                    configMap.getConfig(BrooklynServerConfig.HTTP_CLIENT_IDLE_TIMEOUT),
+                    configMap.getConfig(BrooklynServerConfig.HTTP_CLIENT_LEASE_TIMEOUT));
+        }
+        return httpClientRegistry;
+    }
+
 }
@@ -94,6 +94,8 @@ public abstract class AbstractSubscriptionManager implements SubscriptionManager
      * <li>subscriberExecutionManagerTag - a tag to pass to execution manager (without setting any execution semantics / TaskPreprocessor);
      *      if not supplied and there is a subscriber, this will be inferred from the subscriber and set up with SingleThreadedScheduler
      * <li>eventFilter - a Predicate&lt;SensorEvent&gt; instance to filter what events are delivered
+     * <li>coalesce - boolean; if true, then where there are several undelivered events for the same producer and
+     *      attribute sensor, only the most recent is delivered (for listeners which only care about the latest value)
      * </ul>
      * 
      * @see SubscriptionManager#subscribe(Map, Entity, Sensor, SensorEventListener)
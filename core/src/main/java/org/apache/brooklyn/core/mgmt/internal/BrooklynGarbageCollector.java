@@ -27,12 +27,16 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -51,7 +55,9 @@ import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
-import org.apache.brooklyn.util.core.task.ExecutionListener;
+import org.apache.brooklyn.util.core.task.CompletedTaskRecord;
+import org.apache.brooklyn.util.core.task.ExecutionSubmissionListener;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.javalang.MemoryUsageTracker;
@@ -62,7 +68,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Objects;
 import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 
 /**
  * Deletes record of old tasks, to prevent space leaks and the eating up of more and more memory.
@@ -80,6 +88,16 @@ import com.google.common.collect.Iterables;
  * and keeping at most 100000 tasks in the system,
  * max 1000 tasks per entity, 50 per effector within that entity, and 50 per other non-effector tag
  * within that entity (or global if not attached to an entity).
+ * <p>
+ * Limits are enforced incrementally: completed tasks are recorded in queues in order of completion
+ * (i.e. by end time), and tags which go over capacity are noted; when a tag goes over capacity by more than
+ * a small slack, or the oldest task is older than the max age, or there are too many tasks globally,
+ * a pass is scheduled which looks only at the affected tags and at the head of those queues.
+ * Tasks which do not report completion (i.e. scheduled tasks, which may be cancelled) are not in those queues,
+ * so all tasks are also queued on submission, in order of submission; as a task cannot end before it is submitted,
+ * the periodic pass need look only at those submitted more than the max age ago. Scheduled tasks are also
+ * recorded on submission, so that the periodic pass can delete them once cancelled or once their submitter is deleted.
+ * No pass looks at all tasks or all tags, except when the limits per tag or per entity are changed.
  * 
  * @author aled
  */
@@ -133,6 +151,20 @@ public class BrooklynGarbageCollector {
             "the duration after which a completed task will be automatically deleted", 
             Duration.days(30));
     
+    /**
+     * whether retained completed tasks should be replaced by a compact record of them 
+     * (see {@link BasicExecutionManager#compactCompletedTask(Task)}), which keeps their status and tags
+     * but not their job; off by default, as callers looking up a task by id or tag then get the record.
+     * <p>
+     * This changes what {@link Task#get()} does for such callers: the record keeps the result only if it is
+     * small and immutable (e.g. a short string, a boxed primitive or an enum, see {@link CompletedTaskRecord#isResultRetainable(Object)});
+     * for other results it throws {@link CompletedTaskRecord.ResultNotRetainedException}, and only a string of the result
+     * is available, from {@link CompletedTaskRecord#getResultText()}. Errors are kept only as their message.
+     * @since 0.9.0 */
+    @Beta
+    public static final ConfigKey<Boolean> COMPACT_COMPLETED_TASKS = ConfigKeys.newBooleanConfigKey(
+        "brooklyn.gc.compactCompletedTasks", "whether to replace retained completed tasks by a compact record of them", false);
+    
     protected final static Comparator<Task<?>> TASKS_OLDEST_FIRST_COMPARATOR = new Comparator<Task<?>>() {
         @Override public int compare(Task<?> t1, Task<?> t2) {
             long end1 = t1.getEndTimeUtc();
@@ -152,19 +184,120 @@ public class BrooklynGarbageCollector {
     private final boolean doSystemGc;
     private volatile boolean running = true;
     
+    // limits as at the last pass, used when deciding on task completion whether another pass is needed
+    private volatile int maxTasksPerTag;
+    private volatile int maxTasksPerEntity;
+    private volatile int maxTasksGlobal;
+    private volatile long maxTaskAgeMillis;
+    private volatile boolean compactCompletedTasks;
+    // as at the last periodic pass, to detect when all tags must be checked
+    private int lastMaxTasksPerTag;
+    private int lastMaxTasksPerEntity;
+    
+    // the collections below are concurrent, so that recording a completed task takes no global lock;
+    // entries for tasks deleted other than by us (e.g. with their parent, or their entity) are dropped lazily
+    
+    /** retained completed tasks, in order of completion */
+    private final TaskQueue completedTasks = new TaskQueue();
+    /** as {@link #completedTasks}, but excluding sub-tasks (which are deleted with their parent rather than by age) */
+    private final TaskQueue completedRootTasks = new TaskQueue();
+    /** retained completed tasks which were submitted by another task but are not its sub-task */
+    private final Set<Task<?>> completedBackgroundTasks = Sets.newConcurrentHashSet();
+    /** tags which have gone over capacity since the last pass */
+    private final Set<Object> tagsOverCapacity = Sets.newConcurrentHashSet();
+    /** all submitted tasks, by their submit time, in order of submission, until they might be past the max age;
+     * ids are kept rather than tasks, so as not to keep tasks which have been replaced by a compact record */
+    private final TaskTimeQueue submittedTasks = new TaskTimeQueue();
+    /** submitted scheduled tasks, which do not report completion */
+    private final Set<Task<?>> scheduledTasks = Sets.newConcurrentHashSet();
+    /** tasks taken from {@link #submittedTasks} which could not yet be expired, by when they next might be;
+     * only used by the (synchronized) passes */
+    private final PriorityQueue<TaskTime> tasksToRecheckForAge = new PriorityQueue<TaskTime>();
+    
+    /** a task id and a time, ordered by the time */
+    private static class TaskTime implements Comparable<TaskTime> {
+        private final long timeUtc;
+        private final String taskId;
+        
+        TaskTime(long timeUtc, String taskId) {
+            this.timeUtc = timeUtc;
+            this.taskId = taskId;
+        }
+        @Override
+        public int compareTo(TaskTime o) {
+            return (timeUtc < o.timeUtc) ? -1 : ((timeUtc == o.timeUtc) ? 0 : 1);
+        }
+    }
+    
+    /** a concurrent queue of entries for tasks which tracks its size (as {@link ConcurrentLinkedQueue#size()} is not constant-time) */
+    private static abstract class AbstractTaskQueue<T> {
+        private final ConcurrentLinkedQueue<T> entries = new ConcurrentLinkedQueue<T>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean compacting = new AtomicBoolean();
+        
+        protected abstract String taskId(T entry);
+        
+        void add(T entry) {
+            entries.add(entry);
+            size.incrementAndGet();
+        }
+        T peek() {
+            return entries.peek();
+        }
+        T poll() {
+            T result = entries.poll();
+            if (result!=null) size.decrementAndGet();
+            return result;
+        }
+        /** removes the given entry if it is (still) at the head */
+        boolean removeHead(T entry) {
+            if (entries.peek()!=entry || !entries.remove(entry)) return false;
+            size.decrementAndGet();
+            return true;
+        }
+        int size() {
+            return size.get();
+        }
+        /** removes entries for tasks which are no longer in memory, unless another thread is already doing so */
+        void compact(BasicExecutionManager executionManager) {
+            if (!compacting.compareAndSet(false, true)) return;
+            try {
+                for (Iterator<T> it = entries.iterator(); it.hasNext(); ) {
+                    if (executionManager.getTask(taskId(it.next()))==null) {
+                        it.remove();
+                        size.decrementAndGet();
+                    }
+                }
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+    private static class TaskQueue extends AbstractTaskQueue<Task<?>> {
+        @Override protected String taskId(Task<?> entry) { return entry.getId(); }
+    }
+    private static class TaskTimeQueue extends AbstractTaskQueue<TaskTime> {
+        @Override protected String taskId(TaskTime entry) { return entry.taskId; }
+    }
+    private final AtomicBoolean incrementalPassPending = new AtomicBoolean();
+    
     public BrooklynGarbageCollector(BrooklynProperties brooklynProperties, BasicExecutionManager executionManager, BrooklynStorage storage) {
         this.executionManager = executionManager;
         this.storage = storage;
         this.brooklynProperties = brooklynProperties;
 
         doSystemGc = brooklynProperties.getConfig(DO_SYSTEM_GC);
+        refreshLimits();
         
         executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                 @Override public Thread newThread(Runnable r) {
                     return new Thread(r, "brooklyn-gc");
                 }});
         
-        executionManager.addListener(new ExecutionListener() {
+        executionManager.addListener(new ExecutionSubmissionListener() {
+                @Override public void onTaskSubmitted(Task<?> task) {
+                    BrooklynGarbageCollector.this.onTaskSubmitted(task);
+                }
                 @Override public void onTaskDone(Task<?> task) {
                     BrooklynGarbageCollector.this.onTaskDone(task);
                 }});
@@ -230,7 +363,10 @@ public class BrooklynGarbageCollector {
             executionManager.getNumActiveTasks()+" active, "+
             executionManager.getNumIncompleteTasks()+" unfinished; "+
             executionManager.getNumInMemoryTasks()+" remembered, "+
-            executionManager.getTotalTasksSubmitted()+" total submitted)";
+            executionManager.getTotalTasksSubmitted()+" total submitted; "+
+            "runner "+executionManager.getRunnerType()+": "+
+            executionManager.getRunnerThreadCount()+" threads, "+
+            executionManager.getRunnerQueueDepth()+" queued)";
     }
     
     public void shutdownNow() {
@@ -247,6 +383,10 @@ public class BrooklynGarbageCollector {
         }
     }
     
+    /**
+     * Deletes all tasks for the given entity. Entries for them in the queues of completed tasks
+     * are discarded lazily, when next looked at.
+     */
     public void deleteTasksForEntity(Entity entity) {
         // remove all references to this entity from tasks
         executionManager.deleteTag(entity);
@@ -259,12 +399,145 @@ public class BrooklynGarbageCollector {
         // No-op currently; no tasks are tracked through their location
     }
     
+    /**
+     * Records a submitted task, so that it is expired when past the max age even if it does not report completion.
+     */
+    public void onTaskSubmitted(Task<?> task) {
+        submittedTasks.add(new TaskTime(task.getSubmitTimeUtc(), task.getId()));
+        if (task instanceof ScheduledTask) scheduledTasks.add(task);
+        // tasks deleted on completion are dropped when at least half of the entries are stale, as for completed tasks
+        if (submittedTasks.size() > 2*executionManager.getNumInMemoryTasks() + 16) submittedTasks.compact(executionManager);
+    }
+    
     public void onTaskDone(Task<?> task) {
         if (shouldDeleteTaskImmediately(task)) {
             executionManager.deleteTask(task);
+        } else if (task.isDone()) {
+            if (compactCompletedTasks) {
+                task = executionManager.compactCompletedTask(task);
+            }
+            if (recordCompletedTask(task)) {
+                scheduleIncrementalPass();
+            }
         }
     }
     
+    /**
+     * Records a completed task which is being retained, in the queues used for incremental expiry.
+     * 
+     * @return whether an incremental pass is now needed, because a limit has been exceeded
+     */
+    protected boolean recordCompletedTask(Task<?> task) {
+        boolean passNeeded = false;
+        completedTasks.add(task);
+        if (!BrooklynTaskTags.isSubTask(task)) {
+            completedRootTasks.add(task);
+            if (hasSubmitter(task)) completedBackgroundTasks.add(task);
+        }
+        
+        for (Object tag: task.getTags()) {
+            int limit;
+            if (TagCategory.ENTITY.acceptsTag(tag)) limit = maxTasksPerEntity;
+            else if (TagCategory.NON_ENTITY_NORMAL.acceptsTag(tag)) limit = maxTasksPerTag;
+            else continue;
+            int numTasksWithTag = executionManager.getNumTasksWithTag(tag);
+            if (numTasksWithTag > limit) {
+                // trimmed by the next pass; only worth a pass of its own once well over
+                tagsOverCapacity.add(tag);
+                if (numTasksWithTag > limit + incrementalSlack(limit)) passNeeded = true;
+            }
+        }
+        
+        Task<?> oldest = completedRootTasks.peek();
+        if (oldest!=null && System.currentTimeMillis() - oldest.getEndTimeUtc() > maxTaskAgeMillis) {
+            passNeeded = true;
+        }
+        if (getNumCompletedTasksInMemory() > maxTasksGlobal + incrementalSlack(maxTasksGlobal)) {
+            passNeeded = true;
+        }
+        
+        // compact once at least half of the entries are stale, so the cost is amortized over the additions
+        long numInMemory = executionManager.getNumInMemoryTasks();
+        if (completedTasks.size() > 2*numInMemory + 16) completedTasks.compact(executionManager);
+        if (completedRootTasks.size() > 2*numInMemory + 16) completedRootTasks.compact(executionManager);
+        if (completedBackgroundTasks.size() > 2*numInMemory + 16) forgetDeletedBackgroundTasks();
+        return passNeeded;
+    }
+    
+    /** how far a limit may be exceeded before a pass is triggered on task completion, so the cost of a pass is amortized */
+    protected static int incrementalSlack(int limit) {
+        return Math.max(1, limit/10);
+    }
+    
+    protected void scheduleIncrementalPass() {
+        if (!running || !incrementalPassPending.compareAndSet(false, true)) return;
+        try {
+            executor.execute(new Runnable() {
+                @Override public void run() {
+                    incrementalPassPending.set(false);
+                    try {
+                        gcTasksIncrementally();
+                    } catch (Throwable t) {
+                        Exceptions.propagateIfFatal(t);
+                        LOG.warn("Error during incremental management-context GC: "+t, t);
+                    }
+                }});
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            incrementalPassPending.set(false);
+        }
+    }
+    
+    private boolean isInMemory(Task<?> task) {
+        return executionManager.getTask(task.getId())!=null;
+    }
+    
+    @VisibleForTesting
+    int getNumCompletedBackgroundTasksRecorded() {
+        return completedBackgroundTasks.size();
+    }
+    
+    /** removes entries for background tasks which are no longer in memory */
+    private void forgetDeletedBackgroundTasks() {
+        for (Iterator<Task<?>> it = completedBackgroundTasks.iterator(); it.hasNext(); ) {
+            if (!isInMemory(it.next())) it.remove();
+        }
+    }
+    
+    private boolean hasSubmitter(Task<?> task) {
+        if (task instanceof CompletedTaskRecord) return ((CompletedTaskRecord)task).getSubmittedByTaskId()!=null;
+        return task.getSubmittedByTask()!=null;
+    }
+    
+    /** whether the task was submitted by a task which is now done and deleted */
+    private boolean isSubmitterExpired(Task<?> task) {
+        if (task instanceof CompletedTaskRecord) {
+            // records refer to their submitter by id, and only return it while it is in memory
+            String submitterId = ((CompletedTaskRecord)task).getSubmittedByTaskId();
+            return submitterId!=null && executionManager.getTask(submitterId)==null;
+        }
+        Task<?> submitter = task.getSubmittedByTask();
+        return submitter!=null && submitter.isDone() && !isInMemory(submitter);
+    }
+    
+    private long getNumCompletedTasksInMemory() {
+        return executionManager.getNumInMemoryTasks() - executionManager.getNumIncompleteTasks();
+    }
+    
+    /** @return whether the limits per tag or per entity have changed since last refreshed */
+    protected boolean refreshLimits() {
+        maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
+        maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
+        maxTasksGlobal = brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        maxTaskAgeMillis = brooklynProperties.getConfig(MAX_TASK_AGE).toMilliseconds();
+        compactCompletedTasks = brooklynProperties.getConfig(COMPACT_COMPLETED_TASKS);
+        
+        boolean changed = maxTasksPerTag!=lastMaxTasksPerTag || maxTasksPerEntity!=lastMaxTasksPerEntity;
+        lastMaxTasksPerTag = maxTasksPerTag;
+        lastMaxTasksPerEntity = maxTasksPerEntity;
+        return changed;
+    }
+    
     /** @deprecated since 0.7.0, method moved internal until semantics are clarified; see also {@link #shouldDeleteTaskImmediately(Task)} */
     @Deprecated
     public boolean shouldDeleteTask(Task<?> task) {
@@ -310,7 +583,12 @@ public class BrooklynGarbageCollector {
 
     /**
      * Deletes old tasks. The age/number of tasks to keep is controlled by fields like 
-     * {@link #maxTasksPerTag} and {@link #maxTaskAge}.
+     * {@link #MAX_TASKS_PER_TAG} and {@link #MAX_TASK_AGE}.
+     * <p>
+     * Only tags noted as over capacity are checked (or all tags, if the limits have changed),
+     * looking only at the tasks in those tags; age and global limits are enforced by looking at only
+     * the oldest completed tasks, and for tasks which do not report completion, the oldest submitted tasks
+     * (see {@link #expireUnreportedTasks()}).
      */
     protected synchronized int gcTasks() {
         // TODO Must be careful with memory usage here: have seen OOME if we get crazy lots of tasks.
@@ -330,14 +608,51 @@ public class BrooklynGarbageCollector {
             scheduleCollector(false);
         }
     
+        boolean limitsChanged = refreshLimits();
         expireUnmanagedEntityTasks();
         expireAgedTasks();
         expireTransientTasks();
         
-        // now look at overcapacity tags, non-entity tags first
+        Set<Object> tags = takeTagsOverCapacity();
+        // tags under the old limits were not noted, so look at all of them
+        int deletedCount = expireOverCapacityTags(limitsChanged ? executionManager.getTaskTags() : tags);
+        deletedCount += expireUnreportedTasks();
         
-        Set<Object> taskTags = executionManager.getTaskTags();
+        deletedCount += expireIfOverCapacityGlobally();
+        // always done on a full pass, as it also forgets background tasks deleted other than by us
+        deletedCount += expireSubTasksWhoseSubmitterIsExpired();
         
+        return deletedCount;
+    }
+    
+    /**
+     * Deletes tasks which are over the limits as detected on task completion, looking only at tags which 
+     * have gone over capacity and at the oldest completed tasks.
+     */
+    protected synchronized int gcTasksIncrementally() {
+        if (!running) return 0;
+        
+        expireAgedTasks();
+        int deletedCount = expireOverCapacityTags(takeTagsOverCapacity());
+        
+        int deletedGlobally = expireIfOverCapacityGlobally();
+        deletedCount += deletedGlobally;
+        if (deletedCount>0) deletedCount += expireSubTasksWhoseSubmitterIsExpired();
+        
+        return deletedCount;
+    }
+
+    private Set<Object> takeTagsOverCapacity() {
+        Set<Object> tags = MutableSet.of();
+        for (Iterator<Object> it = tagsOverCapacity.iterator(); it.hasNext(); ) {
+            tags.add(it.next());
+            it.remove();
+        }
+        return tags;
+    }
+
+    /** expires tasks in any of the given tags which are over capacity, non-entity tags first, returning the count */
+    protected int expireOverCapacityTags(Iterable<Object> taskTags) {
         int maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
         int maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
         
@@ -349,17 +664,17 @@ public class BrooklynGarbageCollector {
         for (Object tag : taskTags) {
             if (isTagIgnoredForGc(tag)) continue;
             
-            Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
-            if (tasksWithTag==null) continue;
+            int numTasksWithTag = executionManager.getNumTasksWithTag(tag);
+            if (numTasksWithTag==0) continue;
             AtomicInteger overA = null;
             if (tag instanceof WrappedEntity) {
-                int over = tasksWithTag.size() - maxTasksPerEntity;
+                int over = numTasksWithTag - maxTasksPerEntity;
                 if (over>0) {
                     overA = new AtomicInteger(over);
                     taskEntityTagsOverCapacity.put(tag, overA);
                 }
             } else {
-                int over = tasksWithTag.size() - maxTasksPerTag;
+                int over = numTasksWithTag - maxTasksPerTag;
                 if (over>0) {
                     overA = new AtomicInteger(over);
                     taskNonEntityTagsOverCapacity.put(tag, overA);
@@ -373,12 +688,6 @@ public class BrooklynGarbageCollector {
         int deletedCount = 0;
         deletedCount += expireOverCapacityTagsInCategory(taskNonEntityTagsOverCapacity, taskAllTagsOverCapacity, TagCategory.NON_ENTITY_NORMAL, false);
         deletedCount += expireOverCapacityTagsInCategory(taskEntityTagsOverCapacity, taskAllTagsOverCapacity, TagCategory.ENTITY, true);
-        deletedCount += expireSubTasksWhoseSubmitterIsExpired();
-        
-        int deletedGlobally = expireIfOverCapacityGlobally();
-        deletedCount += deletedGlobally;
-        if (deletedGlobally>0) deletedCount += expireSubTasksWhoseSubmitterIsExpired();
-        
         return deletedCount;
     }
 
@@ -414,21 +723,12 @@ public class BrooklynGarbageCollector {
     protected void expireAgedTasks() {
         Duration maxTaskAge = brooklynProperties.getConfig(MAX_TASK_AGE);
         
-        Collection<Task<?>> allTasks = executionManager.allTasksLive();
+        // root tasks are queued in order of completion, so only need to look at the head
         Collection<Task<?>> tasksToDelete = MutableList.of();
-
-        try {
-            for (Task<?> task: allTasks) {
-                if (!task.isDone()) continue;
-                if (BrooklynTaskTags.isSubTask(task)) continue;
-
-                if (maxTaskAge.isShorterThan(Duration.sinceUtc(task.getEndTimeUtc())))
-                    tasksToDelete.add(task);
-            }
-            
-        } catch (ConcurrentModificationException e) {
-            // delete what we've found so far
-            LOG.debug("Got CME inspecting aged tasks, with "+tasksToDelete.size()+" found for deletion: "+e);
+        Task<?> oldest;
+        while ((oldest = completedRootTasks.peek())!=null) {
+            if (!maxTaskAge.isShorterThan(Duration.sinceUtc(oldest.getEndTimeUtc()))) break;
+            if (completedRootTasks.removeHead(oldest)) tasksToDelete.add(oldest);
         }
         
         for (Task<?> task: tasksToDelete) {
@@ -444,28 +744,100 @@ public class BrooklynGarbageCollector {
         }
     }
     
+    /**
+     * Deletes completed tasks which are past the max age or (if {@link #CHECK_SUBTASK_SUBMITTERS}) whose submitter
+     * has been deleted, for tasks which might not report their completion (i.e. scheduled tasks, 
+     * which may be cancelled), so are not in the queues of completed tasks.
+     * <p>
+     * A task cannot end before it is submitted, so for age this looks only at tasks submitted more than the max age ago,
+     * from the head of {@link #submittedTasks}; those not yet expired are looked at again when they next might be.
+     * Scheduled tasks which have been cancelled, or whose submitter has been deleted, are deleted by looking at
+     * just the scheduled tasks.
+     */
+    protected int expireUnreportedTasks() {
+        // ideally we wouldn't check submitters; see comments on CHECK_SUBTASK_SUBMITTERS
+        boolean checkSubmitters = brooklynProperties.getConfig(CHECK_SUBTASK_SUBMITTERS);
+        long now = System.currentTimeMillis();
+        
+        Collection<Task<?>> tasksToDelete = MutableList.of();
+        TaskTime submitted;
+        while ((submitted = submittedTasks.peek())!=null && now - submitted.timeUtc > maxTaskAgeMillis) {
+            if (submittedTasks.removeHead(submitted)) checkUnreportedTask(submitted.taskId, now, checkSubmitters, tasksToDelete);
+        }
+        TaskTime check;
+        while ((check = tasksToRecheckForAge.peek())!=null && check.timeUtc <= now) {
+            tasksToRecheckForAge.poll();
+            checkUnreportedTask(check.taskId, now, checkSubmitters, tasksToDelete);
+        }
+        for (Task<?> task: MutableList.copyOf(scheduledTasks)) {
+            if (!isInMemory(task)) {
+                scheduledTasks.remove(task);
+            } else if (task.isDone() && (task.getEndTimeUtc()<0 || (checkSubmitters && isSubmitterExpired(task)))) {
+                // cancelled scheduled tasks do not get an end time, so are deleted on the next pass
+                scheduledTasks.remove(task);
+                tasksToDelete.add(task);
+            }
+        }
+        
+        for (Task<?> task: tasksToDelete) {
+            executionManager.deleteTask(task);
+        }
+        
+        // as for the queues, drop entries for tasks deleted otherwise once at least half are stale
+        if (tasksToRecheckForAge.size() > 2*executionManager.getNumInMemoryTasks() + 16) {
+            for (Iterator<TaskTime> it = tasksToRecheckForAge.iterator(); it.hasNext(); ) {
+                if (executionManager.getTask(it.next().taskId)==null) it.remove();
+            }
+        }
+        return tasksToDelete.size();
+    }
+    
+    private void checkUnreportedTask(String taskId, long now, boolean checkSubmitters, Collection<Task<?>> tasksToDelete) {
+        // look up by id, as the task may since have been replaced by a compact record of it
+        Task<?> task = executionManager.getTask(taskId);
+        if (task==null) return;
+        if (!task.isDone()) {
+            // cannot end before now, so cannot be past the max age before now + max age
+            tasksToRecheckForAge.add(new TaskTime(now + maxTaskAgeMillis + 1, taskId));
+            return;
+        }
+        // if we've leaked, ie a subtask which is not a child task, 
+        // and the submitter is GC'd, then delete this also
+        if (checkSubmitters && isSubmitterExpired(task)) {
+            tasksToDelete.add(task);
+            return;
+        }
+        // sub-tasks are deleted with their parent
+        if (BrooklynTaskTags.isSubTask(task)) return;
+        if (now - task.getEndTimeUtc() > maxTaskAgeMillis) {
+            tasksToDelete.add(task);
+        } else {
+            tasksToRecheckForAge.add(new TaskTime(task.getEndTimeUtc() + maxTaskAgeMillis + 1, taskId));
+        }
+    }
+    
+    /** 
+     * Deletes completed tasks submitted in the background by another task which has since been deleted,
+     * looking only at those which reported their completion
+     */
     protected int expireSubTasksWhoseSubmitterIsExpired() {
+        // sub-tasks are deleted with their parent, so only need to look at tasks submitted in the background
+        Collection<Task<?>> tasks = MutableList.copyOf(completedBackgroundTasks);
         // ideally we wouldn't have this; see comments on CHECK_SUBTASK_SUBMITTERS
-        if (!brooklynProperties.getConfig(CHECK_SUBTASK_SUBMITTERS))
-            return 0;
-        
-        Collection<Task<?>> allTasks = executionManager.allTasksLive();
+        boolean checkSubmitters = brooklynProperties.getConfig(CHECK_SUBTASK_SUBMITTERS);
+        Collection<Task<?>> tasksToForget = MutableList.of();
         Collection<Task<?>> tasksToDelete = MutableList.of();
-        try {
-            for (Task<?> task: allTasks) {
-                if (!task.isDone()) continue;
-                Task<?> submitter = task.getSubmittedByTask();
-                // if we've leaked, ie a subtask which is not a child task, 
-                // and the submitter is GC'd, then delete this also
-                if (submitter!=null && submitter.isDone() && executionManager.getTask(submitter.getId())==null) {
-                    tasksToDelete.add(task);
-                }
+        for (Task<?> task: tasks) {
+            if (!isInMemory(task)) {
+                tasksToForget.add(task);
+                continue;
+            }
+            if (checkSubmitters && isSubmitterExpired(task)) {
+                tasksToDelete.add(task);
             }
-            
-        } catch (ConcurrentModificationException e) {
-            // delete what we've found so far
-            LOG.debug("Got CME inspecting aged tasks, with "+tasksToDelete.size()+" found for deletion: "+e);
         }
+        completedBackgroundTasks.removeAll(tasksToForget);
+        completedBackgroundTasks.removeAll(tasksToDelete);
         
         for (Task<?> task: tasksToDelete) {
             executionManager.deleteTask(task);
@@ -499,7 +871,12 @@ public class BrooklynGarbageCollector {
         if (taskTagsInCategoryOverCapacity.isEmpty())
             return 0;
         
-        Collection<Task<?>> tasks = executionManager.allTasksLive();
+        // only tasks with an over-capacity tag are of interest, so look at just those tags' tasks
+        Set<Task<?>> tasks = MutableSet.of();
+        for (Object tag: MutableList.copyOf(taskTagsInCategoryOverCapacity.keySet())) {
+            Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+            if (tasksWithTag!=null) tasks.addAll(tasksWithTag);
+        }
         List<Task<?>> tasksToConsiderDeleting = MutableList.of();
         try {
             for (Task<?> task: tasks) {
@@ -587,6 +964,30 @@ public class BrooklynGarbageCollector {
     }
 
     protected int expireIfOverCapacityGlobally() {
+        int maxTasksGlobal = brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        if (executionManager.getNumInMemoryTasks() <= maxTasksGlobal)
+            return 0;
+        
+        // completed tasks are queued in order of completion, so delete from the head
+        int numDeleted = 0;
+        while (getNumCompletedTasksInMemory() > maxTasksGlobal) {
+            Task<?> task = completedTasks.poll();
+            if (task==null) break;
+            if (isInMemory(task)) {
+                executionManager.deleteTask(task);
+                numDeleted++;
+            }
+        }
+        if (numDeleted>0 && LOG.isDebugEnabled())
+            LOG.debug("brooklyn-gc deleted "+numDeleted+" oldest completed tasks as was over global limit, now have "+executionManager.getNumInMemoryTasks());
+        
+        if (getNumCompletedTasksInMemory() <= maxTasksGlobal)
+            return numDeleted;
+        // some completed tasks were not reported to us (e.g. cancelled scheduled tasks), so fall back to looking at all tasks
+        return numDeleted + expireIfOverCapacityGloballyScanningAllTasks();
+    }
+    
+    private int expireIfOverCapacityGloballyScanningAllTasks() {
         Collection<Task<?>> tasksLive = executionManager.allTasksLive();
         if (tasksLive.size() <= brooklynProperties.getConfig(MAX_TASKS_GLOBAL))
             return 0;
@@ -30,10 +30,12 @@ import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.SubscriptionContext;
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
+import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
+import org.apache.brooklyn.api.sensor.AttributeSensor.SensorPersistenceMode;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.Entities;
@@ -42,6 +44,7 @@ import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.StringAndArgument;
 import org.apache.brooklyn.core.mgmt.internal.NonDeploymentManagementContext.NonDeploymentManagementContextMode;
+import org.apache.brooklyn.core.mgmt.rebind.AttributeChangeListener;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -455,9 +458,18 @@ public class EntityManagementSupport {
         @Override
         public void onAttributeChanged(AttributeSensor<?> attribute) {
             // TODO Could make this more efficient by inspecting the attribute to decide if needs persisted
-            // immediately, or not important, or transient (e.g. do we really need to persist 
+            // immediately, or not important (e.g. do we really need to persist 
             // request-per-second count for rebind purposes?!)
-            getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            if (attribute.getPersistenceMode() == SensorPersistenceMode.NONE) {
+                // not in the memento, so nothing to persist
+                return;
+            }
+            ChangeListener changeListener = getManagementContext().getRebindManager().getChangeListener();
+            if (changeListener instanceof AttributeChangeListener) {
+                ((AttributeChangeListener)changeListener).onAttributeChanged(entity, attribute);
+            } else {
+                changeListener.onChanged(entity);
+            }
         }
         @Override
         public void onConfigChanged(ConfigKey<?> key) {
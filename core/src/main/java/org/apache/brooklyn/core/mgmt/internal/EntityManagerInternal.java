@@ -18,9 +18,14 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import java.util.Collection;
+
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.EntityManager;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
+
+import com.google.common.annotations.Beta;
 
 public interface EntityManagerInternal extends EntityManager, BrooklynObjectManagerInternal<Entity> {
 
@@ -28,5 +33,12 @@ public interface EntityManagerInternal extends EntityManager, BrooklynObjectMana
     Iterable<Entity> getAllEntitiesInApplication(Application application);
 
     public Iterable<String> getEntityIds();
+
+    /**
+     * Returns the managed entities in the given index. The index is built on first request and then
+     * maintained as entities are managed and unmanaged, so later calls do not scan all entities.
+     */
+    @Beta
+    Collection<Entity> getEntitiesInIndex(EntityIndexKey index);
     
 }
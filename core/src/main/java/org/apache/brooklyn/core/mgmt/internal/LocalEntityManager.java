@@ -46,6 +46,7 @@ import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.EntityPredicates;
 import org.apache.brooklyn.core.entity.trait.Startable;
@@ -107,6 +108,9 @@ public class LocalEntityManager implements EntityManagerInternal {
     /** Proxies of the managed entities that are applications */
     protected final Set<Application> applications = Sets.newConcurrentHashSet();
 
+    /** Proxies of the managed entities in each index which has been requested, keyed by entity id */
+    protected final ConcurrentMap<EntityIndexKey,ConcurrentMap<String,Entity>> entityIndexes = Maps.newConcurrentMap();
+
     private final BrooklynStorage storage;
     private final Map<String,String> entityTypes;
     private final Set<String> applicationIds;
@@ -207,6 +211,26 @@ public class LocalEntityManager implements EntityManagerInternal {
         return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
     }
 
+    @Override
+    public Collection<Entity> getEntitiesInIndex(EntityIndexKey index) {
+        Map<String,Entity> result = entityIndexes.get(index);
+        if (result == null) {
+            // build under the same lock as manage/unmanage, so no change is missed between the scan and registration
+            synchronized (this) {
+                result = entityIndexes.get(index);
+                if (result == null) {
+                    ConcurrentMap<String,Entity> newIndex = Maps.newConcurrentMap();
+                    for (Entity e : entitiesById.values()) {
+                        if (index.apply(e)) newIndex.put(e.getId(), toProxyEntityIfAvailable(e));
+                    }
+                    entityIndexes.put(index, newIndex);
+                    result = newIndex;
+                }
+            }
+        }
+        return ImmutableList.copyOf(result.values());
+    }
+
     @Override
     public Iterable<Entity> getAllEntitiesInApplication(Application application) {
         Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(application.getId());
@@ -340,7 +364,9 @@ public class LocalEntityManager implements EntityManagerInternal {
                     if (mode.wasPrimary() && mode.isPrimary()) {
                         // active partial rebind; continue
                     } else if (mode.wasReadOnly() && mode.isReadOnly()) {
-                        // reload in RO mode
+                        // reload in RO mode; unless this is the instance already loaded,
+                        // e.g. an unchanged child when rebinding only changed entities (see ReadOnlyDeltaRebindIteration)
+                        if (isManagedInstance(it)) return false;
                     } else {
                         // on initial non-RO rebind, should not have any deployed instances
                         log.warn("Already deployed "+it+" when managing "+mode+"/"+initialMode+"; ignoring this and all descendants");
@@ -592,6 +618,14 @@ public class LocalEntityManager implements EntityManagerInternal {
         }
     }
 
+    /**
+     * Whether the given instance (or the delegate of the given proxy) is the one currently managed.
+     */
+    private synchronized boolean isManagedInstance(Entity e) {
+        Entity realE = (e instanceof AbstractEntity) ? e : Entities.deproxy(e);
+        return entitiesById.get(e.getId()) == realE;
+    }
+
     /**
      * Whether the entity is in the process of being managed.
      */
@@ -663,6 +697,9 @@ public class LocalEntityManager implements EntityManagerInternal {
         entityProxiesById.put(e.getId(), proxyE);
         entityTypes.put(e.getId(), realE.getClass().getName());
         entitiesById.put(e.getId(), realE);
+        for (Map.Entry<EntityIndexKey,ConcurrentMap<String,Entity>> index : entityIndexes.entrySet()) {
+            if (index.getKey().apply(realE)) index.getValue().put(e.getId(), proxyE);
+        }
 
         preManagedEntitiesById.remove(e.getId());
         if ((e instanceof Application) && (e.getParent()==null)) {
@@ -722,6 +759,10 @@ public class LocalEntityManager implements EntityManagerInternal {
             if (e instanceof Application) {
                 applications.remove(proxyE);
                 applicationIds.remove(e.getId());
+                entityIndexes.remove(EntityIndexKey.inApplication(e.getId()));
+            }
+            for (Map<String,Entity> index : entityIndexes.values()) {
+                index.remove(e.getId());
             }
 
             entities.remove(proxyE);
@@ -19,7 +19,6 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.elvis;
-import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.join;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.mapOf;
 
@@ -41,6 +40,9 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.sensor.BasicSensorEvent;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -52,8 +54,11 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Multiset;
 
 /**
  * A {@link SubscriptionManager} that stores subscription details locally.
@@ -62,22 +67,58 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     
     private static final Logger LOG = LoggerFactory.getLogger(LocalSubscriptionManager.class);
 
+    public static final ConfigKey<Boolean> BATCHED_DELIVERY = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.subscriptions.batchedDelivery", 
+            "whether to queue events for each subscriber in a mailbox drained by a single task, "
+            + "rather than submitting a task to the execution manager for every event delivered", 
+            false);
+
     protected final ExecutionManager em;
     
+    private final boolean batchedDelivery;
+    
     private final String tostring = "SubscriptionContext("+Identifiers.getBase64IdFromValue(System.identityHashCode(this), 5)+")";
 
     private final AtomicLong totalEventsPublishedCount = new AtomicLong();
     private final AtomicLong totalEventsDeliveredCount = new AtomicLong();
+    private final AtomicLong totalEventsCoalescedCount = new AtomicLong();
     
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsBySubscriber = new ConcurrentHashMap<Object, Set<Subscription>>();
+    /**
+     * Subscriptions indexed by {@link EntitySensorToken}, including the wildcard tokens where producer and/or sensor is null.
+     * <p>
+     * The sets held here are immutable: they are replaced (copy-on-write) under the lock held by
+     * {@link #subscribe(Map, Subscription)} and {@link #unsubscribe(SubscriptionHandle)},
+     * so that {@link #publish(SensorEvent)} can look up subscribers without acquiring any monitor.
+     */
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
     
+    /** mailboxes for subscribers with pending events, keyed by subscriber execution manager tag;
+     * used for batched delivery, and for subscribers with any coalescing subscription */
+    private final ConcurrentMap<Object, SubscriberMailbox> mailboxes = new ConcurrentHashMap<Object, SubscriberMailbox>();
+    /** subscriber execution manager tags with coalescing subscriptions, counted; all subscriptions for these 
+     * go through the mailbox, so that events for coalescing and other subscriptions stay in order */
+    private final Multiset<Object> coalescingSubscriberTags = ConcurrentHashMultiset.create();
+    
     public LocalSubscriptionManager(ExecutionManager m) {
+        this(m, false);
+    }
+    
+    public LocalSubscriptionManager(ExecutionManager m, StringConfigMap config) {
+        this(m, config.getConfig(BATCHED_DELIVERY));
+    }
+    
+    /**
+     * @param batchedDelivery whether events should be queued per subscriber and delivered in batches
+     *        (see {@link #BATCHED_DELIVERY})
+     */
+    public LocalSubscriptionManager(ExecutionManager m, boolean batchedDelivery) {
         this.em = m;
+        this.batchedDelivery = batchedDelivery;
     }
         
     public long getNumSubscriptions() {
@@ -92,6 +133,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return totalEventsDeliveredCount.get();
     }
     
+    /** count of events which were not delivered because a newer event replaced them, for subscriptions which coalesce */
+    public long getTotalEventsCoalesced() {
+        return totalEventsCoalescedCount.get();
+    }
+    
     @SuppressWarnings("unchecked")
     protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
         Entity producer = s.producer;
@@ -108,15 +154,19 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             s.subscriberExecutionManagerTagSupplied = false;
         }
         s.eventFilter = (Predicate<SensorEvent<T>>) flags.remove("eventFilter");
+        s.coalesce = Boolean.TRUE.equals(flags.remove("coalesce"));
         boolean notifyOfInitialValue = Boolean.TRUE.equals(flags.remove("notifyOfInitialValue"));
         s.flags = flags;
         
         if (LOG.isDebugEnabled()) LOG.debug("Creating subscription {} for {} on {} {} in {}", new Object[] {s.id, s.subscriber, producer, sensor, this});
         allSubscriptions.put(s.id, s);
-        addToMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        addToIndex(makeEntitySensorToken(s.producer, s.sensor), s);
         if (s.subscriber!=null) {
             addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
         }
+        if (s.coalesce && s.subscriberExecutionManagerTag!=null) {
+            coalescingSubscriberTags.add(s.subscriberExecutionManagerTag);
+        }
         if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
             ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
         }
@@ -163,7 +213,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return (Set<SubscriptionHandle>) ((Set<?>) elvis(subscriptionsBySubscriber.get(subscriber), Collections.emptySet()));
     }
 
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
         Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
@@ -182,19 +232,21 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (!(sh instanceof Subscription)) throw new IllegalArgumentException("Only subscription handles of type Subscription supported: sh="+sh+"; type="+(sh != null ? sh.getClass().getCanonicalName() : null));
         Subscription s = (Subscription) sh;
         boolean result = allSubscriptions.remove(s.id) != null;
-        boolean b2 = removeFromMapOfCollections(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        boolean b2 = removeFromIndex(makeEntitySensorToken(s.producer, s.sensor), s);
         assert result==b2;
         if (s.subscriber!=null) {
             boolean b3 = removeFromMapOfCollections(subscriptionsBySubscriber, s.subscriber, s);
             assert b3 == b2;
         }
+        if (result && s.coalesce && s.subscriberExecutionManagerTag!=null) {
+            coalescingSubscriberTags.remove(s.subscriberExecutionManagerTag);
+        }
 
         // FIXME ALEX - this seems wrong
         ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
         return result;
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public <T> void publish(final SensorEvent<T> event) {
         // REVIEW 1459 - execution
         
@@ -211,42 +263,165 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (LOG.isTraceEnabled()) LOG.trace("{} got event {}", this, event);
         totalEventsPublishedCount.incrementAndGet();
         
-        Set<Subscription> subs = (Set<Subscription>) ((Set<?>) getSubscriptionsForEntitySensor(event.getSource(), event.getSensor()));
-        if (groovyTruth(subs)) {
-            if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
-            for (Subscription s : subs) {
-                if (s.eventFilter!=null && !s.eventFilter.apply(event))
-                    continue;
-                final Subscription sAtClosureCreation = s;
-                
-//                Set<Object> tags = MutableSet.of();
-//                if (s.subscriberExecutionManagerTag!=null) tags.add(s.subscriberExecutionManagerTag);
-//                if (event.getSource()!=null) tags.add(BrooklynTaskTags.tagForContextEntity(event.getSource()));
-//                Map<String, Object> tagsMap = mapOf("tags", (Object)tags);
-                // use code above, instead of line below, if we want subscription deliveries associated with the entity;
-                // that will cause them to be cancelled when the entity is unmanaged
-                // (not sure that is useful, and likely NOT worth the expense, but it might be...) -Alex Oct 2014
-                Map<String, Object> tagsMap = mapOf("tag", s.subscriberExecutionManagerTag);
-                
-                em.submit(tagsMap, new Runnable() {
-                    @Override
-                    public String toString() {
-                        return "LSM.publish("+event+")";
-                    }
-                    public void run() {
-                        try {
-                            sAtClosureCreation.listener.onEvent(event);
-                        } catch (Throwable t) {
-                            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
-                                LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
-                            } else {
-                                LOG.warn("Error processing subscriptions to "+this+": "+t, t);
-                            }
-                        }
-                    }});
+        // look up each of the (at most four) index buckets in turn, rather than building a combined set;
+        // a subscription is only ever in one bucket, so there is no need to de-duplicate
+        Entity source = event.getSource();
+        Sensor<T> sensor = event.getSensor();
+        publishToSubscriptions(event, subscriptionsByToken.get(makeEntitySensorToken(source, sensor)));
+        if (source != null) {
+            publishToSubscriptions(event, subscriptionsByToken.get(makeEntitySensorToken(null, sensor)));
+        }
+        if (sensor != null) {
+            publishToSubscriptions(event, subscriptionsByToken.get(makeEntitySensorToken(source, null)));
+            if (source != null) {
+                publishToSubscriptions(event, subscriptionsByToken.get(makeEntitySensorToken(null, null)));
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T> void publishToSubscriptions(final SensorEvent<T> event, Set<Subscription> subs) {
+        if (subs == null || subs.isEmpty()) return;
+        
+        if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
+        for (Subscription s : subs) {
+            if (s.eventFilter!=null && !s.eventFilter.apply(event))
+                continue;
+            if (s.subscriberExecutionManagerTag!=null && (batchedDelivery || coalescingSubscriberTags.contains(s.subscriberExecutionManagerTag))) {
+                deliverViaMailbox(s, event);
+            } else {
+                submitDelivery(s, event);
+                totalEventsDeliveredCount.incrementAndGet();
+            }
+        }
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private <T> void submitDelivery(final Subscription s, final SensorEvent<T> event) {
+//        Set<Object> tags = MutableSet.of();
+//        if (s.subscriberExecutionManagerTag!=null) tags.add(s.subscriberExecutionManagerTag);
+//        if (event.getSource()!=null) tags.add(BrooklynTaskTags.tagForContextEntity(event.getSource()));
+//        Map<String, Object> tagsMap = mapOf("tags", (Object)tags);
+        // use code above, instead of line below, if we want subscription deliveries associated with the entity;
+        // that will cause them to be cancelled when the entity is unmanaged
+        // (not sure that is useful, and likely NOT worth the expense, but it might be...) -Alex Oct 2014
+        Map<String, Object> tagsMap = mapOf("tag", s.subscriberExecutionManagerTag);
+        
+        em.submit(tagsMap, new Runnable() {
+            @Override
+            public String toString() {
+                return "LSM.publish("+event+")";
+            }
+            public void run() {
+                deliver(s, event);
+            }});
+    }
+
+    /**
+     * Adds the event to the subscriber's mailbox, submitting a drain task (with the subscriber's tag,
+     * so still subject to its {@link SingleThreadedScheduler}) if one is not already pending.
+     * Attribute events for coalescing subscriptions may instead replace an earlier queued event.
+     */
+    @SuppressWarnings("rawtypes")
+    private void deliverViaMailbox(Subscription s, SensorEvent<?> event) {
+        Object tag = s.subscriberExecutionManagerTag;
+        boolean coalesce = s.coalesce && event.getSensor() instanceof AttributeSensor;
+        while (true) {
+            SubscriberMailbox mailbox = mailboxes.get(tag);
+            if (mailbox == null) {
+                SubscriberMailbox newMailbox = new SubscriberMailbox(tag);
+                mailbox = mailboxes.putIfAbsent(tag, newMailbox);
+                if (mailbox == null) mailbox = newMailbox;
+            }
+            switch (mailbox.offer(s, event, coalesce)) {
+            case RETIRED:
+                // retired concurrently; discard it and try again
+                mailboxes.remove(tag, mailbox);
+                continue;
+            case ADDED_NEEDS_DRAIN:
+                submitDrain(mailbox);
+                totalEventsDeliveredCount.incrementAndGet();
+                return;
+            case ADDED:
                 totalEventsDeliveredCount.incrementAndGet();
+                return;
+            case COALESCED:
+                totalEventsCoalescedCount.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void submitDrain(final SubscriberMailbox mailbox) {
+        Map<String, Object> tagsMap = mapOf("tag", mailbox.tag);
+        em.submit(tagsMap, new Runnable() {
+            @Override
+            public String toString() {
+                return "LSM.drain("+mailbox.tag+")";
+            }
+            @SuppressWarnings("rawtypes")
+            public void run() {
+                Subscription[] subs = new Subscription[SubscriberMailbox.maxBatchSize()];
+                SensorEvent<?>[] events = new SensorEvent<?>[SubscriberMailbox.maxBatchSize()];
+                int count;
+                while ((count = mailbox.takeBatch(subs, events)) > 0) {
+                    for (int i = 0; i < count; i++) {
+                        deliver(subs[i], events[i]);
+                        subs[i] = null;
+                        events[i] = null;
+                    }
+                }
+                mailboxes.remove(mailbox.tag, mailbox);
+            }});
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void deliver(Subscription s, SensorEvent event) {
+        try {
+            s.listener.onEvent(event);
+        } catch (Throwable t) {
+            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
+                LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
+            } else {
+                LOG.warn("Error processing subscriptions to "+this+": "+t, t);
+            }
+        }
+    }
+    
+    /**
+     * Adds the subscription to the (immutable) set indexed under the given token, replacing that set.
+     * Caller must hold the lock on this subscription manager.
+     */
+    @SuppressWarnings("rawtypes")
+    private void addToIndex(Object token, Subscription s) {
+        Set<Subscription> old = subscriptionsByToken.get(token);
+        if (old == null) {
+            subscriptionsByToken.put(token, ImmutableSet.of(s));
+        } else {
+            subscriptionsByToken.put(token, ImmutableSet.<Subscription>builder().addAll(old).add(s).build());
+        }
+    }
+
+    /**
+     * Removes the subscription from the (immutable) set indexed under the given token, replacing or removing that set.
+     * Caller must hold the lock on this subscription manager.
+     * 
+     * @return whether the subscription was present
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean removeFromIndex(Object token, Subscription s) {
+        Set<Subscription> old = subscriptionsByToken.get(token);
+        if (old == null || !old.contains(s)) return false;
+        if (old.size() == 1) {
+            subscriptionsByToken.remove(token);
+        } else {
+            ImmutableSet.Builder<Subscription> builder = ImmutableSet.builder();
+            for (Subscription other : old) {
+                if (!other.equals(s)) builder.add(other);
             }
+            subscriptionsByToken.put(token, builder.build());
         }
+        return true;
     }
     
     @Override
@@ -40,6 +40,7 @@ import org.apache.brooklyn.core.objs.proxy.InternalLocationFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalPolicyFactory;
 import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.HttpClientRegistry;
 
 import com.google.common.annotations.Beta;
 
@@ -122,4 +123,11 @@ public interface ManagementContextInternal extends ManagementContext {
     @Beta
     ExternalConfigSupplierRegistry getExternalConfigProviderRegistry();
 
+    /** 
+     * Shared, pooled HTTP clients, for use by feeds and other things which poll HTTP endpoints.
+     * @since 0.9.0 
+     */
+    @Beta
+    HttpClientRegistry getHttpClientRegistry();
+
 }
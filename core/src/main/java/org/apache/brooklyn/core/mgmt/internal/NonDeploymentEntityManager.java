@@ -31,6 +31,7 @@ import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.policy.PolicySpec;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.EnricherSpec;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 
 import com.google.common.base.Predicate;
 
@@ -184,6 +185,15 @@ public class NonDeploymentEntityManager implements EntityManagerInternal {
         return (initialManagementContext != null && !(initialManagementContext instanceof NonDeploymentManagementContext));
     }
 
+    @Override
+    public Collection<Entity> getEntitiesInIndex(EntityIndexKey index) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntitiesInIndex(index);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
     @Override
     public Iterable<Entity> getAllEntitiesInApplication(Application application) {
         if (isInitialManagementContextReal()) {
@@ -69,6 +69,7 @@ import org.apache.brooklyn.core.objs.proxy.InternalEntityFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalLocationFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalPolicyFactory;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.HttpClientRegistry;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -488,6 +489,12 @@ public class NonDeploymentManagementContext implements ManagementContextInternal
         return initialManagementContext.getExternalConfigProviderRegistry();
     }
 
+    @Override
+    public HttpClientRegistry getHttpClientRegistry() {
+        checkInitialManagementContextReal();
+        return initialManagementContext.getHttpClientRegistry();
+    }
+
     /**
      * For when the initial management context is not "real"; the changeListener is a no-op, but everything else forbidden.
      * 
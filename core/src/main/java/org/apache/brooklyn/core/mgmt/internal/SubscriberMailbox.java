@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+
+import com.google.common.base.Objects;
+
+/**
+ * A per-subscriber queue of pending deliveries, used by {@link LocalSubscriptionManager}
+ * when batched delivery is enabled, and for subscriptions which coalesce events.
+ * <p>
+ * Events are held in a growable ring buffer (as parallel arrays, so no wrapper object is allocated per event).
+ * At most one drain job is outstanding for a mailbox at any time; it delivers events in the order they were
+ * offered, which gives the same per-subscriber ordering as a {@link org.apache.brooklyn.util.core.task.SingleThreadedScheduler}
+ * but with one task per burst of events rather than one task per event.
+ * <p>
+ * For subscriptions which {@link Subscription#coalesce coalesce} events, an event for an attribute is not queued
+ * if there is already an undelivered event from the same producer and sensor for that subscription;
+ * instead the queued event is replaced by the newer one (in place, so "latest value wins").
+ * <p>
+ * Once a drain finds the mailbox empty the mailbox is retired; callers must then discard it
+ * and use a new instance (see {@link #offer(Subscription, SensorEvent, boolean)}).
+ */
+class SubscriberMailbox {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** the max number of events taken from the buffer at a time by the drain job (the lock is not held while delivering) */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    enum OfferResult {
+        /** mailbox is retired, event not added; caller should use a new mailbox */
+        RETIRED,
+        /** event added, and a drain job is already pending */
+        ADDED,
+        /** event added, and the caller must now schedule a drain job */
+        ADDED_NEEDS_DRAIN,
+        /** event replaced an earlier undelivered event for the same subscription, producer and sensor */
+        COALESCED
+    }
+    
+    final Object tag;
+
+    @SuppressWarnings("rawtypes")
+    private Subscription[] subscriptions = new Subscription[INITIAL_CAPACITY];
+    private SensorEvent<?>[] events = new SensorEvent<?>[INITIAL_CAPACITY];
+    /** non-null for entries which can be coalesced */
+    private CoalesceKey[] coalesceKeys = new CoalesceKey[INITIAL_CAPACITY];
+    /** for coalescable entries still queued, the sequence number of that entry */
+    private final Map<CoalesceKey, Long> coalesceIndex = new HashMap<CoalesceKey, Long>();
+    private int head = 0;
+    /** the sequence number of the entry at head (incremented for every entry ever taken) */
+    private long headSequence = 0;
+    private int size = 0;
+    private boolean draining = false;
+    private boolean retired = false;
+
+    SubscriberMailbox(Object tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Adds the given event to the mailbox, or if coalescing replaces an earlier event which is still queued.
+     */
+    @SuppressWarnings("rawtypes")
+    synchronized OfferResult offer(Subscription s, SensorEvent<?> event, boolean coalesce) {
+        if (retired) return OfferResult.RETIRED;
+        CoalesceKey key = null;
+        if (coalesce) {
+            key = new CoalesceKey(s, event.getSource(), event.getSensor().getName());
+            Long existing = coalesceIndex.get(key);
+            if (existing != null) {
+                events[indexOf(existing)] = event;
+                return OfferResult.COALESCED;
+            }
+        }
+        if (size == events.length) grow();
+        int index = (head + size) % events.length;
+        subscriptions[index] = s;
+        events[index] = event;
+        coalesceKeys[index] = key;
+        if (key != null) coalesceIndex.put(key, headSequence + size);
+        size++;
+        if (draining) return OfferResult.ADDED;
+        draining = true;
+        return OfferResult.ADDED_NEEDS_DRAIN;
+    }
+
+    /**
+     * Removes up to {@link #MAX_BATCH_SIZE} events (in order) into the supplied arrays.
+     * If there are none then the mailbox is retired.
+     *
+     * @return the number of events copied
+     */
+    @SuppressWarnings("rawtypes")
+    synchronized int takeBatch(Subscription[] subsOut, SensorEvent<?>[] eventsOut) {
+        int count = Math.min(size, subsOut.length);
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % events.length;
+            subsOut[i] = subscriptions[index];
+            eventsOut[i] = events[index];
+            if (coalesceKeys[index] != null) {
+                coalesceIndex.remove(coalesceKeys[index]);
+                coalesceKeys[index] = null;
+            }
+            subscriptions[index] = null;
+            events[index] = null;
+        }
+        head = (head + count) % events.length;
+        headSequence += count;
+        size -= count;
+        if (count == 0) {
+            draining = false;
+            retired = true;
+        }
+        return count;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    static int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void grow() {
+        int newCapacity = events.length * 2;
+        Subscription[] newSubscriptions = new Subscription[newCapacity];
+        SensorEvent<?>[] newEvents = new SensorEvent<?>[newCapacity];
+        CoalesceKey[] newCoalesceKeys = new CoalesceKey[newCapacity];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % events.length;
+            newSubscriptions[i] = subscriptions[index];
+            newEvents[i] = events[index];
+            newCoalesceKeys[i] = coalesceKeys[index];
+        }
+        subscriptions = newSubscriptions;
+        events = newEvents;
+        coalesceKeys = newCoalesceKeys;
+        head = 0;
+    }
+
+    private int indexOf(long sequence) {
+        return (head + (int)(sequence - headSequence)) % events.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriberMailbox["+tag+"]";
+    }
+
+    private static class CoalesceKey {
+        @SuppressWarnings("rawtypes")
+        final Subscription subscription;
+        final Entity producer;
+        final String sensorName;
+
+        @SuppressWarnings("rawtypes")
+        CoalesceKey(Subscription subscription, Entity producer, String sensorName) {
+            this.subscription = subscription;
+            this.producer = producer;
+            this.sensorName = sensorName;
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(subscription, producer, sensorName);
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof CoalesceKey)) return false;
+            CoalesceKey o = (CoalesceKey) obj;
+            return subscription.equals(o.subscription) && Objects.equal(producer, o.producer) && Objects.equal(sensorName, o.sensorName);
+        }
+    }
+}
@@ -41,6 +41,8 @@ class Subscription<T> implements SubscriptionHandle {
     public final SensorEventListener<? super T> listener;
     public Map<String,Object> flags;
     public Predicate<SensorEvent<T>> eventFilter;
+    /** whether undelivered attribute events for the same producer and sensor should be collapsed to the most recent */
+    public boolean coalesce;
 
     public Subscription(Entity producer, Sensor<T> sensor, SensorEventListener<? super T> listener) {
         this.producer = producer;
@@ -21,15 +21,24 @@ package org.apache.brooklyn.core.mgmt.persist;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -51,12 +60,14 @@ import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.mgmt.classloading.ClassLoaderFromBrooklynClassLoadingContext;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessorWithLock;
 import org.apache.brooklyn.core.mgmt.rebind.PeriodicDeltaChangeListener;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoManifestImpl;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.xstream.XmlUtil;
 import org.apache.brooklyn.util.exceptions.CompoundRuntimeException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -67,10 +78,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Utf8;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -97,12 +114,35 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    /** @since 0.9.0 */
+    @Beta
+    public static final ConfigKey<Boolean> PERSISTER_SKIP_UNCHANGED_WRITES = ConfigKeys.newBooleanConfigKey(
+            "persister.skipUnchangedWrites",
+            "Whether to remember a hash of each memento written, and skip writing a memento whose content is identical "
+            + "to that last written for the item (e.g. when an entity's sensors were set to the same values); "
+            + "the hashes are discarded whenever write access is re-enabled, in case another node has written since",
+            false);
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
+    private final int maxSerializationAttempts;
 
     private final Map<String, StoreObjectAccessorWithLock> writers = new LinkedHashMap<String, PersistenceObjectStore.StoreObjectAccessorWithLock>();
 
     private final ListeningExecutorService executor;
+    private final int maxThreadPoolSize;
+    
+    /** writes and deletes submitted to the {@link #executor} but not yet completed */
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private volatile int lastDeltaQueuedWrites = 0;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    
+    private final boolean skipUnchangedWrites;
+    /** hash of the content last written to each path, if {@link #skipUnchangedWrites} */
+    private final Map<String, HashCode> writtenHashes = new ConcurrentHashMap<String, HashCode>();
+    private static final HashFunction WRITTEN_HASH_FUNCTION = Hashing.murmur3_128();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong skippedWriteCount = new AtomicLong();
 
     private volatile boolean writesAllowed = false;
     private volatile boolean writesShuttingDown = false;
@@ -110,6 +150,36 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private List<Delta> queuedDeltas = new CopyOnWriteArrayList<BrooklynMementoPersister.Delta>();
     
+    /** items read by {@link #loadMementoRawData(RebindExceptionHandler)}, keyed by sub-path; see {@link #setReuseUnchangedReads(boolean)} */
+    private final Map<String, CachedRead> readCache = new ConcurrentHashMap<String, CachedRead>();
+    private volatile boolean reuseUnchangedReads = false;
+    /** the newest last-modified date seen by completed loads, i.e. a time the store's clock is known to have reached;
+     * the store's clock, rather than ours, as they may differ */
+    private volatile long newestLastModifiedLoaded = -1;
+    
+    /** How close (by the store's clock) a read can be to an item's last-modified time for the item to be re-read next time anyway,
+     * in case a subsequent write is not visible in the last-modified time (e.g. with 1s file-system resolution) */
+    private static final long LAST_MODIFIED_RESOLUTION_MILLIS = 2000;
+    
+    private static class CachedRead {
+        final long lastModified;
+        /** a time the store's clock had reached before the read (the newest last-modified date loaded before it) */
+        final long storeTimeBeforeRead;
+        final String id;
+        final String contents;
+        CachedRead(long lastModified, long storeTimeBeforeRead, String id, String contents) {
+            this.lastModified = lastModified;
+            this.storeTimeBeforeRead = storeTimeBeforeRead;
+            this.id = id;
+            this.contents = contents;
+        }
+        boolean isUnchanged(Date currentLastModified) {
+            // any write after the read is then stamped later than the store's resolution, so would change the last-modified date
+            return currentLastModified!=null && currentLastModified.getTime()==lastModified
+                && storeTimeBeforeRead - lastModified > LAST_MODIFIED_RESOLUTION_MILLIS;
+        }
+    }
+    
     /**
      * Lock used on writes (checkpoint + delta) so that {@link #waitForWritesCompleted(Duration)} can block
      * for any concurrent call to complete.
@@ -120,11 +190,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         this.objectStore = checkNotNull(objectStore, "objectStore");
         this.brooklynProperties = brooklynProperties;
         
-        int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
+        this.maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
         MementoSerializer<Object> rawSerializer = new XmlMementoSerializer<Object>(classLoader);
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
 
-        int maxThreadPoolSize = brooklynProperties.getConfig(PERSISTER_MAX_THREAD_POOL_SIZE);
+        this.maxThreadPoolSize = brooklynProperties.getConfig(PERSISTER_MAX_THREAD_POOL_SIZE);
+        this.skipUnchangedWrites = Boolean.TRUE.equals(brooklynProperties.getConfig(PERSISTER_SKIP_UNCHANGED_WRITES));
 
         objectStore.createSubPath("entities");
         objectStore.createSubPath("locations");
@@ -158,7 +229,6 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     }
     
     protected MementoSerializer<Object> getSerializerWithCustomClassLoader(LookupContext lookupContext, ClassLoader classLoader) {
-        int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
         MementoSerializer<Object> rawSerializer = new XmlMementoSerializer<Object>(classLoader);
         MementoSerializer<Object> result = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
         result.setLookupContext(lookupContext);
@@ -185,6 +255,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     }
     
     @Override public void enableWriteAccess() {
+        // another node could have written since we last did
+        writtenHashes.clear();
         writesAllowed = true;
     }
     
@@ -276,17 +348,53 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return subPathData;
     }
     
+    /**
+     * Whether {@link #loadMementoRawData(RebindExceptionHandler)} should reuse what it read previously
+     * for items whose last-modified date in the object store is unchanged, rather than reading and parsing them again.
+     * This suits repeated loads, such as by hot-standby nodes; the reused contents are the identical {@link String}
+     * instances, so callers can cheaply tell which items have changed.
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public void setReuseUnchangedReads(boolean reuseUnchangedReads) {
+        this.reuseUnchangedReads = reuseUnchangedReads;
+        if (!reuseUnchangedReads) readCache.clear();
+    }
+    
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) return;
+        }
+    }
+    
     public BrooklynMementoRawData loadMementoRawData(final RebindExceptionHandler exceptionHandler) {
         BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
         
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
+        final boolean reuseUnchangedReads = this.reuseUnchangedReads;
+        final long storeTimeBeforeReads = newestLastModifiedLoaded;
+        final AtomicLong newestLastModified = new AtomicLong(storeTimeBeforeReads);
         
         Visitor loaderVisitor = new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String id, String contentsSubpath) throws Exception {
+                StoreObjectAccessor objectAccessor = objectStore.newAccessor(contentsSubpath);
+                Date lastModified = null;
+                if (reuseUnchangedReads) {
+                    lastModified = objectAccessor.getLastModifiedDate();
+                    if (lastModified!=null) updateMax(newestLastModified, lastModified.getTime());
+                    CachedRead cached = readCache.get(contentsSubpath);
+                    if (cached!=null && cached.isUnchanged(lastModified)) {
+                        builder.put(type, cached.id, cached.contents);
+                        return;
+                    }
+                }
+                
                 String contents = null;
                 try {
-                    contents = read(contentsSubpath);
+                    contents = objectAccessor.get();
                 } catch (Exception e) {
                     Exceptions.propagateIfFatal(e);
                     exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
@@ -298,6 +406,14 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     LOG.warn("ID mismatch on "+type.toCamelCase()+", "+id+" from path, "+safeXmlId+" from xml");
                 
                 builder.put(type, xmlId, contents);
+                
+                if (reuseUnchangedReads) {
+                    if (lastModified!=null && contents!=null && xmlId!=null) {
+                        readCache.put(contentsSubpath, new CachedRead(lastModified.getTime(), storeTimeBeforeReads, xmlId, contents));
+                    } else {
+                        readCache.remove(contentsSubpath);
+                    }
+                }
             }
         };
 
@@ -305,6 +421,16 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
         visitMemento("loading raw", subPathData, loaderVisitor, exceptionHandler);
         
+        if (reuseUnchangedReads) {
+            // forget items which have been deleted
+            Set<String> subPaths = MutableSet.of();
+            for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+                subPaths.addAll(subPathData.getObjectsOfType(type).values());
+            }
+            readCache.keySet().retainAll(subPaths);
+            newestLastModifiedLoaded = newestLastModified.get();
+        }
+        
         BrooklynMementoRawData result = builder.build();
 
         if (LOG.isDebugEnabled()) {
@@ -528,6 +654,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            flushObjectStore();
             if (LOG.isDebugEnabled()) LOG.debug("Checkpointed entire memento in {}", Time.makeTimeStringRounded(stopwatch));
         } finally {
             lock.writeLock().unlock();
@@ -591,6 +718,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     futures.add(asyncDelete(type.getSubPathName(), id, exceptionHandler));
                 }
             }
+            lastDeltaQueuedWrites = getQueuedWriteCount();
             
             try {
                 // Wait for all the tasks to complete or fail, rather than aborting on the first failure.
@@ -600,6 +728,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            flushObjectStore();
             
             return stopwatch;
         } finally {
@@ -607,6 +736,68 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
+    /** makes the writes just done durable, if the object store buffers them */
+    private void flushObjectStore() {
+        if (objectStore instanceof BufferingPersistenceObjectStore) {
+            ((BufferingPersistenceObjectStore)objectStore).flush();
+        }
+    }
+    
+    /**
+     * Returns the number of writes and deletes waiting for a thread in the persister's pool
+     * (see {@link #PERSISTER_MAX_THREAD_POOL_SIZE}).
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public int getQueuedWriteCount() {
+        return Math.max(0, pendingWrites.get() - maxThreadPoolSize);
+    }
+    
+    /**
+     * Returns the number of writes and deletes which were waiting for a thread once the last
+     * {@link #delta(Delta, PersistenceExceptionHandler)} had submitted them all; 
+     * a positive value indicates that deltas are bigger than the persister can write in parallel.
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public int getLastDeltaQueuedWriteCount() {
+        return lastDeltaQueuedWrites;
+    }
+    
+    /**
+     * Returns the total size of the mementos written, in bytes when UTF-8 encoded.
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Returns the total number of mementos to be written, including those skipped
+     * (see {@link #getSkippedWriteCount()}).
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+    
+    /**
+     * Returns the number of mementos not written because their content was identical to that last written,
+     * when {@link #PERSISTER_SKIP_UNCHANGED_WRITES} is set.
+     * 
+     * @since 0.9.0
+     */
+    @Beta
+    public long getSkippedWriteCount() {
+        return skippedWriteCount.get();
+    }
+
     @Override
     public void waitForWritesCompleted(Duration timeout) throws InterruptedException, TimeoutException {
         boolean locked = lock.readLock().tryLock(timeout.toMillisecondsRoundingUp(), TimeUnit.MILLISECONDS);
@@ -627,14 +818,15 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
-    private String read(String subPath) {
-        StoreObjectAccessor objectAccessor = objectStore.newAccessor(subPath);
-        return objectAccessor.get();
-    }
-
     private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
         try {
-            getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
+            String path = getPath(subPath, memento.getId());
+            if (skipUnchangedWrites) {
+                // the contents are needed to compare with those last written, before writing
+                write(path, getSerializerWithStandardClassLoader().toString(memento));
+            } else {
+                writeStreaming(path, memento);
+            }
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
         }
@@ -645,14 +837,71 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             if (content==null) {
                 LOG.warn("Null content for "+type+" "+id);
             }
-            getWriter(getPath(subPath, id)).put(content);
+            write(getPath(subPath, id), content);
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
     }
     
+    /** writes the content, unless {@link #skipUnchangedWrites} and it is the same as was last written to the path */
+    private void write(String path, String content) {
+        writeCount.incrementAndGet();
+        HashCode hash = null;
+        if (skipUnchangedWrites && content!=null) {
+            hash = WRITTEN_HASH_FUNCTION.hashUnencodedChars(content);
+            if (hash.equals(writtenHashes.get(path))) {
+                skippedWriteCount.incrementAndGet();
+                return;
+            }
+            // forget the old hash, in case the write fails part way
+            writtenHashes.remove(path);
+        }
+        getWriter(path).put(content);
+        if (content!=null) bytesWritten.addAndGet(Utf8.encodedLength(content));
+        if (hash!=null) writtenHashes.put(path, hash);
+    }
+    
+    /**
+     * Serializes the memento straight to the object store, so the contents are not held in memory as a whole;
+     * the write is retried (with a new stream) if serialization fails, e.g. because an attribute was concurrently modified.
+     */
+    private void writeStreaming(String path, final Memento memento) {
+        writeCount.incrementAndGet();
+        final MementoSerializer<Object> serializer = getSerializerWithStandardClassLoader();
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            final AtomicLong size = new AtomicLong();
+            final AtomicBoolean serializationFailed = new AtomicBoolean();
+            try {
+                getWriter(path).put(new ContentWriter() {
+                    @Override
+                    public void write(OutputStream out) throws IOException {
+                        CountingOutputStream countingOut = new CountingOutputStream(out);
+                        Writer writer = new OutputStreamWriter(countingOut, Charsets.UTF_8);
+                        try {
+                            serializer.serialize(memento, writer);
+                        } catch (RuntimeException e) {
+                            serializationFailed.set(true);
+                            throw e;
+                        }
+                        writer.flush();
+                        size.set(countingOut.getCount());
+                    }});
+                bytesWritten.addAndGet(size.get());
+                if (attempt>1) LOG.info("Success following previous serialization error");
+                return;
+            } catch (RuntimeException e) {
+                if (!serializationFailed.get() || attempt >= maxSerializationAttempts) throw e;
+                LOG.warn("Error serializing memento (attempt "+attempt+" of "+maxSerializationAttempts+") for "+memento+
+                        "; expected sometimes if attribute value modified", e);
+            }
+        }
+    }
+    
     private void delete(String subPath, String id, PersistenceExceptionHandler exceptionHandler) {
         try {
+            writtenHashes.remove(getPath(subPath, id));
             StoreObjectAccessorWithLock w = getWriter(getPath(subPath, id));
             w.delete();
             synchronized (writers) {
@@ -664,26 +913,43 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     }
 
     private ListenableFuture<?> asyncPersist(final String subPath, final Memento memento, final PersistenceExceptionHandler exceptionHandler) {
-        return executor.submit(new Runnable() {
+        return submitWrite(new Runnable() {
             public void run() {
                 persist(subPath, memento, exceptionHandler);
             }});
     }
 
     private ListenableFuture<?> asyncPersist(final String subPath, final BrooklynObjectType type, final String id, final String content, final PersistenceExceptionHandler exceptionHandler) {
-        return executor.submit(new Runnable() {
+        return submitWrite(new Runnable() {
             public void run() {
                 persist(subPath, type, id, content, exceptionHandler);
             }});
     }
 
     private ListenableFuture<?> asyncDelete(final String subPath, final String id, final PersistenceExceptionHandler exceptionHandler) {
-        return executor.submit(new Runnable() {
+        return submitWrite(new Runnable() {
             public void run() {
                 delete(subPath, id, exceptionHandler);
             }});
     }
     
+    private ListenableFuture<?> submitWrite(final Runnable write) {
+        pendingWrites.incrementAndGet();
+        try {
+            return executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        write.run();
+                    } finally {
+                        pendingWrites.decrementAndGet();
+                    }
+                }});
+        } catch (RuntimeException e) {
+            pendingWrites.decrementAndGet();
+            throw e;
+        }
+    }
+    
     private String getPath(String subPath, String id) {
         return subPath+"/"+Strings.makeValidFilename(id);
     }
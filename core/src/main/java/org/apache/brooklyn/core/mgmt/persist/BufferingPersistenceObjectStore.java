@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link PersistenceObjectStore} which may buffer writes, so that many can be written together:
+ * writes are visible to readers of this store immediately, but only durable once {@link #flush()} is called.
+ * {@link BrooklynMementoPersisterToObjectStore} flushes after writing each delta and checkpoint.
+ * 
+ * @since 0.9.0
+ */
+@Beta
+public interface BufferingPersistenceObjectStore extends PersistenceObjectStore {
+
+    /** writes anything buffered, blocking until it is durable; if this fails, the writes are retained for the next flush */
+    void flush();
+    
+}
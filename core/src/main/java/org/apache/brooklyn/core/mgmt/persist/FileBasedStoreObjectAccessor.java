@@ -18,10 +18,17 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.io.FileUtil;
 import org.apache.brooklyn.util.text.Strings;
@@ -69,6 +76,15 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
         }
     }
 
+    @Override
+    public InputStream getStream() {
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
     @Override
     public boolean exists() {
         return file.exists();
@@ -88,6 +104,30 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
         }
     }
 
+    @Override
+    public void put(ContentWriter contentWriter) {
+        boolean written = false;
+        try {
+            FileUtil.setFilePermissionsTo600(tmpFile);
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+            try {
+                contentWriter.write(out);
+            } finally {
+                out.close();
+            }
+            FileBasedObjectStore.moveFile(tmpFile, file);
+            written = true;
+        } catch (IOException e) {
+            throw Exceptions.propagate("Problem writing data to file "+file+" (via temporary file "+tmpFile+")", e);
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            if (!written && tmpFile.exists() && !tmpFile.delete()) {
+                LOG.warn("Unable to delete " + tmpFile.getAbsolutePath() + " after failed write. Probably still locked.");
+            }
+        }
+    }
+
     // TODO Should this write to the temporary file? Otherwise we'll risk getting a partial view of the write.
     @Override
     public void append(String val) {
@@ -0,0 +1,840 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.io.FileUtil;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link PersistenceObjectStore} which keeps all objects in a segmented, append-only log in a directory,
+ * rather than as a file per object as {@link FileBasedObjectStore} does.
+ * <p>
+ * Each put or delete appends a record to the current segment file. A single writer thread takes all the
+ * writes waiting at the time and appends them with one write and one sync, so persisting a delta of many
+ * objects costs one sequential write rather than a file write and rename per object. As with the file-based
+ * store, callers block until their write is durable. An in-memory index holds where the latest contents
+ * of each path are, and reads are positional reads from the segment.
+ * <p>
+ * A new segment is started when the current one reaches the max segment size. When more than half of the
+ * sealed segments' bytes have been superseded, the oldest segment is compacted in the background:
+ * its live records are appended again and the segment is deleted.
+ * <p>
+ * The index is rebuilt by scanning the segments in order when the store is prepared; a store which is
+ * not writing (e.g. on a hot standby node) catches up with new records whenever its contents are listed.
+ * A partial record at the end of a segment (e.g. from a crash during a write) is ignored.
+ * <p>
+ * Only one process may write to the log, enforced by a lock on {@value #LOCK_FILE_NAME} in the directory;
+ * within a process, a store which starts writing takes over from any other store writing to the same directory.
+ * This store is therefore not suitable where several nodes write to the same directory,
+ * e.g. HA nodes with a shared file system; use {@link FileBasedObjectStore} for that.
+ *
+ * @since 0.9.0
+ */
+@Beta
+public class LogBasedObjectStore extends FileBasedObjectStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogBasedObjectStore.class);
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64*1024*1024;
+    public static final Duration DEFAULT_COMPACTION_PERIOD = Duration.THIRTY_SECONDS;
+
+    public static final String LOCK_FILE_NAME = "wal.lock";
+
+    /** the fraction of the sealed segments' bytes which must be superseded before compacting */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int SHUTDOWN_TIMEOUT_MS = 10*1000;
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("wal-(\\d+)\\.log");
+
+    private static final int RECORD_MAGIC = 0x424c4f47;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    /** magic, type, timestamp, path length, data length */
+    private static final int HEADER_LENGTH = 4 + 1 + 8 + 4 + 4;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final int MAX_PATH_LENGTH = 64*1024;
+
+    /** stores writing in this process, keyed by directory, so a new store can take over from an old one */
+    private static final ConcurrentMap<File, LogBasedObjectStore> WRITERS = new ConcurrentHashMap<File, LogBasedObjectStore>();
+
+    /** where the latest contents of a path are */
+    private static class LogEntry {
+        final long segment;
+        final long dataOffset;
+        final int dataLength;
+        final int recordLength;
+        final long timestamp;
+
+        LogEntry(long segment, long dataOffset, int dataLength, int recordLength, long timestamp) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.recordLength = recordLength;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static class SegmentStats {
+        final AtomicLong totalBytes = new AtomicLong();
+        final AtomicLong liveBytes = new AtomicLong();
+    }
+
+    private static class PendingWrite {
+        final byte type;
+        final String path;
+        final byte[] data;
+        final long timestamp;
+        /** for records being moved by compaction, the entry being moved; the move is skipped if the path has since changed */
+        final LogEntry relocating;
+        final SettableFuture<Void> future = SettableFuture.create();
+
+        PendingWrite(byte type, String path, byte[] data, long timestamp, LogEntry relocating) {
+            this.type = type;
+            this.path = path;
+            this.data = data;
+            this.timestamp = timestamp;
+            this.relocating = relocating;
+        }
+    }
+
+    private static final PendingWrite STOP = new PendingWrite(TYPE_DELETE, null, null, 0, null);
+
+    private final long maxSegmentSize;
+    private final Duration compactionPeriod;
+
+    private final ConcurrentMap<String, LogEntry> index = new ConcurrentHashMap<String, LogEntry>();
+    private final ConcurrentMap<Long, SegmentStats> segmentStats = new ConcurrentHashMap<Long, SegmentStats>();
+    /** guards segments being deleted while they are read */
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final Map<Long, FileChannel> readChannels = new ConcurrentHashMap<Long, FileChannel>();
+    private final Object compactionMutex = new Object();
+
+    // guarded by this
+    private long scannedSegment = 0;
+    private long scannedOffset = 0;
+    private boolean closed = false;
+
+    // set, guarded by this, while this store is writing; only the writer thread mutates the index while writing
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<PendingWrite>();
+    private Thread writerThread;
+    private ScheduledExecutorService compactor;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    // only accessed by the writer thread
+    private FileChannel activeChannel;
+    private volatile long activeSegment;
+    private long activeSize;
+
+    public LogBasedObjectStore(File basedir) {
+        this(basedir, DEFAULT_MAX_SEGMENT_SIZE, DEFAULT_COMPACTION_PERIOD);
+    }
+
+    /**
+     * @param maxSegmentSize the size at which a new segment is started
+     * @param compactionPeriod how often to check whether the log needs compacting
+     */
+    public LogBasedObjectStore(File basedir, long maxSegmentSize, Duration compactionPeriod) {
+        super(basedir);
+        checkArgument(maxSegmentSize > 0, "maxSegmentSize must be positive");
+        checkArgument(checkNotNull(compactionPeriod, "compactionPeriod").isPositive(), "compactionPeriod must be positive");
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionPeriod = compactionPeriod;
+        log.debug("Log-based objectStore will use directory {}", basedir);
+    }
+
+    @Override
+    public void prepareForSharedUse(@Nullable PersistMode persistMode, HighAvailabilityMode haMode) {
+        super.prepareForSharedUse(persistMode, haMode);
+        refresh();
+    }
+
+    @Override
+    public void createSubPath(String subPath) {
+        // sub-paths are only part of the keys in the log; nothing to create
+    }
+
+    @Override
+    public StoreObjectAccessor newAccessor(String path) {
+        return new LogStoreObjectAccessor(checkNotNull(path, "path"));
+    }
+
+    @Override
+    public List<String> listContentsWithSubPath(String parentSubPath) {
+        Preconditions.checkNotNull(parentSubPath);
+        refresh();
+        String prefix = parentSubPath.endsWith("/") ? parentSubPath : parentSubPath+"/";
+        List<String> result = new ArrayList<String>();
+        for (String path : index.keySet()) {
+            if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return ImmutableList.copyOf(result);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        stopWriting(false);
+        closeReadChannels();
+        super.close();
+    }
+
+    @Override
+    public void deleteCompletely() {
+        stopWriting(false);
+        synchronized (this) {
+            resetIndex();
+        }
+        super.deleteCompletely();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("basedir", getBaseDir()).toString();
+    }
+
+    /** the number of segment files in the log */
+    @VisibleForTesting
+    public int getSegmentCount() {
+        return listSegments().size();
+    }
+
+    /**
+     * Compacts the log if enough of it has been superseded, as is done periodically in the background
+     * while this store is writing.
+     */
+    @VisibleForTesting
+    public void compact() {
+        synchronized (compactionMutex) {
+            try {
+                while (compactOldestSegmentIfNeeded()) {}
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                log.warn("Problem compacting "+this+" (will retry): "+e, e);
+            }
+        }
+    }
+
+    private class LogStoreObjectAccessor implements StoreObjectAccessor {
+        private final String path;
+
+        LogStoreObjectAccessor(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String get() {
+            byte[] bytes = getBytes();
+            return bytes == null ? null : new String(bytes, Charsets.UTF_8);
+        }
+
+        @Override
+        public byte[] getBytes() {
+            LogEntry entry = index.get(path);
+            return entry == null ? null : read(path, entry);
+        }
+
+        @Override
+        public InputStream getStream() {
+            byte[] bytes = getBytes();
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public boolean exists() {
+            return index.containsKey(path);
+        }
+
+        @Override
+        public void put(String val) {
+            if (val==null) val = "";
+            write(TYPE_PUT, path, val.getBytes(Charsets.UTF_8));
+        }
+
+        /** the log entry needs the length up front, so the contents are collected as bytes before being queued */
+        @Override
+        public void put(ContentWriter contentWriter) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                contentWriter.write(out);
+            } catch (IOException e) {
+                throw Exceptions.propagate("Problem generating contents of "+path, e);
+            }
+            write(TYPE_PUT, path, out.toByteArray());
+        }
+
+        @Override
+        public void append(String val) {
+            String existing = get();
+            put(existing == null ? val : existing + (val == null ? "" : val));
+        }
+
+        @Override
+        public void delete() {
+            if (exists()) write(TYPE_DELETE, path, new byte[0]);
+        }
+
+        @Override
+        public Date getLastModifiedDate() {
+            LogEntry entry = index.get(path);
+            return entry == null ? null : new Date(entry.timestamp);
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("store", LogBasedObjectStore.this).add("path", path).toString();
+        }
+    }
+
+    private void write(byte type, String path, byte[] data) {
+        PendingWrite write = new PendingWrite(type, path, data, System.currentTimeMillis(), null);
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Cannot write to "+path+"; "+this+" has been closed");
+            startWriting();
+            queue.add(write);
+        }
+        try {
+            write.future.get();
+        } catch (Exception e) {
+            throw Exceptions.propagate("Problem writing "+path+" to "+this, e);
+        }
+    }
+
+    private byte[] read(String path, LogEntry entry) {
+        try {
+            return readData(entry);
+        } catch (NoSuchFileException e) {
+            // segment compacted by another process since we read the log; catch up and try again
+            refresh();
+            LogEntry newEntry = index.get(path);
+            if (newEntry == null) return null;
+            try {
+                return readData(newEntry);
+            } catch (IOException e2) {
+                throw Exceptions.propagate("Problem reading "+path+" from "+this, e2);
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate("Problem reading "+path+" from "+this, e);
+        }
+    }
+
+    private byte[] readData(LogEntry entry) throws IOException {
+        segmentsLock.readLock().lock();
+        try {
+            FileChannel channel = readChannel(entry.segment);
+            ByteBuffer buffer = ByteBuffer.allocate(entry.dataLength);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, entry.dataOffset + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of "+segmentFile(entry.segment));
+                }
+            }
+            return buffer.array();
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    private FileChannel readChannel(long segment) throws IOException {
+        FileChannel result = readChannels.get(segment);
+        if (result == null) {
+            synchronized (readChannels) {
+                result = readChannels.get(segment);
+                if (result == null) {
+                    result = FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.READ);
+                    readChannels.put(segment, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void closeReadChannels() {
+        synchronized (readChannels) {
+            for (FileChannel channel : readChannels.values()) {
+                closeQuietly(channel);
+            }
+            readChannels.clear();
+        }
+    }
+
+    /**
+     * Starts the writer thread if this store is not already writing, taking over from any other store
+     * in this process writing to the same directory; catches up with what has been written before and starts a new segment.
+     */
+    private synchronized void startWriting() {
+        if (writerThread != null) return;
+        File basedir = getBaseDir();
+        LogBasedObjectStore previous = WRITERS.put(basedir.getAbsoluteFile(), this);
+        if (previous != null && previous != this) {
+            log.debug("{} taking over writing to {} from {}", new Object[] {this, basedir, previous});
+            previous.stopWriting(true);
+        }
+        try {
+            if (!basedir.exists()) {
+                if (!basedir.mkdirs() && !basedir.exists()) throw new IOException("Cannot create "+basedir);
+                FileUtil.setFilePermissionsTo700(basedir);
+            }
+            lockChannel = FileChannel.open(new File(basedir, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                closeQuietly(lockChannel);
+                lockChannel = null;
+                throw new IllegalStateException("Cannot write to "+this+"; the log is being written by another process");
+            }
+
+            refresh();
+            List<Long> segments = listSegments();
+            activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size()-1) + 1;
+            File segmentFile = segmentFile(activeSegment);
+            activeChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            FileUtil.setFilePermissionsTo600(segmentFile);
+            activeSize = 0;
+            segmentStats.put(activeSegment, new SegmentStats());
+        } catch (Exception e) {
+            WRITERS.remove(basedir.getAbsoluteFile(), this);
+            releaseLock();
+            throw Exceptions.propagate(e);
+        }
+
+        writerThread = new Thread(new Runnable() {
+                @Override public void run() {
+                    runWriter();
+                }}, "brooklyn-persistence-log-writer-"+basedir.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-persistence-log-compactor-%d")
+                .setDaemon(true)
+                .build());
+        compactor.scheduleWithFixedDelay(new Runnable() {
+                @Override public void run() {
+                    compact();
+                }}, compactionPeriod.toMilliseconds(), compactionPeriod.toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the compactor, then the writer thread once it has written everything queued before this call.
+     * If another store is taking over then this store re-reads the log, so it sees subsequent writes when it next catches up.
+     */
+    private void stopWriting(boolean reread) {
+        ScheduledExecutorService compactorToStop;
+        Thread writerToStop;
+        synchronized (this) {
+            compactorToStop = compactor;
+            writerToStop = writerThread;
+            compactor = null;
+        }
+        if (compactorToStop != null) {
+            compactorToStop.shutdownNow();
+            try {
+                compactorToStop.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+        synchronized (this) {
+            if (writerToStop == null || writerThread != writerToStop) return;
+            queue.add(STOP);
+            try {
+                writerToStop.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            }
+            if (writerToStop.isAlive()) {
+                log.warn("Writer for "+this+" did not stop within "+Duration.millis(SHUTDOWN_TIMEOUT_MS)+"; continuing");
+            }
+            writerThread = null;
+            closeQuietly(activeChannel);
+            activeChannel = null;
+            releaseLock();
+            WRITERS.remove(getBaseDir().getAbsoluteFile(), this);
+            if (reread) {
+                resetIndex();
+                refresh();
+            }
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            if (lock != null) lock.release();
+        } catch (IOException e) {
+            log.debug("Problem releasing lock for "+this+" (continuing): "+e);
+        }
+        lock = null;
+        closeQuietly(lockChannel);
+        lockChannel = null;
+    }
+
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<PendingWrite>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                log.debug("Writer for {} interrupted; stopping", this);
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE-1);
+            int stopIndex = batch.indexOf(STOP);
+            if (stopIndex >= 0) {
+                // anything after STOP was queued for a subsequent writer
+                List<PendingWrite> remaining = new ArrayList<PendingWrite>(batch.subList(stopIndex+1, batch.size()));
+                writeBatch(batch.subList(0, stopIndex));
+                for (PendingWrite write : remaining) queue.add(write);
+                return;
+            }
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<PendingWrite> toWrite = new ArrayList<PendingWrite>(batch.size());
+        for (PendingWrite write : batch) {
+            if (write.relocating != null && index.get(write.path) != write.relocating) {
+                // superseded since compaction read it
+                write.future.set(null);
+            } else {
+                toWrite.add(write);
+            }
+        }
+        if (toWrite.isEmpty()) return;
+
+        try {
+            if (activeSize >= maxSegmentSize) rollSegment();
+
+            long[] dataOffsets = new long[toWrite.size()];
+            int[] recordLengths = new int[toWrite.size()];
+            byte[][] paths = new byte[toWrite.size()][];
+            long totalLength = 0;
+            for (int i = 0; i < toWrite.size(); i++) {
+                paths[i] = toWrite.get(i).path.getBytes(Charsets.UTF_8);
+                recordLengths[i] = HEADER_LENGTH + paths[i].length + toWrite.get(i).data.length + CHECKSUM_LENGTH;
+                dataOffsets[i] = activeSize + totalLength + HEADER_LENGTH + paths[i].length;
+                totalLength += recordLengths[i];
+            }
+            if (totalLength > Integer.MAX_VALUE) throw new IOException("Batch of "+toWrite.size()+" writes too large for "+this);
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) totalLength);
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < toWrite.size(); i++) {
+                PendingWrite write = toWrite.get(i);
+                int start = buffer.position();
+                buffer.putInt(RECORD_MAGIC);
+                buffer.put(write.type);
+                buffer.putLong(write.timestamp);
+                buffer.putInt(paths[i].length);
+                buffer.putInt(write.data.length);
+                buffer.put(paths[i]);
+                buffer.put(write.data);
+                crc.reset();
+                crc.update(buffer.array(), start, buffer.position() - start);
+                buffer.putLong(crc.getValue());
+            }
+            buffer.flip();
+            try {
+                long position = activeSize;
+                while (buffer.hasRemaining()) {
+                    position += activeChannel.write(buffer, position);
+                }
+                activeChannel.force(false);
+            } catch (IOException e) {
+                // drop anything partially written, so later records are not hidden behind it
+                try {
+                    activeChannel.truncate(activeSize);
+                } catch (IOException e2) {
+                    log.warn("Problem truncating "+segmentFile(activeSegment)+" after failed write (continuing): "+e2);
+                }
+                throw e;
+            }
+            activeSize += totalLength;
+            segmentStats.get(activeSegment).totalBytes.addAndGet(totalLength);
+
+            for (int i = 0; i < toWrite.size(); i++) {
+                PendingWrite write = toWrite.get(i);
+                if (write.type == TYPE_PUT) {
+                    updateIndex(write.path, new LogEntry(activeSegment, dataOffsets[i], write.data.length, recordLengths[i], write.timestamp));
+                } else {
+                    updateIndex(write.path, null);
+                }
+                write.future.set(null);
+            }
+        } catch (Throwable t) {
+            log.warn("Problem writing "+toWrite.size()+" record(s) to "+this+": "+t);
+            for (PendingWrite write : toWrite) {
+                write.future.setException(t);
+            }
+            Exceptions.propagateIfFatal(t);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.close();
+        long newSegment = activeSegment + 1;
+        File segmentFile = segmentFile(newSegment);
+        activeChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        FileUtil.setFilePermissionsTo600(segmentFile);
+        segmentStats.put(newSegment, new SegmentStats());
+        activeSegment = newSegment;
+        activeSize = 0;
+        log.debug("Started segment {} of {}", newSegment, this);
+    }
+
+    /** must only be called by one thread at a time: the writer thread, or when catching up while holding the lock on this */
+    private void updateIndex(String path, LogEntry entry) {
+        LogEntry old = (entry == null) ? index.remove(path) : index.put(path, entry);
+        if (old != null) {
+            SegmentStats oldStats = segmentStats.get(old.segment);
+            if (oldStats != null) oldStats.liveBytes.addAndGet(-old.recordLength);
+        }
+        if (entry != null) {
+            segmentStats.get(entry.segment).liveBytes.addAndGet(entry.recordLength);
+        }
+    }
+
+    private boolean compactOldestSegmentIfNeeded() throws Exception {
+        synchronized (this) {
+            // only the writer can move records
+            if (writerThread == null) return false;
+        }
+        long currentSegment = activeSegment;
+        long sealedTotal = 0;
+        long sealedLive = 0;
+        long oldest = -1;
+        for (Map.Entry<Long, SegmentStats> entry : segmentStats.entrySet()) {
+            if (entry.getKey() >= currentSegment) continue;
+            sealedTotal += entry.getValue().totalBytes.get();
+            sealedLive += entry.getValue().liveBytes.get();
+            if (oldest < 0 || entry.getKey() < oldest) oldest = entry.getKey();
+        }
+        if (oldest < 0 || sealedTotal - sealedLive < sealedTotal * COMPACTION_THRESHOLD) return false;
+
+        // Always compacting the oldest segment means deletes can be dropped: there is no older put for them to hide
+        List<PendingWrite> relocations = new ArrayList<PendingWrite>();
+        for (Map.Entry<String, LogEntry> entry : index.entrySet()) {
+            LogEntry logEntry = entry.getValue();
+            if (logEntry.segment == oldest) {
+                PendingWrite relocation = new PendingWrite(TYPE_PUT, entry.getKey(), readData(logEntry), logEntry.timestamp, logEntry);
+                relocations.add(relocation);
+                queue.add(relocation);
+            }
+        }
+        for (PendingWrite relocation : relocations) {
+            relocation.future.get();
+        }
+        deleteSegment(oldest);
+        log.debug("Compacted segment {} of {}, moving {} live record(s)", new Object[] {oldest, this, relocations.size()});
+        return true;
+    }
+
+    private void deleteSegment(long segment) {
+        segmentsLock.writeLock().lock();
+        try {
+            FileChannel channel = readChannels.remove(segment);
+            closeQuietly(channel);
+            File file = segmentFile(segment);
+            if (!file.delete() && file.exists()) {
+                log.warn("Unable to delete compacted segment "+file+" of "+this);
+            }
+            segmentStats.remove(segment);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unless this store is writing (in which case its index is up-to-date), reads any records written since the log
+     * was last read; re-reads the whole log if segments have been compacted since.
+     */
+    private synchronized void refresh() {
+        if (writerThread != null) return;
+        List<Long> segments = listSegments();
+        for (Long segment : segmentStats.keySet()) {
+            if (!segments.contains(segment)) {
+                resetIndex();
+                break;
+            }
+        }
+        try {
+            for (Long segment : segments) {
+                if (segment < scannedSegment) continue;
+                long offset = (segment == scannedSegment) ? scannedOffset : 0;
+                if (!segmentStats.containsKey(segment)) segmentStats.put(segment, new SegmentStats());
+                scannedOffset = scanSegment(segment, offset);
+                scannedSegment = segment;
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate("Problem reading log of "+this, e);
+        }
+    }
+
+    private void resetIndex() {
+        index.clear();
+        segmentStats.clear();
+        closeReadChannels();
+        scannedSegment = 0;
+        scannedOffset = 0;
+    }
+
+    /** adds the records in the given segment, from the given offset, to the index; returns the offset after the last complete record */
+    private long scanSegment(long segment, long offset) throws IOException {
+        File file = segmentFile(segment);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return offset;
+        }
+        try {
+            long size = channel.size();
+            channel.position(offset);
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Channels.newInputStream(channel)), crc));
+            byte[] buffer = new byte[8*1024];
+            SegmentStats stats = segmentStats.get(segment);
+            while (offset + HEADER_LENGTH + CHECKSUM_LENGTH <= size) {
+                crc.reset();
+                int magic = in.readInt();
+                byte type = in.readByte();
+                long timestamp = in.readLong();
+                int pathLength = in.readInt();
+                int dataLength = in.readInt();
+                if (magic != RECORD_MAGIC || (type != TYPE_PUT && type != TYPE_DELETE)
+                        || pathLength < 0 || pathLength > MAX_PATH_LENGTH || dataLength < 0) {
+                    break;
+                }
+                int recordLength = HEADER_LENGTH + pathLength + dataLength + CHECKSUM_LENGTH;
+                if (offset + recordLength > size) break;
+                byte[] path = new byte[pathLength];
+                in.readFully(path);
+                for (int remaining = dataLength; remaining > 0; ) {
+                    int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (n < 0) throw new EOFException();
+                    remaining -= n;
+                }
+                long expectedChecksum = crc.getValue();
+                if (in.readLong() != expectedChecksum) break;
+
+                String pathString = new String(path, Charsets.UTF_8);
+                stats.totalBytes.addAndGet(recordLength);
+                if (type == TYPE_PUT) {
+                    updateIndex(pathString, new LogEntry(segment, offset + HEADER_LENGTH + pathLength, dataLength, recordLength, timestamp));
+                } else {
+                    updateIndex(pathString, null);
+                }
+                offset += recordLength;
+            }
+            if (offset < size && log.isDebugEnabled()) {
+                log.debug("Ignoring incomplete or corrupt record at offset {} of {} in {}", new Object[] {offset, file, this});
+            }
+            return offset;
+        } catch (EOFException e) {
+            return offset;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private List<Long> listSegments() {
+        String[] names = getBaseDir().list();
+        if (names == null) return ImmutableList.of();
+        List<Long> result = new ArrayList<Long>();
+        for (String name : names) {
+            Matcher matcher = SEGMENT_NAME_PATTERN.matcher(name);
+            if (matcher.matches()) result.add(Long.parseLong(matcher.group(1)));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private File segmentFile(long segment) {
+        return new File(getBaseDir(), String.format("wal-%010d.log", segment));
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Problem closing channel of "+this+" (continuing): "+e);
+        }
+    }
+}
@@ -18,9 +18,13 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeSyncRecord;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMemento;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.LookupContext;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 
 /** Serializes the given object; it is often used with {@link BrooklynMemento} for persisting and restoring,
  * though it can be used for any object (and is also used for the {@link ManagementNodeSyncRecord} instances) */
@@ -32,6 +36,14 @@ public interface MementoSerializer<T> {
             return memento;
         }
         @Override
+        public void serialize(String memento, Writer writer) {
+            try {
+                writer.write(memento);
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+        @Override
         public String fromString(String string) {
             return string;
         }
@@ -46,6 +58,8 @@ public interface MementoSerializer<T> {
     };
     
     String toString(T memento);
+    /** writes what {@link #toString(Object)} would return to the given writer, which is not closed */
+    void serialize(T memento, Writer writer);
     T fromString(String string);
     void setLookupContext(LookupContext lookupContext);
     void unsetLookupContext();
@@ -30,20 +30,61 @@ public class PersistenceActivityMetrics {
     final static int MAX_ERRORS = 200;
     
     long count=0, failureCount=0;
+    long totalDuration=0, maxDuration=0;
     Long lastSuccessTime, lastDuration, lastFailureTime;
+    Integer lastQueuedWrites, maxQueuedWrites;
+    Long bytesWritten, lastBytesWritten, currentPeriod;
+    Long writeCount, skippedWriteCount;
     List<Map<String,Object>> errorMessages = MutableList.of();
+    Map<String,Long> lastPhaseDurations;
 
-    public void noteSuccess(Duration duration) {
+    public synchronized void noteSuccess(Duration duration) {
         count++;
         lastSuccessTime = System.currentTimeMillis();
         lastDuration = duration.toMilliseconds();
+        noteDuration(lastDuration);
     }
     
-    public void noteFailure(Duration duration) {
+    public synchronized void noteFailure(Duration duration) {
         count++;
         failureCount++;
         lastFailureTime = System.currentTimeMillis();
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
+        if (duration!=null) noteDuration(lastDuration);
+    }
+    
+    private void noteDuration(long millis) {
+        totalDuration += millis;
+        maxDuration = Math.max(maxDuration, millis);
+    }
+
+    /** records the writes of the last activity, e.g. a persistence delta: how many writes had to queue
+     * for a persister thread, and the bytes written (in total, and by the last activity) */
+    public synchronized void noteWrites(int queuedWrites, long totalBytesWritten, long bytesWrittenByLast) {
+        lastQueuedWrites = queuedWrites;
+        maxQueuedWrites = maxQueuedWrites==null ? queuedWrites : Math.max(maxQueuedWrites, queuedWrites);
+        bytesWritten = totalBytesWritten;
+        lastBytesWritten = bytesWrittenByLast;
+    }
+
+    /** records how many items have been written in total, and how many of those writes were skipped as unchanged */
+    public synchronized void noteWriteCounts(long totalWrites, long totalSkippedWrites) {
+        writeCount = totalWrites;
+        skippedWriteCount = totalSkippedWrites;
+    }
+
+    /** records the period currently used for the activity, where that is adapted to load */
+    public synchronized void notePeriod(Duration period) {
+        currentPeriod = period.toMilliseconds();
+    }
+
+    /** records the time spent in each phase of the last activity, e.g. rebind */
+    public synchronized void notePhaseDurations(Map<String,Duration> durations) {
+        Map<String,Long> result = MutableMap.of();
+        for (Map.Entry<String,Duration> entry : durations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMilliseconds());
+        }
+        lastPhaseDurations = result;
     }
 
     public void noteError(String error) {
@@ -68,10 +109,25 @@ public class PersistenceActivityMetrics {
         result.put("lastSuccessTimeUtc", lastSuccessTime);
         result.put("lastSuccessTimeMillisSince", since(lastSuccessTime));
         result.put("lastDuration", lastDuration);
+        result.put("meanDuration", count>0 ? totalDuration/count : null);
+        result.put("maxDuration", count>0 ? maxDuration : null);
         result.put("failureCount", failureCount);
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
         result.put("errorMessages", MutableList.copyOf(errorMessages));
+        if (lastPhaseDurations!=null) result.put("lastPhaseDurations", MutableMap.copyOf(lastPhaseDurations));
+        if (lastQueuedWrites!=null) {
+            result.put("lastQueuedWrites", lastQueuedWrites);
+            result.put("maxQueuedWrites", maxQueuedWrites);
+            result.put("bytesWritten", bytesWritten);
+            result.put("lastBytesWritten", lastBytesWritten);
+        }
+        if (writeCount!=null) {
+            result.put("writeCount", writeCount);
+            result.put("skippedWriteCount", skippedWriteCount);
+            result.put("skippedWriteRatio", writeCount>0 ? (double)skippedWriteCount/writeCount : 0d);
+        }
+        if (currentPeriod!=null) result.put("currentPeriod", currentPeriod);
         return result;
     }
 
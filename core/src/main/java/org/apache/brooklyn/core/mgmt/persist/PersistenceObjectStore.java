@@ -18,6 +18,9 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
@@ -35,13 +38,27 @@ import com.google.common.annotations.Beta;
  */
 public interface PersistenceObjectStore {
 
+    /** writes the contents of an object to a stream, for {@link StoreObjectAccessor#put(ContentWriter)} */
+    @Beta
+    public interface ContentWriter {
+        /** writes the contents to the given stream, which should not be closed */
+        void write(OutputStream out) throws IOException;
+    }
+    
     /** accessor to an object/item in a {@link PersistenceObjectStore} */
     public interface StoreObjectAccessor {
         /** gets the object, or null if not found */
         String get();
         byte[] getBytes();
+        /** gets the object as a stream, which the caller must close, or null if not found */
+        @Beta
+        InputStream getStream();
         boolean exists();
         void put(String contentsToReplaceOrCreate);
+        /** as {@link #put(String)}, but with the contents written by the given callback (UTF-8 encoded, for text),
+         * so they need not be held in memory as a whole; if the callback throws, the object is not changed */
+        @Beta
+        void put(ContentWriter contentsToReplaceOrCreate);
         void append(String contentsToAppendOrCreate);
         void delete();
         // NB: creation date is available for many blobstores but 
@@ -20,6 +20,8 @@ package org.apache.brooklyn.core.mgmt.persist;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.Writer;
+
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.LookupContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +60,15 @@ public class RetryingMementoSerializer<T> implements MementoSerializer<T> {
         throw lastException;
     }
     
+    /**
+     * Serializes just once, as the output of a failed attempt may already have been written;
+     * callers should retry the whole write if they wish (e.g. to a fresh stream).
+     */
+    @Override
+    public void serialize(T memento, Writer writer) {
+        delegate.serialize(memento, writer);
+    }
+    
     @Override
     public T fromString(String string) {
         if (string==null)
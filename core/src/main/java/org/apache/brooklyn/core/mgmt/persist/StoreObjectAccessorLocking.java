@@ -18,6 +18,7 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.InputStream;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Set;
@@ -27,6 +28,7 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
@@ -100,6 +102,25 @@ public class StoreObjectAccessorLocking implements PersistenceObjectStore.StoreO
         }
     }
 
+    /** the stream is opened with the read lock held, but that is released before it is read */
+    @Override
+    public InputStream getStream() {
+        try {
+            queuedReaders.add(Thread.currentThread());
+            lock.readLock().lockInterruptibly();
+            try {
+                return delegate.getStream();
+                
+            } finally {
+                lock.readLock().unlock();
+            }
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            queuedReaders.remove(Thread.currentThread());
+        }
+    }
+
     @Override
     public boolean exists() {
         try {
@@ -145,6 +166,28 @@ public class StoreObjectAccessorLocking implements PersistenceObjectStore.StoreO
         }
     }
     
+    @Override
+    public void put(ContentWriter contentWriter) {
+        try {
+            queuedWriters.add(Thread.currentThread());
+            lock.writeLock().lockInterruptibly();
+            try {
+                queuedWriters.remove(Thread.currentThread());
+                if (hasScheduledPutOrDeleteWithNoRead()) 
+                    // don't bother writing if someone will write after us and no one is reading
+                    return;
+                delegate.put(contentWriter);
+                
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            queuedWriters.remove(Thread.currentThread());
+        }
+    }
+    
     @Override
     public void append(String val) {
         try {
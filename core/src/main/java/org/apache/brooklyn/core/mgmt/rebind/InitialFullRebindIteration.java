@@ -26,6 +26,7 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
@@ -47,6 +48,9 @@ public class InitialFullRebindIteration extends RebindIteration {
 
     private static final Logger LOG = LoggerFactory.getLogger(InitialFullRebindIteration.class);
     
+    /** raw data already loaded by the caller, to use instead of loading it from the persister */
+    protected BrooklynMementoRawData preloadedRawData;
+    
     public InitialFullRebindIteration(RebindManagerImpl rebindManager, 
             ManagementNodeState mode,
             ClassLoader classLoader, RebindExceptionHandler exceptionHandler,
@@ -69,11 +73,16 @@ public class InitialFullRebindIteration extends RebindIteration {
         super.doRun();
     }
 
+    /** Supplies raw data already loaded from the persister, to rebind from instead of loading it again. */
+    public void setPreloadedRawData(BrooklynMementoRawData preloadedRawData) {
+        this.preloadedRawData = preloadedRawData;
+    }
+
     @Override
     protected void loadManifestFiles() throws Exception {
         checkEnteringPhase(1);
         Preconditions.checkState(mementoRawData==null, "Memento raw data should not yet be set when calling this");
-        mementoRawData = persistenceStoreAccess.loadMementoRawData(exceptionHandler);
+        mementoRawData = (preloadedRawData != null) ? preloadedRawData : persistenceStoreAccess.loadMementoRawData(exceptionHandler);
         
         preprocessManifestFiles();
         
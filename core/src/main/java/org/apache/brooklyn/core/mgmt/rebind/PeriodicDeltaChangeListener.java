@@ -18,8 +18,11 @@
  */
 package org.apache.brooklyn.core.mgmt.rebind;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
@@ -35,19 +38,23 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
-import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 import org.apache.brooklyn.api.policy.Policy;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
+import org.apache.brooklyn.core.mgmt.rebind.dto.BasicEntityMemento;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
@@ -63,6 +70,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -74,11 +82,15 @@ import com.google.common.collect.Sets;
  * prevent hammering the persister when a bunch of entity attributes change (e.g. when the entity
  * has just polled over JMX/http/etc). Such a scheduled-write approach would be similar to the 
  * Nagle buffering algorithm in TCP (see tcp_nodelay).
+ * <p>
+ * Part of that can be had with {@link #setMinWriteInterval(Duration)}, which holds back changes to an object
+ * written recently to a later delta, and {@link #setAdaptivePeriod(boolean)}, which persists more often
+ * while the persister keeps up and backs off while it does not.
  * 
  * @author aled
  *
  */
-public class PeriodicDeltaChangeListener implements ChangeListener {
+public class PeriodicDeltaChangeListener implements AttributeChangeListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(PeriodicDeltaChangeListener.class);
 
@@ -93,6 +105,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         private Set<Feed> feeds = Sets.newLinkedHashSet();
         private Set<CatalogItem<?, ?>> catalogItems = Sets.newLinkedHashSet();
         
+        /** entities (also in {@link #entities}) which have only had the given attributes changed */
+        private Map<Entity, Set<AttributeSensor<?>>> changedAttributesOnly = Maps.newLinkedHashMap();
+        
         private Set<String> removedLocationIds = Sets.newLinkedHashSet();
         private Set<String> removedEntityIds = Sets.newLinkedHashSet();
         private Set<String> removedPolicyIds = Sets.newLinkedHashSet();
@@ -115,6 +130,17 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             if (type==BrooklynObjectType.CATALOG_ITEM) {
                 removedCatalogItemIds.remove(instance.getId());
             }
+            changedAttributesOnly.remove(instance);
+        }
+        
+        public void addAttributeChange(Entity entity, AttributeSensor<?> attribute) {
+            if (entities.add(entity)) {
+                changedAttributesOnly.put(entity, Sets.<AttributeSensor<?>>newLinkedHashSet());
+            }
+            Set<AttributeSensor<?>> changedAttributes = changedAttributesOnly.get(entity);
+            if (changedAttributes != null) {
+                changedAttributes.add(attribute);
+            }
         }
         
         public void addIfNotRemoved(BrooklynObject instance) {
@@ -124,10 +150,32 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             }
         }
 
+        /**
+         * Moves the given changed instance, and any record of only attributes having changed, to the other collector;
+         * unless it has since been removed there.
+         */
+        public void moveTo(BrooklynObject instance, DeltaCollector other) {
+            BrooklynObjectType type = BrooklynObjectType.of(instance);
+            getUnsafeCollectionOfType(type).remove(instance);
+            Set<AttributeSensor<?>> changedAttributes = changedAttributesOnly.remove(instance);
+            if (other.getRemovedIdsOfType(type).contains(instance.getId())) {
+                return;
+            }
+            if (other.getUnsafeCollectionOfType(type).add(instance)) {
+                if (changedAttributes != null) other.changedAttributesOnly.put((Entity)instance, changedAttributes);
+            } else if (changedAttributes == null) {
+                other.changedAttributesOnly.remove(instance);
+            } else {
+                Set<AttributeSensor<?>> otherChangedAttributes = other.changedAttributesOnly.get(instance);
+                if (otherChangedAttributes != null) otherChangedAttributes.addAll(changedAttributes);
+            }
+        }
+
         public void remove(BrooklynObject instance) {
             BrooklynObjectType type = BrooklynObjectType.of(instance);
             getUnsafeCollectionOfType(type).remove(instance);
             getRemovedIdsOfType(type).add(instance.getId());
+            changedAttributesOnly.remove(instance);
         }
 
         @SuppressWarnings("unchecked")
@@ -170,6 +218,17 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     private final PersistenceExceptionHandler exceptionHandler;
     
     private final Duration period;
+    
+    /** bounds on the period, as multiples of the configured period, when {@link #adaptivePeriod} */
+    private static final double MIN_ADAPTIVE_PERIOD_MULTIPLE = 0.25;
+    private static final double MAX_ADAPTIVE_PERIOD_MULTIPLE = 8;
+    
+    private volatile boolean adaptivePeriod = false;
+    private volatile Duration currentPeriod;
+    private volatile Duration minWriteInterval = Duration.ZERO;
+    
+    /** when each object was last written, if {@link #minWriteInterval} is set; only accessed when persisting */
+    private final Map<String, Long> lastWriteTimes = Maps.newConcurrentMap();
         
     private DeltaCollector deltaCollector = new DeltaCollector();
 
@@ -181,6 +240,14 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     private final boolean persistPoliciesEnabled;
     private final boolean persistEnrichersEnabled;
     private final boolean persistFeedsEnabled;
+    private final boolean partialEntityMementosEnabled;
+    
+    /**
+     * the memento last persisted for each entity, if {@link #partialEntityMementosEnabled}; only accessed when persisting.
+     * This holds a memento for every persisted entity, in addition to the entity itself
+     * (see {@link BrooklynFeatureEnablement#FEATURE_PARTIAL_ENTITY_MEMENTOS}).
+     */
+    private final Map<String, EntityMemento> lastEntityMementos = Maps.newConcurrentMap();
     
     private final Semaphore persistingMutex = new Semaphore(1);
     private final Object startStopMutex = new Object();
@@ -194,10 +261,32 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         this.exceptionHandler = exceptionHandler;
         this.metrics = metrics;
         this.period = period;
+        this.currentPeriod = period;
         
         this.persistPoliciesEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_POLICY_PERSISTENCE_PROPERTY);
         this.persistEnrichersEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_ENRICHER_PERSISTENCE_PROPERTY);
         this.persistFeedsEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_FEED_PERSISTENCE_PROPERTY);
+        this.partialEntityMementosEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_PARTIAL_ENTITY_MEMENTOS);
+    }
+    
+    /**
+     * Sets the minimum time between writes of any one object: changes to an object within that time
+     * of it being written are held back to a later delta, so a burst of changes results in a single write.
+     * Removals are not held back, nor is anything when persistence is forced (e.g. {@link #persistNowSafely()}).
+     */
+    public void setMinWriteInterval(Duration minWriteInterval) {
+        this.minWriteInterval = checkNotNull(minWriteInterval, "minWriteInterval");
+        if (!minWriteInterval.isPositive()) lastWriteTimes.clear();
+    }
+    
+    /**
+     * Sets whether to adapt the time between deltas to the load on the persister. After each periodic delta,
+     * the period is doubled (up to 8 times the configured period) if writes queued for a persister thread
+     * or the delta took more than half the period; it is halved (down to a quarter of the configured period)
+     * if nothing queued and the delta took less than a quarter of the period.
+     */
+    public void setAdaptivePeriod(boolean adaptivePeriod) {
+        this.adaptivePeriod = adaptivePeriod;
     }
     
     @SuppressWarnings("unchecked")
@@ -208,12 +297,15 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 return;
             }
             state = ListenerState.RUNNING;
+            currentPeriod = period;
 
             Callable<Task<?>> taskFactory = new Callable<Task<?>>() {
                 @Override public Task<Void> call() {
                     return Tasks.<Void>builder().dynamic(false).displayName("periodic-persister").body(new Callable<Void>() {
                         public Void call() {
-                            persistNowSafely();
+                            Stopwatch timer = Stopwatch.createStarted();
+                            persistNowSafely(false, false);
+                            if (adaptivePeriod) adaptPeriod(Duration.of(timer));
                             return null;
                         }}).build();
                 }
@@ -253,6 +345,8 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 synchronized (this) {
                     deltaCollector = new DeltaCollector();
                 }
+                lastEntityMementos.clear();
+                lastWriteTimes.clear();
             } finally {
                 state = ListenerState.STOPPED;
             }
@@ -321,6 +415,10 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         
         // collect references
         for (Entity entity : deltaCollector.entities) {
+            if (partialEntityMementosEnabled && deltaCollector.changedAttributesOnly.containsKey(entity)) {
+                // only its attributes have changed; its locations and adjuncts will have told us of their own changes
+                continue;
+            }
             // FIXME How to let the policy/location tell us about changes? Don't do this every time!
             for (Location location : entity.getLocations()) {
                 Collection<Location> findLocationsInHierarchy = TreeUtils.findLocationsInHierarchy(location);
@@ -342,15 +440,45 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * Sets the period for the next periodic delta, based on how long the last one took
+     * and whether the persister had to queue its writes; see {@link #setAdaptivePeriod(boolean)}.
+     */
+    private void adaptPeriod(Duration lastDuration) {
+        ScheduledTask task = scheduledTask;
+        if (task == null || !isActive()) return;
+        
+        int queuedWrites = (persister instanceof BrooklynMementoPersisterToObjectStore)
+                ? ((BrooklynMementoPersisterToObjectStore)persister).getLastDeltaQueuedWriteCount() : 0;
+        Duration nextPeriod = currentPeriod;
+        if (queuedWrites > 0 || lastDuration.isLongerThan(currentPeriod.half())) {
+            nextPeriod = Duration.min(currentPeriod.multiply(2), period.multiply(MAX_ADAPTIVE_PERIOD_MULTIPLE));
+        } else if (lastDuration.isShorterThan(currentPeriod.multiply(0.25))) {
+            nextPeriod = Duration.max(currentPeriod.half(), period.multiply(MIN_ADAPTIVE_PERIOD_MULTIPLE));
+        }
+        if (!nextPeriod.equals(currentPeriod)) {
+            if (LOG.isTraceEnabled()) LOG.trace("Adapting persistence period from {} to {} (last delta took {}, with {} writes queued)",
+                    new Object[] {currentPeriod, nextPeriod, lastDuration, queuedWrites});
+            currentPeriod = nextPeriod;
+            task.period(nextPeriod);
+        }
+        metrics.notePeriod(nextPeriod);
+    }
+    
+    /** Persists all changes, without holding back any for {@link #setMinWriteInterval(Duration)}. */
     @VisibleForTesting
     public boolean persistNowSafely() {
-        return persistNowSafely(false);
+        return persistNowSafely(false, true);
     }
     
     private boolean persistNowSafely(boolean alreadyHasMutex) {
+        return persistNowSafely(alreadyHasMutex, true);
+    }
+    
+    private boolean persistNowSafely(boolean alreadyHasMutex, boolean force) {
         Stopwatch timer = Stopwatch.createStarted();
         try {
-            persistNowInternal(alreadyHasMutex);
+            persistNowInternal(alreadyHasMutex, force);
             metrics.noteSuccess(Duration.of(timer));
             return true;
         } catch (RuntimeInterruptedException e) {
@@ -374,7 +502,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
-    protected void persistNowInternal(boolean alreadyHasMutex) {
+    protected void persistNowInternal(boolean alreadyHasMutex, boolean force) {
         if (!isActive() && state != ListenerState.STOPPING) {
             return;
         }
@@ -390,6 +518,10 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 deltaCollector = new DeltaCollector();
             }
             
+            if (!force && minWriteInterval.isPositive()) {
+                holdBackRecentlyWritten(prevDeltaCollector);
+            }
+            
             if (LOG.isDebugEnabled() && shouldLogCheckpoint()) LOG.debug("Checkpointing delta of memento: "
                     + "updating entities={}, locations={}, policies={}, enrichers={}, catalog items={}; "
                     + "removing entities={}, locations={}, policies={}, enrichers={}, catalog items={}",
@@ -415,7 +547,17 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                     for (BrooklynObject instance: prevDeltaCollector.getCollectionOfType(type)) {
                         try {
-                            persisterDelta.add(type, ((BrooklynObjectInternal)instance).getRebindSupport().getMemento());
+                            Memento memento = null;
+                            if (type==BrooklynObjectType.ENTITY && partialEntityMementosEnabled) {
+                                memento = newPatchedEntityMemento((Entity)instance, prevDeltaCollector.changedAttributesOnly.get(instance));
+                            }
+                            if (memento == null) {
+                                memento = ((BrooklynObjectInternal)instance).getRebindSupport().getMemento();
+                            }
+                            if (type==BrooklynObjectType.ENTITY && partialEntityMementosEnabled) {
+                                lastEntityMementos.put(instance.getId(), (EntityMemento)memento);
+                            }
+                            persisterDelta.add(type, memento);
                         } catch (Exception e) {
                             exceptionHandler.onGenerateMementoFailed(type, instance, e);
                         }
@@ -424,6 +566,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                     persisterDelta.removed(type, prevDeltaCollector.getRemovedIdsOfType(type));
                 }
+                for (String removedEntityId : prevDeltaCollector.removedEntityIds) {
+                    lastEntityMementos.remove(removedEntityId);
+                }
 
                 /*
                  * Need to guarantee "happens before", with any thread that subsequently reads
@@ -435,7 +580,19 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 synchronized (new Object()) {}
 
                 // Tell the persister to persist it
+                long bytesWrittenBefore = (persister instanceof BrooklynMementoPersisterToObjectStore)
+                        ? ((BrooklynMementoPersisterToObjectStore)persister).getBytesWritten() : 0;
                 persister.delta(persisterDelta, exceptionHandler);
+                
+                if (persister instanceof BrooklynMementoPersisterToObjectStore) {
+                    BrooklynMementoPersisterToObjectStore objectStorePersister = (BrooklynMementoPersisterToObjectStore)persister;
+                    long bytesWritten = objectStorePersister.getBytesWritten();
+                    metrics.noteWrites(objectStorePersister.getLastDeltaQueuedWriteCount(), bytesWritten, bytesWritten - bytesWrittenBefore);
+                    metrics.noteWriteCounts(objectStorePersister.getWriteCount(), objectStorePersister.getSkippedWriteCount());
+                }
+                if (minWriteInterval.isPositive()) {
+                    recordWriteTimes(prevDeltaCollector);
+                }
             }
         } catch (Exception e) {
             if (isActive()) {
@@ -453,6 +610,70 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * Moves objects written within the last {@link #minWriteInterval} from the given collector to the current one,
+     * so they are written by a later delta.
+     */
+    private void holdBackRecentlyWritten(DeltaCollector collector) {
+        long now = System.currentTimeMillis();
+        long minInterval = minWriteInterval.toMilliseconds();
+        List<BrooklynObject> heldBack = Lists.newArrayList();
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (BrooklynObject instance: collector.getCollectionOfType(type)) {
+                Long lastWriteTime = lastWriteTimes.get(instance.getId());
+                if (lastWriteTime != null && now - lastWriteTime < minInterval) {
+                    heldBack.add(instance);
+                }
+            }
+        }
+        if (heldBack.isEmpty()) return;
+        
+        if (LOG.isTraceEnabled()) LOG.trace("Holding back {} recently written objects to a later delta: {}", heldBack.size(), limitedCountString(heldBack));
+        synchronized (this) {
+            for (BrooklynObject instance : heldBack) {
+                collector.moveTo(instance, deltaCollector);
+            }
+        }
+    }
+    
+    private void recordWriteTimes(DeltaCollector collector) {
+        long now = System.currentTimeMillis();
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (BrooklynObject instance: collector.getCollectionOfType(type)) {
+                lastWriteTimes.put(instance.getId(), now);
+            }
+            for (String removedId : collector.getRemovedIdsOfType(type)) {
+                lastWriteTimes.remove(removedId);
+            }
+        }
+    }
+    
+    /**
+     * Returns the memento last persisted for the entity, updated with the current values of the given attributes;
+     * or null if a new memento must be generated, e.g. if other things about the entity have changed
+     * (indicated by null attributes) or it has not been persisted since this listener started.
+     * <p>
+     * Only values of attributes already in the previous memento are patched, in place, so that the result is
+     * the same as a newly generated memento. If an attribute is new, or its value is now null (which might
+     * mean it has been removed), a new memento is generated.
+     */
+    private EntityMemento newPatchedEntityMemento(Entity entity, Set<AttributeSensor<?>> changedAttributes) {
+        if (changedAttributes == null) return null;
+        EntityMemento previous = lastEntityMementos.get(entity.getId());
+        // subclasses might hold other state, which we don't know how to copy
+        if (previous == null || previous.getClass() != BasicEntityMemento.class) return null;
+        
+        Map<AttributeSensor<?>, Object> previousAttributes = previous.getAttributes();
+        BasicEntityMemento.Builder builder = BasicEntityMemento.builder().from(previous);
+        for (AttributeSensor<?> attribute : changedAttributes) {
+            if (!previousAttributes.containsKey(attribute)) return null;
+            Object value = entity.sensors().get(attribute);
+            if (value == null) return null;
+            builder.attribute(attribute, value);
+        }
+        return builder.build();
+    }
+    
     private static String limitedCountString(Collection<?> items) {
         if (items==null) return null;
         int size = items.size();
@@ -498,6 +719,23 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * As {@link #onChanged(BrooklynObject)}, but recording that only the given attribute has changed,
+     * so if no other changes are reported the entity's previous memento can be updated rather than
+     * a new one generated (see {@link BrooklynFeatureEnablement#FEATURE_PARTIAL_ENTITY_MEMENTOS}).
+     */
+    @Override
+    public synchronized void onAttributeChanged(Entity entity, AttributeSensor<?> attribute) {
+        if (LOG.isTraceEnabled()) LOG.trace("onAttributeChanged: {} {}", entity, attribute.getName());
+        if (!isStopped()) {
+            if (partialEntityMementosEnabled) {
+                deltaCollector.addAttributeChange(entity, attribute);
+            } else {
+                deltaCollector.add(entity);
+            }
+        }
+    }
+    
     public PersistenceExceptionHandler getExceptionHandler() {
         return exceptionHandler;
     }
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
+import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.api.objs.EntityAdjunct;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
+import org.apache.brooklyn.core.mgmt.internal.ManagementTransitionMode;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+
+/**
+ * Rebinds, in a read-only (hot proxy) mode, only what has changed in the persisted state since
+ * the previous read-only rebind (see {@link RebindManagerImpl#REBIND_READ_ONLY_DELTAS}).
+ * <p>
+ * Changed and new entities are reconstructed along with their adjuncts (an entity is also treated as changed
+ * if any of its adjuncts has changed); entities no longer persisted are unmanaged; everything else,
+ * including the proxies and instances of unchanged entities, is left as it is and looked up from the management context.
+ * <p>
+ * Catalog items and locations are not handled incrementally: if either has changed, {@link #isApplicable()} 
+ * returns false and the caller should do a full rebind instead.
+ */
+public class ReadOnlyDeltaRebindIteration extends RebindIteration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadOnlyDeltaRebindIteration.class);
+
+    protected final BrooklynMementoRawData deltaRawData;
+    protected final Set<String> removedEntityIds;
+    protected final String fullRebindReason;
+    
+    public ReadOnlyDeltaRebindIteration(RebindManagerImpl rebindManager, 
+            ManagementNodeState mode,
+            ClassLoader classLoader, RebindExceptionHandler exceptionHandler,
+            Semaphore rebindActive, AtomicInteger readOnlyRebindCount, PersistenceActivityMetrics rebindMetrics, BrooklynMementoPersister persistenceStoreAccess,
+            BrooklynMementoRawData previousRawData, BrooklynMementoRawData currentRawData) {
+        super(rebindManager, mode, classLoader, exceptionHandler, rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess);
+        Preconditions.checkNotNull(previousRawData, "previousRawData");
+        Preconditions.checkNotNull(currentRawData, "currentRawData");
+        
+        if (!currentRawData.getCatalogItems().equals(previousRawData.getCatalogItems())) {
+            fullRebindReason = "catalog items changed";
+        } else if (!currentRawData.getLocations().equals(previousRawData.getLocations())) {
+            fullRebindReason = "locations changed";
+        } else {
+            fullRebindReason = null;
+        }
+        
+        if (fullRebindReason != null) {
+            deltaRawData = null;
+            removedEntityIds = null;
+        } else {
+            Set<String> changedEntityIds = changedIds(previousRawData.getEntities(), currentRawData.getEntities());
+            Set<String> changedAdjunctIds = MutableSet.of();
+            for (BrooklynObjectType type : ImmutableList.of(BrooklynObjectType.POLICY, BrooklynObjectType.ENRICHER, BrooklynObjectType.FEED)) {
+                changedAdjunctIds.addAll(changedIds(previousRawData.getObjectsOfType(type), currentRawData.getObjectsOfType(type)));
+            }
+            if (!changedAdjunctIds.isEmpty()) {
+                // new adjuncts are listed in their entity's memento, so that will also have changed;
+                // for other adjuncts, the entity is the one they are currently attached to
+                Map<String, String> adjunctOwners = adjunctOwners();
+                for (String adjunctId : changedAdjunctIds) {
+                    String entityId = adjunctOwners.get(adjunctId);
+                    if (entityId != null && currentRawData.getEntities().containsKey(entityId)) {
+                        changedEntityIds.add(entityId);
+                    }
+                }
+            }
+            
+            BrooklynMementoRawData.Builder delta = BrooklynMementoRawData.builder();
+            for (String entityId : changedEntityIds) {
+                copyEntityAndAdjuncts(currentRawData, entityId, delta);
+            }
+            deltaRawData = delta.build();
+            removedEntityIds = Sets.difference(previousRawData.getEntities().keySet(), currentRawData.getEntities().keySet()).immutableCopy();
+        }
+    }
+
+    /** ids of items which are new or whose contents differ */
+    private static Set<String> changedIds(Map<String, String> previous, Map<String, String> current) {
+        Set<String> result = MutableSet.of();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!Objects.equal(entry.getValue(), previous.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+    
+    /** ids of the entities to which adjuncts are currently attached, keyed by adjunct id */
+    private Map<String, String> adjunctOwners() {
+        Map<String, String> result = MutableMap.of();
+        for (Entity entity : managementContext.getEntityManager().getEntities()) {
+            // bypass the proxy, which does not permit this on read-only entities
+            EntityInternal entityImpl = Entities.deproxy(entity);
+            Iterable<EntityAdjunct> adjuncts = Iterables.<EntityAdjunct>concat(entityImpl.policies(), entityImpl.enrichers(), 
+                entityImpl.feeds().getFeeds());
+            for (EntityAdjunct adjunct : adjuncts) {
+                result.put(adjunct.getId(), entity.getId());
+            }
+        }
+        return result;
+    }
+
+    /** Whether this can bring the read-only state up to date; if not, see {@link #getFullRebindReason()}. */
+    public boolean isApplicable() {
+        return fullRebindReason == null;
+    }
+    
+    /** Why a full rebind is needed instead, or null if this {@link #isApplicable()}. */
+    public String getFullRebindReason() {
+        return fullRebindReason;
+    }
+    
+    /** Whether nothing has changed, so there is nothing to rebind. */
+    public boolean isUnchanged() {
+        Preconditions.checkState(isApplicable(), "Not applicable: %s", fullRebindReason);
+        return deltaRawData.isEmpty() && removedEntityIds.isEmpty();
+    }
+
+    @Override
+    protected boolean isRebindingActiveAgain() {
+        return false;
+    }
+
+    @Override
+    protected void doRun() throws Exception {
+        Preconditions.checkState(ManagementNodeState.isHotProxy(mode), "Delta rebind only supported in read-only modes, not "+mode);
+        Preconditions.checkState(isApplicable(), "Not applicable: %s", fullRebindReason);
+        LOG.debug("Rebinding changes ("+mode+", iteration "+readOnlyRebindCount+") from "+rebindManager.getPersister().getBackingStoreDescription()+
+            ": entities "+deltaRawData.getEntities().keySet()+(removedEntityIds.isEmpty() ? "" : ", removing "+removedEntityIds));
+        super.doRun();
+    }
+
+    @Override
+    protected void loadManifestFiles() throws Exception {
+        checkEnteringPhase(1);
+        Preconditions.checkState(mementoRawData==null, "Memento raw data should not yet be set when calling this");
+        mementoRawData = deltaRawData;
+        
+        preprocessManifestFiles();
+    }
+
+    @Override
+    protected void rebuildCatalog() {
+        checkEnteringPhase(2);
+        
+        // skip; catalog is unchanged
+    }
+    
+    @Override
+    protected Collection<String> getMementoRootEntities() {
+        // all changed entities are roots here, as management does not recurse into unchanged children
+        return memento.getEntityIds();
+    }
+
+    @Override
+    protected void cleanupOldLocations(Set<String> oldLocations) {
+        // not applicable here; locations are unchanged
+    }
+    
+    @Override
+    protected void cleanupOldEntities(Set<String> oldEntities) {
+        // only those no longer persisted; the others are unchanged
+        EntityManagerInternal entityManager = (EntityManagerInternal)managementContext.getEntityManager();
+        for (String oldEntityId: removedEntityIds) {
+            Entity oldEntity = entityManager.getEntity(oldEntityId);
+            if (oldEntity != null) {
+                entityManager.unmanage(oldEntity, ManagementTransitionMode.guessing(
+                    BrooklynObjectManagementMode.MANAGED_PRIMARY, BrooklynObjectManagementMode.NONEXISTENT));
+            }
+        }
+    }
+
+}
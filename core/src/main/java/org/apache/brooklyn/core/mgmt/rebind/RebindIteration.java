@@ -26,10 +26,17 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.xml.xpath.XPathConstants;
+
 import org.apache.brooklyn.api.catalog.BrooklynCatalog;
 import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.api.entity.Application;
@@ -91,6 +98,8 @@ import org.apache.brooklyn.core.objs.proxy.InternalPolicyFactory;
 import org.apache.brooklyn.core.policy.AbstractPolicy;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.xstream.XmlUtil;
 import org.apache.brooklyn.util.core.flags.FlagUtils;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
@@ -100,10 +109,12 @@ import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.NodeList;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -178,6 +189,16 @@ public abstract class RebindIteration {
     /** phase is used to ensure our steps are run as we've expected, and documented (in javadoc at top).
      * it's worth the extra effort due to the complication and the subtleties. */
     protected int phase = 0;
+    protected Stopwatch phaseTimer;
+    /** time taken in each phase, keyed by {@link #PHASE_NAMES} */
+    protected final Map<String, Duration> phaseDurations = MutableMap.of();
+    
+    protected static final List<String> PHASE_NAMES = ImmutableList.of("loadManifests", "rebuildCatalog", 
+        "instantiateLocationsAndEntities", "instantiateMementos", "instantiateAdjuncts", "reconstruct", 
+        "associateAdjuncts", "manage");
+    
+    /** see {@link RebindManagerImpl#REBIND_PARALLELISM} */
+    protected final int parallelism;
 
     // set in first phase
     
@@ -217,6 +238,8 @@ public abstract class RebindIteration {
         rebindContext = new RebindContextImpl(managementContext, exceptionHandler, classLoader);
         reflections = new Reflections(classLoader).applyClassRenames(DeserializingClassRenamesProvider.loadDeserializingClassRenames());
         instantiator = new BrooklynObjectInstantiator(classLoader, rebindContext, reflections);
+        Integer configuredParallelism = managementContext.getConfig().getConfig(RebindManagerImpl.REBIND_PARALLELISM);
+        parallelism = (configuredParallelism == null) ? 1 : Math.max(1, configuredParallelism);
         
         if (mode==ManagementNodeState.HOT_STANDBY || mode==ManagementNodeState.HOT_BACKUP) {
             rebindContext.setAllReadOnly();
@@ -267,10 +290,13 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
             
             rebindMetrics.noteSuccess(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(phaseDurations);
             noteErrors(exceptionHandler, null);
             
         } catch (Exception e) {
             rebindMetrics.noteFailure(Duration.of(timer));
+            notePhaseEnded();
+            rebindMetrics.notePhaseDurations(phaseDurations);
             
             Exceptions.propagateIfFatal(e);
             noteErrors(exceptionHandler, e);
@@ -283,8 +309,16 @@ public abstract class RebindIteration {
     }
     
     protected void checkEnteringPhase(int targetPhase) {
+        notePhaseEnded();
         phase++;
         checkContinuingPhase(targetPhase);
+        phaseTimer = Stopwatch.createStarted();
+    }
+    protected void notePhaseEnded() {
+        if (phaseTimer!=null && phase>0 && phase<=PHASE_NAMES.size()) {
+            phaseDurations.put(PHASE_NAMES.get(phase-1), Duration.of(phaseTimer));
+        }
+        phaseTimer = null;
     }
     protected void checkContinuingPhase(int targetPhase) {
         if (targetPhase!=phase)
@@ -305,6 +339,33 @@ public abstract class RebindIteration {
         isEmpty = mementoManifest.isEmpty();
     }
 
+    /**
+     * Copies the given entity, and the policies, enrichers and feeds listed in its memento, 
+     * from the source raw data to the target.
+     * @return the ids of the items copied
+     */
+    protected static Set<String> copyEntityAndAdjuncts(BrooklynMementoRawData source, String entityId, BrooklynMementoRawData.Builder target) {
+        Set<String> result = MutableSet.of();
+        String contents = source.getEntities().get(entityId);
+        if (contents == null) return result;
+        target.entity(entityId, contents);
+        result.add(entityId);
+        
+        NodeList adjunctIds = (NodeList) XmlUtil.xpath(contents, 
+            "/entity/policies/string | /entity/enrichers/string | /entity/feeds/string", XPathConstants.NODESET);
+        for (int i = 0; i < adjunctIds.getLength(); i++) {
+            String adjunctId = adjunctIds.item(i).getTextContent();
+            for (BrooklynObjectType type : ImmutableList.of(BrooklynObjectType.POLICY, BrooklynObjectType.ENRICHER, BrooklynObjectType.FEED)) {
+                String adjunctContents = source.getObjectsOfType(type).get(adjunctId);
+                if (adjunctContents != null) {
+                    target.put(type, adjunctId, adjunctContents);
+                    result.add(adjunctId);
+                }
+            }
+        }
+        return result;
+    }
+
     @SuppressWarnings("deprecation")
     protected void rebuildCatalog() {
         
@@ -427,35 +488,63 @@ public abstract class RebindIteration {
         checkEnteringPhase(3);
         
         // Instantiate locations
+        // (construction can be done in parallel, but we register them and report failures in the original order)
         logRebindingDebug("RebindManager instantiating locations: {}", mementoManifest.getLocationIdToType().keySet());
-        for (Map.Entry<String, String> entry : mementoManifest.getLocationIdToType().entrySet()) {
-            String locId = entry.getKey();
-            String locType = entry.getValue();
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
-            
-            try {
-                Location location = instantiator.newLocation(locId, locType);
-                rebindContext.registerLocation(locId, location);
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
+        final List<Map.Entry<String, String>> locEntries = MutableList.copyOf(mementoManifest.getLocationIdToType().entrySet());
+        final Location[] locations = new Location[locEntries.size()];
+        final Exception[] locFailures = new Exception[locEntries.size()];
+        List<Runnable> locJobs = Lists.newArrayList();
+        for (int i = 0; i < locEntries.size(); i++) {
+            final int index = i;
+            locJobs.add(new Runnable() {
+                public void run() {
+                    String locId = locEntries.get(index).getKey();
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
+                    try {
+                        locations[index] = instantiator.newLocation(locId, locEntries.get(index).getValue());
+                    } catch (Exception e) {
+                        locFailures[index] = e;
+                    }
+                }});
+        }
+        runAll(locJobs);
+        for (int i = 0; i < locEntries.size(); i++) {
+            String locId = locEntries.get(i).getKey();
+            if (locFailures[i] != null) {
+                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locEntries.get(i).getValue(), locFailures[i]);
+            } else {
+                rebindContext.registerLocation(locId, locations[i]);
             }
         }
         
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
-        for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
-            String entityId = entry.getKey();
-            EntityMementoManifest entityManifest = entry.getValue();
-            
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
-            
-            try {
-                Entity entity = (Entity) instantiator.newEntity(entityManifest);
-                ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
-                rebindContext.registerEntity(entityId, entity);
-
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
+        final List<EntityMementoManifest> entityManifests = MutableList.copyOf(mementoManifest.getEntityIdToManifest().values());
+        final Entity[] entities = new Entity[entityManifests.size()];
+        final Exception[] entityFailures = new Exception[entityManifests.size()];
+        List<Runnable> entityJobs = Lists.newArrayList();
+        for (int i = 0; i < entityManifests.size(); i++) {
+            final int index = i;
+            entityJobs.add(new Runnable() {
+                public void run() {
+                    EntityMementoManifest entityManifest = entityManifests.get(index);
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityManifest.getId());
+                    try {
+                        Entity entity = (Entity) instantiator.newEntity(entityManifest);
+                        ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
+                        entities[index] = entity;
+                    } catch (Exception e) {
+                        entityFailures[index] = e;
+                    }
+                }});
+        }
+        runAll(entityJobs);
+        for (int i = 0; i < entityManifests.size(); i++) {
+            EntityMementoManifest entityManifest = entityManifests.get(i);
+            if (entityFailures[i] != null) {
+                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityManifest.getId(), entityManifest.getType(), entityFailures[i]);
+            } else {
+                rebindContext.registerEntity(entityManifest.getId(), entities[i]);
             }
         }
     }
@@ -529,20 +618,16 @@ public abstract class RebindIteration {
         
         // Reconstruct locations
         logRebindingDebug("RebindManager reconstructing locations");
-        for (LocationMemento locMemento : sortParentFirst(memento.getLocationMementos()).values()) {
-            Location location = rebindContext.getLocation(locMemento.getId());
-            logRebindingDebug("RebindManager reconstructing location {}", locMemento);
-            if (location == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
-            } else {
-                try {
-                    ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
-                }
-            }
+        List<Runnable> locJobs = Lists.newArrayList();
+        for (final Collection<LocationMemento> subtree : subtreesParentFirst(memento.getLocationMementos())) {
+            locJobs.add(new Runnable() {
+                public void run() {
+                    for (LocationMemento locMemento : subtree) {
+                        reconstructLocation(locMemento);
+                    }
+                }});
         }
+        runAll(locJobs);
 
         // Reconstruct policies
         if (rebindManager.persistPoliciesEnabled) {
@@ -610,20 +695,46 @@ public abstract class RebindIteration {
    
         // Reconstruct entities
         logRebindingDebug("RebindManager reconstructing entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
-   
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
+        List<Runnable> entityJobs = Lists.newArrayList();
+        for (final Collection<EntityMemento> subtree : subtreesParentFirst(memento.getEntityMementos())) {
+            entityJobs.add(new Runnable() {
+                public void run() {
+                    for (EntityMemento entityMemento : subtree) {
+                        reconstructEntity(entityMemento);
+                    }
+                }});
+        }
+        runAll(entityJobs);
+    }
+
+    protected void reconstructLocation(LocationMemento locMemento) {
+        Location location = rebindContext.getLocation(locMemento.getId());
+        logRebindingDebug("RebindManager reconstructing location {}", locMemento);
+        if (location == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
+        } else {
+            try {
+                ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
+            }
+        }
+    }
+
+    protected void reconstructEntity(EntityMemento entityMemento) {
+        Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
+        logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
+
+        if (entity == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+        } else {
+            try {
+                entityMemento.injectTypeClass(entity.getClass());
+                ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
             }
         }
     }
@@ -748,18 +859,20 @@ public abstract class RebindIteration {
     protected void finishingUp() {
         
         checkContinuingPhase(8);
+        notePhaseEnded();
         
         if (!isEmpty) {
             BrooklynLogging.log(LOG, shouldLogRebinding() ? LoggingLevel.INFO : LoggingLevel.DEBUG, 
                 "Rebind complete " + "("+mode+(readOnlyRebindCount.get()>=0 ? ", iteration "+readOnlyRebindCount : "")+")" +
-                    " in {}: {} app{}, {} entit{}, {} location{}, {} polic{}, {} enricher{}, {} feed{}, {} catalog item{}", new Object[]{
+                    " in {}: {} app{}, {} entit{}, {} location{}, {} polic{}, {} enricher{}, {} feed{}, {} catalog item{}; phases {}", new Object[]{
                 Time.makeTimeStringRounded(timer), applications.size(), Strings.s(applications),
                 rebindContext.getEntities().size(), Strings.ies(rebindContext.getEntities()),
                 rebindContext.getLocations().size(), Strings.s(rebindContext.getLocations()),
                 rebindContext.getPolicies().size(), Strings.ies(rebindContext.getPolicies()),
                 rebindContext.getEnrichers().size(), Strings.s(rebindContext.getEnrichers()),
                 rebindContext.getFeeds().size(), Strings.s(rebindContext.getFeeds()),
-                rebindContext.getCatalogItems().size(), Strings.s(rebindContext.getCatalogItems())
+                rebindContext.getCatalogItems().size(), Strings.s(rebindContext.getCatalogItems()),
+                phaseDurations
             });
         }
 
@@ -1148,6 +1261,77 @@ public abstract class RebindIteration {
         return RebindManagerImpl.sortParentFirst(nodes);
     }
 
+    /**
+     * Returns the nodes in parent-first order, split by root (i.e. one collection per application or
+     * top-level location) so that separate hierarchies can be processed concurrently.
+     * If not rebinding in parallel, returns a single collection.
+     */
+    protected <T extends TreeNode> Collection<Collection<T>> subtreesParentFirst(Map<String, T> nodes) {
+        Map<String, T> sorted = sortParentFirst(nodes);
+        if (parallelism <= 1) {
+            return ImmutableList.<Collection<T>>of(sorted.values());
+        }
+        Map<String, Collection<T>> result = MutableMap.of();
+        Map<String, String> rootIds = Maps.newHashMap();
+        for (T node : sorted.values()) {
+            // parents come first, so will already have been assigned a root
+            String rootId = (node.getParent() == null) ? null : rootIds.get(node.getParent());
+            if (rootId == null) rootId = node.getId();
+            rootIds.put(node.getId(), rootId);
+            Collection<T> subtree = result.get(rootId);
+            if (subtree == null) {
+                subtree = MutableList.of();
+                result.put(rootId, subtree);
+            }
+            subtree.add(node);
+        }
+        return result.values();
+    }
+
+    /**
+     * Runs the given jobs, concurrently if {@link #parallelism} is more than 1,
+     * and waits for them all to complete; the first failure (if any) is then rethrown.
+     */
+    protected void runAll(List<Runnable> jobs) {
+        if (parallelism <= 1 || jobs.size() <= 1) {
+            for (Runnable job : jobs) {
+                job.run();
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, jobs.size()), new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                return new Thread(r, "brooklyn-rebind");
+            }});
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (final Runnable job : jobs) {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        RebindTracker.setRebinding();
+                        try {
+                            job.run();
+                        } finally {
+                            RebindTracker.reset();
+                        }
+                    }}));
+            }
+            Throwable failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = e.getCause();
+                }
+            }
+            if (failure != null) throw Exceptions.propagate(failure);
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /** logs at debug, except during subsequent read-only rebinds, in which it logs trace */
     protected void logRebindingDebug(String message, Object... args) {
         if (shouldLogRebinding()) {
@@ -43,6 +43,7 @@ import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.TreeNode;
 import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.config.ConfigKeys;
@@ -72,6 +73,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -102,6 +104,35 @@ public class RebindManagerImpl implements RebindManager {
             ConfigKeys.newConfigKey(RebindFailureMode.class, "rebind.failureMode.loadPolicy",
                     "Action to take if a failure occurs when loading a policy or enricher", RebindFailureMode.CONTINUE);
 
+    @Beta
+    public static final ConfigKey<Integer> REBIND_PARALLELISM =
+            ConfigKeys.newIntegerConfigKey("rebind.parallelism",
+                    "Number of threads to use when instantiating and reconstructing locations and entities on rebind; "
+                    + "reconstruction is done in parallel across separate applications (and location hierarchies), "
+                    + "so is only worthwhile with many applications. Default 1 does everything in the rebinding thread", 1);
+
+    @Beta
+    public static final ConfigKey<Boolean> REBIND_READ_ONLY_DELTAS =
+            ConfigKeys.newBooleanConfigKey("rebind.readOnly.deltas",
+                    "Whether hot-standby and hot-backup nodes, on each periodic read-only rebind, should re-read only the items "
+                    + "modified in the persistence store and rebind only the changed entities, rather than reading and rebinding everything; "
+                    + "a full rebind is still done when catalog items or locations change", false);
+
+    @Beta
+    public static final ConfigKey<Duration> PERSIST_MIN_WRITE_INTERVAL =
+            ConfigKeys.newDurationConfigKey("rebind.persist.minWriteInterval",
+                    "Minimum time between periodic writes of any one entity, location, policy, etc; "
+                    + "changes within that time of it being written are held back to a later delta, "
+                    + "so frequently changing items (e.g. entities polling sensors) are not rewritten on every delta. "
+                    + "Default 0 writes all changes on each delta", Duration.ZERO);
+
+    @Beta
+    public static final ConfigKey<Boolean> PERSIST_ADAPTIVE_PERIOD =
+            ConfigKeys.newBooleanConfigKey("rebind.persist.adaptivePeriod",
+                    "Whether to adapt the time between periodic persistence deltas to the load on the persister: "
+                    + "persisting more often (down to a quarter of the period) while deltas are quick, "
+                    + "and less often (up to 8 times the period) while deltas are slow or writes queue in the persister", false);
+
     public static final ConfigKey<QuorumCheck> DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY =
         ConfigKeys.newConfigKey(QuorumCheck.class, "rebind.failureMode.danglingRefs.minRequiredHealthy",
                 "Number of items which must be rebinded at various sizes; "
@@ -146,6 +177,10 @@ public class RebindManagerImpl implements RebindManager {
 
     Integer firstRebindAppCount, firstRebindEntityCount, firstRebindItemCount;
     
+    private final boolean readOnlyDeltas;
+    /** raw data last rebinded in a read-only mode, when {@link #REBIND_READ_ONLY_DELTAS}; null if the next one must be a full rebind */
+    private volatile BrooklynMementoRawData lastReadOnlyRawData;
+    
     /**
      * For tracking if rebinding, for {@link AbstractEnricher#isRebinding()} etc.
      *  
@@ -186,6 +221,7 @@ public class RebindManagerImpl implements RebindManager {
         loadPolicyFailureMode = managementContext.getConfig().getConfig(LOAD_POLICY_FAILURE_MODE);
         
         danglingRefsQuorumRequiredHealthy = managementContext.getConfig().getConfig(DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY);
+        readOnlyDeltas = Boolean.TRUE.equals(managementContext.getConfig().getConfig(REBIND_READ_ONLY_DELTAS));
 
         LOG.debug("{} initialized, settings: policies={}, enrichers={}, feeds={}, catalog={}",
                 new Object[]{this, persistPoliciesEnabled, persistEnrichersEnabled, persistFeedsEnabled, persistCatalogItemsEnabled});
@@ -238,6 +274,8 @@ public class RebindManagerImpl implements RebindManager {
         this.persistenceStoreAccess = checkNotNull(val, "persister");
         
         this.persistenceRealChangeListener = new PeriodicDeltaChangeListener(managementContext.getServerExecutionContext(), persistenceStoreAccess, exceptionHandler, persistMetrics, periodicPersistPeriod);
+        this.persistenceRealChangeListener.setMinWriteInterval(managementContext.getConfig().getConfig(PERSIST_MIN_WRITE_INTERVAL));
+        this.persistenceRealChangeListener.setAdaptivePeriod(managementContext.getConfig().getConfig(PERSIST_ADAPTIVE_PERIOD));
         this.persistencePublicChangeListener = new SafeChangeListener(persistenceRealChangeListener);
         
         if (persistenceRunning) {
@@ -264,6 +302,7 @@ public class RebindManagerImpl implements RebindManager {
         }
         persistenceRunning = true;
         readOnlyRebindCount.set(Integer.MIN_VALUE);
+        setReuseUnchangedReads(false);
         persistenceStoreAccess.enableWriteAccess();
         if (persistenceRealChangeListener != null) persistenceRealChangeListener.start();
     }
@@ -298,6 +337,7 @@ public class RebindManagerImpl implements RebindManager {
         
         readOnlyRunning = true;
         readOnlyRebindCount.set(0);
+        if (readOnlyDeltas) setReuseUnchangedReads(true);
 
         try {
             rebind(null, null, mode);
@@ -344,6 +384,7 @@ public class RebindManagerImpl implements RebindManager {
     @Override
     public void stopReadOnly() {
         readOnlyRunning = false;
+        lastReadOnlyRawData = null;
         if (readOnlyTask!=null) {
             LOG.debug("Stopping read-only rebinding ("+this+"), mgmt "+managementContext.getManagementNodeId());
             readOnlyTask.cancel(true);
@@ -546,10 +587,20 @@ public class RebindManagerImpl implements RebindManager {
     }
     
     protected List<Application> rebindImpl(final ClassLoader classLoader, final RebindExceptionHandler exceptionHandler, ManagementNodeState mode) {
-        RebindIteration iteration = new InitialFullRebindIteration(this, mode, classLoader, exceptionHandler,
+        BrooklynMementoRawData readOnlyRawData = null;
+        if (readOnlyDeltas && ManagementNodeState.isHotProxy(mode)) {
+            readOnlyRawData = persistenceStoreAccess.loadMementoRawData(exceptionHandler);
+            List<Application> result = rebindReadOnlyDelta(classLoader, exceptionHandler, mode, readOnlyRawData);
+            if (result != null) return result;
+        }
+        lastReadOnlyRawData = null;
+        
+        InitialFullRebindIteration iteration = new InitialFullRebindIteration(this, mode, classLoader, exceptionHandler,
             rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess);
+        iteration.setPreloadedRawData(readOnlyRawData);
         
         iteration.run();
+        lastReadOnlyRawData = readOnlyRawData;
         
         if (firstRebindAppCount==null) {
             firstRebindAppCount = iteration.getApplications().size();
@@ -561,6 +612,40 @@ public class RebindManagerImpl implements RebindManager {
         return iteration.getApplications();
     }
 
+    /**
+     * Brings the read-only state up to date by rebinding only what has changed since the last read-only rebind;
+     * see {@link #REBIND_READ_ONLY_DELTAS}.
+     * 
+     * @return the applications, or null if a full rebind is needed
+     */
+    protected List<Application> rebindReadOnlyDelta(ClassLoader classLoader, RebindExceptionHandler exceptionHandler, ManagementNodeState mode, 
+            BrooklynMementoRawData rawData) {
+        BrooklynMementoRawData previousRawData = lastReadOnlyRawData;
+        if (previousRawData == null) return null;
+        // if anything fails, the next rebind will be a full one
+        lastReadOnlyRawData = null;
+        
+        ReadOnlyDeltaRebindIteration iteration = new ReadOnlyDeltaRebindIteration(this, mode, classLoader, exceptionHandler,
+            rebindActive, readOnlyRebindCount, rebindMetrics, persistenceStoreAccess, previousRawData, rawData);
+        if (!iteration.isApplicable()) {
+            LOG.debug("Doing full read-only rebind, as "+iteration.getFullRebindReason()+", mgmt "+managementContext.getManagementNodeId());
+            return null;
+        }
+        if (iteration.isUnchanged()) {
+            readOnlyRebindCount.incrementAndGet();
+        } else {
+            iteration.run();
+        }
+        lastReadOnlyRawData = rawData;
+        return ImmutableList.copyOf(managementContext.getApplications());
+    }
+    
+    private void setReuseUnchangedReads(boolean reuseUnchangedReads) {
+        if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+            ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).setReuseUnchangedReads(reuseUnchangedReads);
+        }
+    }
+
     /**
      * Sorts the map of nodes, so that a node's parent is guaranteed to come before that node
      * (unless the parent is missing).
@@ -606,7 +691,7 @@ public class RebindManagerImpl implements RebindManager {
      * failed to persist, and we'd expect other threads to throw the OutOfMemoryError so
      * we shouldn't lose anything.
      */
-    private static class SafeChangeListener implements ChangeListener {
+    private static class SafeChangeListener implements AttributeChangeListener {
         private final ChangeListener delegate;
         
         public SafeChangeListener(ChangeListener delegate) {
@@ -639,6 +724,19 @@ public class RebindManagerImpl implements RebindManager {
                 LOG.error("Error persisting mememento onUnmanaged("+instance+"); continuing.", t);
             }
         }
+
+        @Override
+        public void onAttributeChanged(Entity entity, AttributeSensor<?> attribute) {
+            try {
+                if (delegate instanceof AttributeChangeListener) {
+                    ((AttributeChangeListener)delegate).onAttributeChanged(entity, attribute);
+                } else {
+                    delegate.onChanged(entity);
+                }
+            } catch (Throwable t) {
+                LOG.error("Error persisting mememento onAttributeChanged("+entity+", "+attribute.getName()+"); continuing.", t);
+            }
+        }
     }
 
     public int getReadOnlyRebindCount() {
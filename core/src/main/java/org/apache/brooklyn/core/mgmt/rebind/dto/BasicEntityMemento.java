@@ -92,6 +92,12 @@ public class BasicEntityMemento extends AbstractTreeNodeMemento implements Entit
             effectors.addAll(other.getEffectors());
             return this;
         }
+        /** sets the value of the given attribute (which may be null), keeping its position if it is already present */
+        public Builder attribute(AttributeSensor<?> key, Object value) {
+            assertValid();
+            attributes.put(key, value);
+            return this;
+        }
         public EntityMemento build() {
             invalidate();
             return new BasicEntityMemento(this);
@@ -50,6 +50,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Sets;
 
 /**
@@ -107,6 +110,40 @@ public class EntityProxyImpl implements java.lang.reflect.InvocationHandler {
         }
     }
     
+    /** how calls to a method are dispatched */
+    private static enum MethodKind {
+        /** methods of {@link Object}; invoked directly */
+        OBJECT,
+        /** methods permitted on read-only entities; invoked directly */
+        PERMITTED_READ_ONLY,
+        /** other methods of the core entity interfaces; invoked directly if master */
+        ENTITY_NON_EFFECTOR,
+        /** any other method, which is invoked as an effector if the entity has an effector of that name */
+        OTHER;
+        
+        static MethodKind of(Method m) {
+            MethodSignature sig = new MethodSignature(m);
+            if (OBJECT_METHODS.contains(sig)) return OBJECT;
+            if (ENTITY_PERMITTED_READ_ONLY_METHODS.contains(sig)) return PERMITTED_READ_ONLY;
+            if (ENTITY_NON_EFFECTOR_METHODS.contains(sig)) return ENTITY_NON_EFFECTOR;
+            return OTHER;
+        }
+    }
+    
+    /**
+     * The kind of each method called, so that calls need not build and look up a {@link MethodSignature};
+     * keyed by identity, which works because each proxy class passes the same {@link Method} instances, 
+     * and weakly, so as not to keep entity classes loaded.
+     */
+    private static final LoadingCache<Method, MethodKind> METHOD_KINDS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Method, MethodKind>() {
+                @Override
+                public MethodKind load(Method m) {
+                    return MethodKind.of(m);
+                }
+            });
+    
     public EntityProxyImpl(Entity entity) {
         this.delegate = checkNotNull(entity, "entity");
     }
@@ -179,12 +216,12 @@ public class EntityProxyImpl implements java.lang.reflect.InvocationHandler {
             throw new IllegalArgumentException("Static methods not supported via proxy on entity "+delegate);
         }
         
-        MethodSignature sig = new MethodSignature(m);
+        MethodKind kind = METHOD_KINDS.getUnchecked(m);
 
         Object result;
-        if (OBJECT_METHODS.contains(sig)) {
+        if (kind == MethodKind.OBJECT) {
             result = m.invoke(delegate, args);
-        } else if (ENTITY_PERMITTED_READ_ONLY_METHODS.contains(sig)) {
+        } else if (kind == MethodKind.PERMITTED_READ_ONLY) {
             result = m.invoke(delegate, args);
         } else {
             if (!isMaster()) {
@@ -194,9 +231,9 @@ public class EntityProxyImpl implements java.lang.reflect.InvocationHandler {
                     // but including in it may allow us to tighten the methods in EntityTransientCopyInternal) 
                     result = m.invoke(delegate, args);
                 } else {
-                    throw new UnsupportedOperationException("Call to '"+sig+"' not permitted on read-only entity "+delegate);
+                    throw new UnsupportedOperationException("Call to '"+new MethodSignature(m)+"' not permitted on read-only entity "+delegate);
                 }
-            } else if (ENTITY_NON_EFFECTOR_METHODS.contains(sig)) {
+            } else if (kind == MethodKind.ENTITY_NON_EFFECTOR) {
                 result = m.invoke(delegate, args);
             } else {
                 Object[] nonNullArgs = (args == null) ? new Object[0] : args;
@@ -22,10 +22,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
@@ -33,10 +36,13 @@ import org.apache.brooklyn.util.guava.Maybe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
@@ -51,11 +57,24 @@ public final class AttributeMap {
         NULL;
     }
     
+    private static final Joiner DOTS = Joiner.on('.');
+    
     private final AbstractEntity entity;
 
-    // Assumed to be something like a ConcurrentMap passed in.
+    // Assumed to be something like a ConcurrentMap passed in; null if storing values in slots.
     private final Map<Collection<String>, Object> values;
 
+    /** the slots of the entity's type, if storing values in slots (see {@link BrooklynFeatureEnablement#FEATURE_ATTRIBUTE_SLOT_STORAGE}) */
+    private final AttributeSlots slots;
+    /**
+     * values indexed by slot, with null where absent; replaced when it needs to grow, while holding {@link #writeLock}.
+     * Sized by this entity's own writes, rather than by all the slots of its type.
+     */
+    private volatile AtomicReferenceArray<Object> slotValues;
+    
+    /** held for writes (and for atomic modifications); the {@link #values} map itself, if using that */
+    private final Object writeLock;
+    
     /**
      * Creates a new AttributeMap.
      *
@@ -65,7 +84,13 @@ public final class AttributeMap {
     public AttributeMap(AbstractEntity entity) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
-        this(entity, Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
+        this(entity, BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOT_STORAGE));
+    }
+    
+    private AttributeMap(AbstractEntity entity, boolean useSlots) {
+        this(entity, 
+                useSlots ? null : Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()),
+                useSlots ? AttributeSlots.forType(checkNotNull(entity, "entity must be specified").getClass()) : null);
     }
 
     /**
@@ -76,11 +101,38 @@ public final class AttributeMap {
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage) {
+        this(entity, checkNotNull(storage, "storage map must not be null"), null);
+    }
+
+    /** uses the given slots if not null, otherwise the given storage */
+    private AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage, AttributeSlots slots) {
         this.entity = checkNotNull(entity, "entity must be specified");
-        this.values = checkNotNull(storage, "storage map must not be null");
+        this.values = storage;
+        this.slots = slots;
+        if (slots!=null) {
+            this.slotValues = new AtomicReferenceArray<Object>(0);
+            this.writeLock = new Object();
+        } else {
+            this.writeLock = storage;
+        }
+    }
+
+    /** the length of the array of values, if storing values in slots, otherwise -1 */
+    @Beta @VisibleForTesting
+    public int getSlotCapacity() {
+        return (slots!=null) ? slotValues.length() : -1;
     }
 
     public Map<Collection<String>, Object> asRawMap() {
+        if (slots!=null) {
+            ImmutableMap.Builder<Collection<String>, Object> result = ImmutableMap.builder();
+            AtomicReferenceArray<Object> vals = slotValues;
+            for (int i=0; i<vals.length(); i++) {
+                Object val = vals.get(i);
+                if (val!=null) result.put(slots.getPath(i), val);
+            }
+            return result.build();
+        }
         synchronized (values) {
             return ImmutableMap.copyOf(values);
         }
@@ -88,9 +140,17 @@ public final class AttributeMap {
 
     public Map<String, Object> asMap() {
         Map<String, Object> result = Maps.newLinkedHashMap();
+        if (slots!=null) {
+            AtomicReferenceArray<Object> vals = slotValues;
+            for (int i=0; i<vals.length(); i++) {
+                Object val = vals.get(i);
+                if (val!=null) result.put(DOTS.join(slots.getPath(i)), isNull(val) ? null : val);
+            }
+            return result;
+        }
         synchronized (values) {
             for (Map.Entry<Collection<String>, Object> entry : values.entrySet()) {
-                String sensorName = Joiner.on('.').join(entry.getKey());
+                String sensorName = DOTS.join(entry.getKey());
                 Object val = (isNull(entry.getValue())) ? null : entry.getValue();
                 result.put(sensorName, val);
             }
@@ -119,10 +179,42 @@ public final class AttributeMap {
         }
 
         @SuppressWarnings("unchecked")
-        T oldValue = (T) values.put(path, newValue);
+        T oldValue = (T) (slots!=null ? putInSlot(DOTS.join(path), path, newValue) : values.put(path, newValue));
         return (isNull(oldValue)) ? null : oldValue;
     }
 
+    private Object putInSlot(String name, Collection<String> path, Object newValue) {
+        int slot = slots.getOrAddSlot(name, path instanceof List ? (List<String>)path : ImmutableList.copyOf(path));
+        synchronized (writeLock) {
+            AtomicReferenceArray<Object> vals = slotValues;
+            if (slot >= vals.length()) {
+                // grow by half, so that writing n attributes does not copy n times, but no further than the type's slots
+                int length = Math.max(slot+1, Math.min(slots.size(), vals.length() + (vals.length() >> 1)));
+                AtomicReferenceArray<Object> grown = new AtomicReferenceArray<Object>(length);
+                for (int i=0; i<vals.length(); i++) {
+                    grown.set(i, vals.get(i));
+                }
+                slotValues = vals = grown;
+            }
+            return vals.getAndSet(slot, newValue);
+        }
+    }
+    
+    private Object getFromSlot(String name) {
+        int slot = slots.getSlot(name);
+        AtomicReferenceArray<Object> vals = slotValues;
+        return (slot < 0 || slot >= vals.length()) ? null : vals.get(slot);
+    }
+    
+    private void removeFromSlot(String name) {
+        int slot = slots.getSlot(name);
+        if (slot < 0) return;
+        synchronized (writeLock) {
+            AtomicReferenceArray<Object> vals = slotValues;
+            if (slot < vals.length()) vals.set(slot, null);
+        }
+    }
+
     private void checkPath(Collection<String> path) {
         Preconditions.checkNotNull(path, "path can't be null");
         Preconditions.checkArgument(!path.isEmpty(), "path can't be empty");
@@ -144,16 +236,24 @@ public final class AttributeMap {
             }
         }
 
-        T oldValue = (T) update(attribute.getNameParts(), newValue);
+        T oldValue;
+        if (slots!=null) {
+            // avoids joining the name parts
+            if (newValue == null) newValue = typedNull();
+            oldValue = (T) putInSlot(attribute.getName(), attribute.getNameParts(), newValue);
+        } else {
+            oldValue = (T) update(attribute.getNameParts(), newValue);
+        }
         
         return (isNull(oldValue)) ? null : oldValue;
     }
 
     /**
-     * Where atomicity is desired, the methods in this class synchronize on the {@link #values} map.
+     * Where atomicity is desired, the methods in this class synchronize on the {@link #values} map
+     * (or, if storing values in slots, on the lock held for all writes).
      */
     public <T> T modify(AttributeSensor<T> attribute, Function<? super T, Maybe<T>> modifier) {
-        synchronized (values) {
+        synchronized (writeLock) {
             T oldValue = getValue(attribute);
             Maybe<? extends T> newValue = modifier.apply(oldValue);
 
@@ -171,7 +271,14 @@ public final class AttributeMap {
         BrooklynLogging.log(log, BrooklynLogging.levelDebugOrTraceIfReadOnly(entity),
             "removing attribute {} on {}", attribute.getName(), entity);
 
-        remove(attribute.getNameParts());
+        if (slots!=null) {
+            if (log.isTraceEnabled()) {
+                log.trace("removing sensor {} for {}", new Object[] {attribute.getName(), entity});
+            }
+            removeFromSlot(attribute.getName());
+        } else {
+            remove(attribute.getNameParts());
+        }
     }
 
     // TODO path must be ordered(and legal to contain duplicates like "a.b.a"; list would be better
@@ -182,7 +289,11 @@ public final class AttributeMap {
             log.trace("removing sensor {} for {}", new Object[] {path, entity});
         }
 
-        values.remove(path);
+        if (slots!=null) {
+            removeFromSlot(DOTS.join(path));
+        } else {
+            values.remove(path);
+        }
     }
 
     /**
@@ -197,12 +308,17 @@ public final class AttributeMap {
         // or the leaf value if only one value. Arguably that is not required - what is/was the use-case?
         // 
         checkPath(path);
-        Object result = values.get(path);
+        Object result = (slots!=null) ? getFromSlot(DOTS.join(path)) : values.get(path);
         return (isNull(result)) ? null : result;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(AttributeSensor<T> sensor) {
+        if (slots!=null) {
+            // no lock, nor any allocation for the name parts
+            Object result = getFromSlot(sensor.getName());
+            return (T) TypeCoercions.coerce(isNull(result) ? null : result, sensor.getType());
+        }
         return (T) TypeCoercions.coerce(getValue(sensor.getNameParts()), sensor.getType());
     }
 
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Interns attribute names to dense slot indexes, shared by all entities of a type,
+ * so that {@link AttributeMap} can store values in an array.
+ * Slots are never removed; an entity with no value for a slot stores null there.
+ */
+final class AttributeSlots {
+
+    private static final LoadingCache<Class<?>, AttributeSlots> SLOTS_BY_TYPE = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Class<?>, AttributeSlots>() {
+                @Override
+                public AttributeSlots load(Class<?> type) {
+                    return new AttributeSlots();
+                }
+            });
+    
+    static AttributeSlots forType(Class<?> entityType) {
+        return SLOTS_BY_TYPE.getUnchecked(entityType);
+    }
+    
+    private final ConcurrentMap<String, Integer> slotsByName = new ConcurrentHashMap<String, Integer>();
+    private final List<List<String>> pathsBySlot = new CopyOnWriteArrayList<List<String>>();
+
+    private AttributeSlots() {}
+    
+    /** the slot for the attribute with the given (dot-separated) name, or -1 if it has none */
+    int getSlot(String name) {
+        Integer result = slotsByName.get(name);
+        return result==null ? -1 : result;
+    }
+    
+    /** the slot for the attribute with the given name, allocating one if needed */
+    int getOrAddSlot(String name, List<String> path) {
+        Integer result = slotsByName.get(name);
+        if (result!=null) return result;
+        synchronized (this) {
+            result = slotsByName.get(name);
+            if (result==null) {
+                result = pathsBySlot.size();
+                pathsBySlot.add(ImmutableList.copyOf(path));
+                slotsByName.put(name, result);
+            }
+            return result;
+        }
+    }
+    
+    /** the name parts of the attribute in the given slot */
+    List<String> getPath(int slot) {
+        return pathsBySlot.get(slot);
+    }
+    
+    int size() {
+        return pathsBySlot.size();
+    }
+}
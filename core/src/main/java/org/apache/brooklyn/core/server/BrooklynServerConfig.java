@@ -29,8 +29,11 @@ import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.catalog.internal.CatalogInitialization;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.HttpClientRegistry;
 import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,6 +100,20 @@ public class BrooklynServerConfig {
             + "if null or not set, the legacy beahviour of creating backups where possible (e.g. file system) is currently used; "
             + "this key is DEPRECATED in favor of promotion and demotion specific flags now defaulting to true");
 
+    public static final ConfigKey<Boolean> PERSISTENCE_USE_WRITE_AHEAD_LOG =
+        ConfigKeys.newBooleanConfigKey("brooklyn.persistence.useWriteAheadLog",
+            "Whether persistence to the file system should append to a segmented log in the persistence directory "
+            + "(batching and syncing writes together), rather than writing a file per item; "
+            + "only one node may write to the directory, so this is not suitable for HA on a shared file system",
+            false);
+
+    public static final ConfigKey<Boolean> PERSISTENCE_PACKED_BLOB_STORE =
+        ConfigKeys.newBooleanConfigKey("brooklyn.persistence.packedBlobStore",
+            "Whether persistence to a jclouds blob store should write the items changed by each delta together "
+            + "as one segment blob, listed in a manifest blob, rather than writing a blob per item; "
+            + "a store written this way must always be read this way",
+            false);
+
     public static final ConfigKey<String> BROOKLYN_CATALOG_URL = ConfigKeys.newStringConfigKey("brooklyn.catalog.url",
         "The URL of a custom catalog.bom or catalog.xml descriptor to load");
 
@@ -121,6 +138,29 @@ public class BrooklynServerConfig {
     public static final ConfigKey<Boolean> OSGI_CACHE_CLEAN = ConfigKeys.newBooleanConfigKey("brooklyn.osgi.cache.clean",
         "Whether to delete the OSGi directory before and after use; if unset, it will delete if the node ID forms part of the cache dir path (which by default it does) to avoid file leaks");
 
+    public static final ConfigKey<BasicExecutionManager.RunnerType> EXECUTION_MANAGER_RUNNER = ConfigKeys.newConfigKey(BasicExecutionManager.RunnerType.class,
+        "brooklyn.executionManager.runner",
+        "The kind of thread pool used to run tasks: cached (unbounded, the default), fork_join (bounded), or virtual_thread (Java 21 and later)",
+        BasicExecutionManager.RunnerType.CACHED);
+    public static final ConfigKey<Integer> EXECUTION_MANAGER_MAX_THREADS = ConfigKeys.newIntegerConfigKey("brooklyn.executionManager.maxThreads",
+        "The maximum number of threads used to run tasks, for bounded runners; if 0 a default based on the number of processors is used", 0);
+    public static final ConfigKey<BasicExecutionManager.SchedulerType> EXECUTION_MANAGER_SCHEDULER = ConfigKeys.newConfigKey(BasicExecutionManager.SchedulerType.class,
+        "brooklyn.executionManager.scheduler",
+        "How the runs of scheduled tasks (such as polls) are timed: delay_queue (precise, the default) or timer_wheel (cheaper for many tasks, but up to a tick late)",
+        BasicExecutionManager.SchedulerType.DELAY_QUEUE);
+
+    public static final ConfigKey<Boolean> HTTP_CLIENT_SHARED = ConfigKeys.newBooleanConfigKey("brooklyn.http.sharedClients",
+        "Whether HTTP feeds share pooled, kept-alive HTTP clients with other feeds using the same endpoint and settings; "
+        + "each shared client allows at most brooklyn.http.maxConnectionsPerRoute concurrent requests to a host", false);
+    public static final ConfigKey<Integer> HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE = ConfigKeys.newIntegerConfigKey("brooklyn.http.maxConnectionsPerRoute",
+        "For shared HTTP clients, the max connections each keeps open to any one host", HttpClientRegistry.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    public static final ConfigKey<Integer> HTTP_CLIENT_MAX_CONNECTIONS = ConfigKeys.newIntegerConfigKey("brooklyn.http.maxConnections",
+        "For shared HTTP clients, the max connections each keeps open in total", HttpClientRegistry.DEFAULT_MAX_CONNECTIONS);
+    public static final ConfigKey<Duration> HTTP_CLIENT_IDLE_TIMEOUT = ConfigKeys.newDurationConfigKey("brooklyn.http.idleConnectionTimeout",
+        "For shared HTTP clients, how long a pooled connection may be idle before it is closed", HttpClientRegistry.DEFAULT_IDLE_TIMEOUT);
+    public static final ConfigKey<Duration> HTTP_CLIENT_LEASE_TIMEOUT = ConfigKeys.newDurationConfigKey("brooklyn.http.connectionLeaseTimeout",
+        "For shared HTTP clients, how long a request may wait for a pooled connection before failing", HttpClientRegistry.DEFAULT_LEASE_TIMEOUT);
+
     /** @see BrooklynServerPaths#getMgmtBaseDir(ManagementContext) */
     public static String getMgmtBaseDir(ManagementContext mgmt) {
         return BrooklynServerPaths.getMgmtBaseDir(mgmt);
@@ -29,10 +29,12 @@ import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.annotation.Effector;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.effector.MethodEffector;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 import org.apache.brooklyn.core.entity.trait.Startable;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
 import com.google.common.reflect.TypeToken;
 
@@ -44,6 +46,17 @@ public interface DynamicGroup extends AbstractGroup {
     ConfigKey<Predicate<? super Entity>> ENTITY_FILTER = ConfigKeys.newConfigKey(new TypeToken<Predicate<? super Entity>>() { },
             "dynamicgroup.entityfilter", "Filter for entities which will automatically be in the group");
 
+    /**
+     * Optional index of entities containing every entity the {@link #ENTITY_FILTER} can accept,
+     * e.g. {@code EntityIndexKey.ofType(MySqlNode.class)} for a filter on MySQL nodes. When set,
+     * rescans only apply the filter to entities in the index, which the entity manager maintains
+     * as entities are managed and unmanaged, rather than to every managed entity.
+     */
+    @Beta
+    @SetFromFlag("entityIndex")
+    ConfigKey<EntityIndexKey> ENTITY_INDEX = ConfigKeys.newConfigKey(EntityIndexKey.class,
+            "dynamicgroup.entityindex", "Index of entities which includes all those the entity filter can accept; only these are scanned");
+
     AttributeSensor<Boolean> RUNNING = Sensors.newBooleanSensor(
             "dynamicgroup.running", "Whether the entity is running, and will automatically update group membership");
 
@@ -24,13 +24,16 @@ import java.util.Collection;
 import java.util.Map;
 
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.EntityManager;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 import org.apache.brooklyn.core.mgmt.internal.CollectionChangeListener;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -116,9 +119,21 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
     }
 
     protected boolean acceptsEntity(Entity e) {
+        EntityIndexKey index = getConfig(ENTITY_INDEX);
+        if (index != null && !index.apply(e)) return false;
         return entityFilter().apply(e);
     }
 
+    /** The entities to which the filter is applied on rescan: those in {@link #ENTITY_INDEX} if set, otherwise all. */
+    protected Collection<Entity> candidateEntities() {
+        EntityIndexKey index = getConfig(ENTITY_INDEX);
+        EntityManager entityManager = getManagementContext().getEntityManager();
+        if (index != null && entityManager instanceof EntityManagerInternal) {
+            return ((EntityManagerInternal) entityManager).getEntitiesInIndex(index);
+        }
+        return entityManager.getEntities();
+    }
+
     protected void onEntityAdded(Entity item) {
         synchronized (memberChangeMutex) {
             if (acceptsEntity(item)) {
@@ -210,7 +225,7 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
             Collection<Entity> currentMembers = getMembers();
             Collection<Entity> toRemove = Sets.newLinkedHashSet(currentMembers);
 
-            for (Entity it : Iterables.filter(getManagementContext().getEntityManager().getEntities(), entityFilter())) {
+            for (Entity it : Iterables.filter(candidateEntities(), entityFilter())) {
                 toRemove.remove(it);
                 if (!currentMembers.contains(it)) {
                     if (log.isDebugEnabled()) log.debug("{} rescan detected new item {}", this, it);
@@ -32,10 +32,13 @@ import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
 import org.apache.brooklyn.core.feed.Poller;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.util.http.HttpTool;
 import org.apache.brooklyn.util.http.HttpToolResponse;
 import org.apache.brooklyn.util.http.HttpTool.HttpClientBuilder;
@@ -313,11 +316,9 @@ public class HttpFeed extends AbstractFeed {
         SetMultimap<HttpPollIdentifier, HttpPollConfig<?>> polls = getConfig(POLLS);
         
         for (final HttpPollIdentifier pollInfo : polls.keySet()) {
-            // Though HttpClients are thread safe and can take advantage of connection pooling
-            // and authentication caching, the httpcomponents documentation says:
-            //    "While HttpClient instances are thread safe and can be shared between multiple
-            //     threads of execution, it is highly recommended that each thread maintains its
-            //     own dedicated instance of HttpContext.
+            // HttpClients are thread safe, and (if enabled) we share them with pooled connections
+            // between all feeds polling the same endpoint with the same settings; see HttpClientRegistry.
+            // Each request is executed with its own HttpContext, as the httpcomponents documentation recommends:
             //  http://hc.apache.org/httpcomponents-client-ga/tutorial/html/connmgmt.html
             final HttpClient httpClient = createHttpClient(pollInfo);
 
@@ -372,6 +373,10 @@ public class HttpFeed extends AbstractFeed {
         if (pollIdentifier.socketTimeout != null) {
             builder.socketTimeout(pollIdentifier.socketTimeout);
         }
+        ManagementContextInternal mgmt = (ManagementContextInternal) ((EntityInternal)entity).getManagementContext();
+        if (Boolean.TRUE.equals(mgmt.getConfig().getConfig(BrooklynServerConfig.HTTP_CLIENT_SHARED))) {
+            return mgmt.getHttpClientRegistry().getClient(builder);
+        }
         return builder.build();
     }
 
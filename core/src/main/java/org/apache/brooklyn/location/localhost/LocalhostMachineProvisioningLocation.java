@@ -41,7 +41,9 @@ import org.apache.brooklyn.core.location.HasSubnetHostname;
 import org.apache.brooklyn.core.location.geo.HostGeoInfo;
 import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.LocationWithObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.LogBasedObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
+import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.location.byon.FixedListMachineProvisioningLocation;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -348,6 +350,9 @@ public class LocalhostMachineProvisioningLocation extends FixedListMachineProvis
     public PersistenceObjectStore newPersistenceObjectStore(String container) {
         File basedir = new File(container);
         if (basedir.isFile()) throw new IllegalArgumentException("Destination directory must not be a file");
+        if (getManagementContext() != null && Boolean.TRUE.equals(getManagementContext().getConfig().getConfig(BrooklynServerConfig.PERSISTENCE_USE_WRITE_AHEAD_LOG))) {
+            return new LogBasedObjectStore(basedir);
+        }
         return new FileBasedObjectStore(basedir);
     }
     
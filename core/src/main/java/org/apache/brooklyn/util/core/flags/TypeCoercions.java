@@ -98,6 +98,43 @@ public class TypeCoercions {
     @GuardedBy("TypeCoercions.class")
     private static Table<Class, Class, Function> registry = HashBasedTable.create();
 
+    /**
+     * The adapters found for each (value class, target class) pair, including where none were found,
+     * so that {@link #coerce(Object, TypeToken)} need not search by reflection nor lock the registry each time.
+     * Replaced with an empty instance whenever an adapter is registered.
+     * <p>
+     * Held in {@link ClassValue}s (one per value class, each holding the lookups for target classes)
+     * rather than a static map, so that the cache does not prevent classes, and the classloaders
+     * which loaded them, from being garbage collected.
+     */
+    private static volatile AdapterLookups adapterLookups = new AdapterLookups();
+
+    private static class AdapterLookups extends ClassValue<ClassValue<AdapterLookup>> {
+        @Override
+        protected ClassValue<AdapterLookup> computeValue(final Class<?> valueType) {
+            return new ClassValue<AdapterLookup>() {
+                @Override
+                protected AdapterLookup computeValue(Class<?> targetType) {
+                    return new AdapterLookup(findAsMethod(valueType, targetType), findFromMethod(valueType, targetType), findRegistryAdapter(valueType, targetType));
+                }
+            };
+        }
+    }
+    
+    private static class AdapterLookup {
+        /** value.asTargetType(), or null */
+        final Method asMethod;
+        /** static TargetType.fromValueType(value), or null */
+        final Method fromMethod;
+        /** first matching adapter in the registry, or null */
+        final Function registryAdapter;
+        AdapterLookup(Method asMethod, Method fromMethod, Function registryAdapter) {
+            this.asMethod = asMethod;
+            this.fromMethod = fromMethod;
+            this.registryAdapter = registryAdapter;
+        }
+    }
+
     /**
      * Attempts to coerce {@code value} to {@code targetType}.
      * <p>
@@ -192,35 +229,25 @@ public class TypeCoercions {
             return (T) value.toString();
         }
 
+        AdapterLookup adapters = lookupAdapters(value.getClass(), targetType);
+        
         //look for value.asType where Type is castable to targetType
-        String targetTypeSimpleName = getVerySimpleName(targetType);
-        if (targetTypeSimpleName!=null && targetTypeSimpleName.length()>0) {
-            for (Method m: value.getClass().getMethods()) {
-                if (m.getName().startsWith("as") && m.getParameterTypes().length==0 &&
-                        targetType.isAssignableFrom(m.getReturnType()) ) {
-                    if (m.getName().equals("as"+getVerySimpleName(m.getReturnType()))) {
-                        try {
-                            return (T) m.invoke(value);
-                        } catch (Exception e) {
-                            throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
-                        }
-                    }
-                }
+        if (adapters.asMethod!=null) {
+            Method m = adapters.asMethod;
+            try {
+                return (T) m.invoke(value);
+            } catch (Exception e) {
+                throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
             }
         }
         
         //now look for static TargetType.fromType(Type t) where value instanceof Type  
-        for (Method m: targetType.getMethods()) {
-            if (((m.getModifiers()&Modifier.STATIC)==Modifier.STATIC) && 
-                    m.getName().startsWith("from") && m.getParameterTypes().length==1 &&
-                    m.getParameterTypes()[0].isInstance(value)) {
-                if (m.getName().equals("from"+getVerySimpleName(m.getParameterTypes()[0]))) {
-                    try {
-                        return (T) m.invoke(null, value);
-                    } catch (Exception e) {
-                        throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
-                    }
-                }
+        if (adapters.fromMethod!=null) {
+            Method m = adapters.fromMethod;
+            try {
+                return (T) m.invoke(null, value);
+            } catch (Exception e) {
+                throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
             }
         }
         
@@ -248,30 +275,68 @@ public class TypeCoercions {
         }
 
         //now look in registry
-        synchronized (TypeCoercions.class) {
-            Map<Class, Function> adapters = registry.row(targetType);
-            for (Map.Entry<Class, Function> entry : adapters.entrySet()) {
-                if (entry.getKey().isInstance(value)) {
-                    T result = (T) entry.getValue().apply(value);
-                    
-                    // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
-                    // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
-                    // First check that value has changed, to avoid stack overflow!
-                    if (!Objects.equal(value, result) && targetTypeToken.getType() instanceof ParameterizedType) {
-                        // Could duplicate check for `result instanceof Collection` etc; but recursive call
-                        // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
-                        // and just return the result.
-                        return coerce(result, targetTypeToken);
-                    }
-                    return result;
-                }
-            }
+        if (adapters.registryAdapter!=null) {
+            T result = (T) adapters.registryAdapter.apply(value);
+            
+            // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
+            // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
+            // First check that value has changed, to avoid stack overflow!
+            if (!Objects.equal(value, result) && targetTypeToken.getType() instanceof ParameterizedType) {
+                // Could duplicate check for `result instanceof Collection` etc; but recursive call
+                // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
+                // and just return the result.
+                return coerce(result, targetTypeToken);
+            }
+            return result;
         }
 
         //not found
         throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): no adapter known");
     }
 
+    private static AdapterLookup lookupAdapters(Class<?> valueType, Class<?> targetType) {
+        // if an adapter is registered meanwhile, the result goes into the discarded instance
+        return adapterLookups.get(valueType).get(targetType);
+    }
+    
+    private static Method findAsMethod(Class<?> valueType, Class<?> targetType) {
+        String targetTypeSimpleName = getVerySimpleName(targetType);
+        if (targetTypeSimpleName!=null && targetTypeSimpleName.length()>0) {
+            for (Method m: valueType.getMethods()) {
+                if (m.getName().startsWith("as") && m.getParameterTypes().length==0 &&
+                        targetType.isAssignableFrom(m.getReturnType()) ) {
+                    if (m.getName().equals("as"+getVerySimpleName(m.getReturnType()))) {
+                        return m;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static Method findFromMethod(Class<?> valueType, Class<?> targetType) {
+        for (Method m: targetType.getMethods()) {
+            if (((m.getModifiers()&Modifier.STATIC)==Modifier.STATIC) && 
+                    m.getName().startsWith("from") && m.getParameterTypes().length==1 &&
+                    m.getParameterTypes()[0].isAssignableFrom(valueType)) {
+                if (m.getName().equals("from"+getVerySimpleName(m.getParameterTypes()[0]))) {
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private synchronized static Function findRegistryAdapter(Class<?> valueType, Class<?> targetType) {
+        Map<Class, Function> adapters = registry.row(targetType);
+        for (Map.Entry<Class, Function> entry : adapters.entrySet()) {
+            if (entry.getKey().isAssignableFrom(valueType)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns a function that does a type coercion to the given type. For example,
      * {@code TypeCoercions.function(Double.class)} will return a function that will
@@ -520,7 +585,9 @@ public class TypeCoercions {
 
     /** Registers an adapter for use with type coercion. Returns any old adapter. */
     public synchronized static <A,B> Function registerAdapter(Class<A> sourceType, Class<B> targetType, Function<? super A,B> fn) {
-        return registry.put(targetType, sourceType, fn);
+        Function result = registry.put(targetType, sourceType, fn);
+        adapterLookups = new AdapterLookups();
+        return result;
     }
 
     static { BrooklynInitialization.initTypeCoercionStandardAdapters(); }
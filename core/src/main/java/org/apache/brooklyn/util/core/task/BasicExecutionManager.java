@@ -21,9 +21,10 @@ package org.apache.brooklyn.util.core.task;
 import static com.google.common.base.Preconditions.checkNotNull;
 import groovy.lang.Closure;
 
+import java.lang.reflect.Method;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -34,13 +35,19 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -92,23 +99,73 @@ public class BasicExecutionManager implements ExecutionManager {
         return PerThreadCurrentTaskHolder.perThreadCurrentTask;
     }
 
+    /**
+     * The kind of {@link ExecutorService} used to run tasks.
+     */
+    @Beta
+    public enum RunnerType {
+        /** an unbounded cached pool, creating a new platform thread whenever none is idle (the default) */
+        CACHED,
+        /** 
+         * a {@link ForkJoinPool} with a bounded number of threads; tasks beyond that queue.
+         * Note that tasks which block waiting for other tasks (e.g. children) count against the bound, 
+         * so if it is set too low then tasks may starve one another. 
+         */
+        FORK_JOIN,
+        /** a new virtual thread per task, if the JVM supports that (Java 21 and later); otherwise as {@link #CACHED} */
+        VIRTUAL_THREAD
+    }
+    
+    /**
+     * The kind of {@link ScheduledExecutorService} used to time the runs of {@link ScheduledTask}s.
+     */
+    @Beta
+    public enum SchedulerType {
+        /** a single-threaded {@link ScheduledThreadPoolExecutor}, precise but with a heap and lock shared by all scheduled tasks (the default) */
+        DELAY_QUEUE,
+        /** 
+         * a {@link HashedWheelScheduledExecutor}, for large numbers of scheduled tasks (e.g. feed polls):
+         * scheduling is constant-time, but runs may be up to {@link HashedWheelScheduledExecutor#DEFAULT_TICK} late.
+         * <p>
+         * Each iteration of a {@link ScheduledTask} is still a one-shot {@code schedule}, with a new timeout,
+         * as its next delay counts from the end of the run it submitted, which the executor does not see.
+         */
+        TIMER_WHEEL
+    }
+    
     private final ThreadFactory threadFactory;
     
     private final ThreadFactory daemonThreadFactory;
     
+    private final RunnerType runnerType;
+    
     private final ExecutorService runner;
+    
+    /** threads currently alive, where not available from the runner itself (i.e. for virtual threads) */
+    private final AtomicInteger liveVirtualThreadCount = new AtomicInteger();
         
+    private final SchedulerType schedulerType;
+    
     private final ScheduledExecutorService delayedRunner;
     
     // TODO Could have a set of all knownTasks; but instead we're having a separate set per tag,
     // so the same task could be listed multiple times if it has multiple tags...
 
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object,Set<Task<?>>> tasksByTag = new HashMap<Object,Set<Task<?>>>();
+    // values are concurrent sets (preserving submission order), so reads and iteration (weakly consistent) 
+    // need no locking or copying; changes which add to or remove from a tag's set are made holding the lock 
+    // for that tag's stripe (see lockForTag) so that an emptied set is never removed from the map while 
+    // a task is being added to it.
+    // NB previously this was a synchronized HashMap of synchronized LinkedHashSets, which was heavily contended
+    private final ConcurrentMap<Object,Set<Task<?>>> tasksByTag = new ConcurrentHashMap<Object,Set<Task<?>>>();
+    
+    /** sequence used to order tasks within {@link TasksWithTag} */
+    private final AtomicLong tagInsertionSequence = new AtomicLong();
+    
+    private static final int NUM_TAG_LOCK_STRIPES = 64;
+    private final Object[] tagLockStripes = new Object[NUM_TAG_LOCK_STRIPES];
+    {
+        for (int i=0; i<NUM_TAG_LOCK_STRIPES; i++) tagLockStripes[i] = new Object();
+    }
     
     private ConcurrentMap<String,Task<?>> tasksById = new ConcurrentHashMap<String,Task<?>>();
 
@@ -134,17 +191,112 @@ public class BasicExecutionManager implements ExecutionManager {
     };
     
     public BasicExecutionManager(String contextid) {
+        this(contextid, RunnerType.CACHED, 0);
+    }
+    
+    /**
+     * @param runnerType the kind of executor to run tasks in
+     * @param maxThreads the max number of threads, for runners which are bounded (i.e. {@link RunnerType#FORK_JOIN});
+     *        if zero or less then a default based on the number of processors is used
+     */
+    public BasicExecutionManager(String contextid, RunnerType runnerType, int maxThreads) {
+        this(contextid, runnerType, maxThreads, SchedulerType.DELAY_QUEUE);
+    }
+    
+    /**
+     * @param runnerType the kind of executor to run tasks in
+     * @param maxThreads the max number of threads, for runners which are bounded (i.e. {@link RunnerType#FORK_JOIN});
+     *        if zero or less then a default based on the number of processors is used
+     * @param schedulerType the kind of executor used to time {@link ScheduledTask}s
+     */
+    public BasicExecutionManager(String contextid, RunnerType runnerType, int maxThreads, SchedulerType schedulerType) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
-                
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
-                daemonThreadFactory);
+        
+        ExecutorService virtualRunner = (runnerType == RunnerType.VIRTUAL_THREAD) ? newVirtualThreadRunner(contextid) : null;
+        if (runnerType == RunnerType.VIRTUAL_THREAD && virtualRunner == null) {
+            log.warn("Virtual threads not supported in this JVM; execution manager "+contextid+" using "+RunnerType.CACHED+" runner");
+            runnerType = RunnerType.CACHED;
+        }
+        this.runnerType = checkNotNull(runnerType, "runnerType");
+        
+        switch (runnerType) {
+        case FORK_JOIN:
+            runner = newForkJoinRunner(contextid, maxThreads > 0 ? maxThreads : DEFAULT_MAX_THREADS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+            break;
+        case VIRTUAL_THREAD:
+            runner = virtualRunner;
+            break;
+        default:
+            // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
+            runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
+                    daemonThreadFactory);
+        }
             
-        delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        this.schedulerType = checkNotNull(schedulerType, "schedulerType");
+        switch (schedulerType) {
+        case TIMER_WHEEL:
+            delayedRunner = new HashedWheelScheduledExecutor(daemonThreadFactory);
+            break;
+        default:
+            delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        }
+    }
+    
+    private static final int DEFAULT_MAX_THREADS_PER_PROCESSOR = 64;
+    
+    private ExecutorService newForkJoinRunner(final String contextid, int maxThreads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ForkJoinPool(maxThreads, 
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    @Override public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread result = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        result.setName("brooklyn-execmanager-"+contextid+"-fj-"+threadCount.getAndIncrement());
+                        result.setDaemon(true);
+                        return result;
+                    }}, 
+                new UncaughtExceptionHandlerImplementation(), 
+                true); // FIFO, as tasks are submitted rather than forked/joined
+    }
+    
+    /** 
+     * Creates an executor which starts a new virtual thread per task, using reflection as this requires Java 21;
+     * returns null if not available.
+     */
+    private ExecutorService newVirtualThreadRunner(String contextid) {
+        final ThreadFactory virtualThreadFactory;
+        Method newThreadPerTaskExecutor;
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "brooklyn-execmanager-"+contextid+"-vt-", 0L);
+            virtualThreadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            if (log.isDebugEnabled()) log.debug("Virtual threads not available: "+e);
+            return null;
+        }
+        ThreadFactory countingFactory = new ThreadFactory() {
+            @Override public Thread newThread(final Runnable r) {
+                return virtualThreadFactory.newThread(new Runnable() {
+                    @Override public void run() {
+                        liveVirtualThreadCount.incrementAndGet();
+                        try {
+                            r.run();
+                        } finally {
+                            liveVirtualThreadCount.decrementAndGet();
+                        }
+                    }});
+            }};
+        try {
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, countingFactory);
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
     }
     
     private final static class UncaughtExceptionHandlerImplementation implements Thread.UncaughtExceptionHandler {
@@ -205,7 +357,7 @@ public class BasicExecutionManager implements ExecutionManager {
      */
     public void deleteTag(Object tag) {
         Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
+        synchronized (lockForTag(tag)) {
             tasks = tasksByTag.remove(tag);
         }
         if (tasks != null) {
@@ -227,15 +379,38 @@ public class BasicExecutionManager implements ExecutionManager {
         }
     }
 
+    /**
+     * Replaces the given completed task with a compact {@link CompletedTaskRecord} of it, 
+     * so that the job, the future and the result of the task need not be kept in memory;
+     * subsequent lookups (by id or tag) return the record.
+     * 
+     * @return the record, or the task itself if it is not done or is no longer known 
+     */
+    @Beta
+    public Task<?> compactCompletedTask(Task<?> task) {
+        if (task instanceof CompletedTaskRecord || !task.isDone()) return task;
+        CompletedTaskRecord record = new CompletedTaskRecord(task, this);
+        if (tasksById.replace(task.getId(), record)==null) {
+            // deleted concurrently
+            return task;
+        }
+        for (Object tag : record.getTags()) {
+            // no lock needed, as the replace is a no-op if the task is concurrently removed
+            Set<Task<?>> tasks = tasksByTag.get(tag);
+            if (tasks != null) ((TasksWithTag)tasks).replace(record);
+        }
+        return record;
+    }
+
     protected boolean deleteTaskNonRecursive(Task<?> task) {
         Set<?> tags = checkNotNull(task, "task").getTags();
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
+            Set<Task<?>> tasks = tasksByTag.get(tag);
+            if (tasks != null && tasks.contains(task)) {
+                synchronized (lockForTag(tag)) {
                     tasks.remove(task);
                     if (tasks.isEmpty()) {
-                        tasksByTag.remove(tag);
+                        tasksByTag.remove(tag, tasks);
                     }
                 }
             }
@@ -272,24 +447,136 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
-    private Set<Task<?>> tasksWithTagCreating(Object tag) {
+    @Beta
+    public RunnerType getRunnerType() {
+        return runnerType;
+    }
+    
+    @Beta
+    public SchedulerType getSchedulerType() {
+        return schedulerType;
+    }
+    
+    /** count of threads currently in the pool used to run tasks (or, for virtual threads, the number alive) */
+    @Beta
+    public int getRunnerThreadCount() {
+        if (runner instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor)runner).getPoolSize();
+        } else if (runner instanceof ForkJoinPool) {
+            return ((ForkJoinPool)runner).getPoolSize();
+        } else {
+            return liveVirtualThreadCount.get();
+        }
+    }
+    
+    /** count of tasks (or other jobs) waiting for a thread in the runner; always zero for unbounded runners */
+    @Beta
+    public long getRunnerQueueDepth() {
+        if (runner instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor)runner).getQueue().size();
+        } else if (runner instanceof ForkJoinPool) {
+            return ((ForkJoinPool)runner).getQueuedSubmissionCount() + ((ForkJoinPool)runner).getQueuedTaskCount();
+        } else {
+            return 0;
+        }
+    }
+
+    private Object lockForTag(Object tag) {
+        int h = tag.hashCode();
+        h ^= (h >>> 16);
+        return tagLockStripes[(h & 0x7fffffff) % NUM_TAG_LOCK_STRIPES];
+    }
+    
+    private void addTaskWithTag(Object tag, Task<?> task) {
         Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
+        synchronized (lockForTag(tag)) {
+            Set<Task<?>> result = tasksByTag.get(tag);
             if (result==null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
+                result = new TasksWithTag(tagInsertionSequence);
                 tasksByTag.put(tag, result);
             }
-            return result;
+            result.add(task);
         }
     }
 
-    /** exposes live view, for internal use only */
+    /**
+     * A concurrent set of tasks which iterates in insertion order, with constant-time 
+     * {@link #size()}, {@link #contains(Object)} and {@link #remove(Object)}.
+     */
+    private static class TasksWithTag extends AbstractSet<Task<?>> {
+        private final AtomicLong sequence;
+        // keyed by id so that a task can be replaced by its record (see compactCompletedTask) without removing it
+        private final ConcurrentMap<String,Long> index = new ConcurrentHashMap<String,Long>();
+        private final ConcurrentNavigableMap<Long,Task<?>> ordered = new ConcurrentSkipListMap<Long,Task<?>>();
+        
+        TasksWithTag(AtomicLong sequence) {
+            this.sequence = sequence;
+        }
+        @Override
+        public boolean add(Task<?> task) {
+            Long seq = sequence.incrementAndGet();
+            if (index.putIfAbsent(task.getId(), seq)!=null) return false;
+            ordered.put(seq, task);
+            return true;
+        }
+        @Override
+        public boolean remove(Object task) {
+            if (!(task instanceof Task)) return false;
+            Long seq = index.remove(((Task<?>)task).getId());
+            if (seq==null) return false;
+            ordered.remove(seq);
+            return true;
+        }
+        /** replaces the entry for the given task (matched by id) with the given task, keeping its position */
+        boolean replace(Task<?> task) {
+            Long seq = index.get(task.getId());
+            if (seq==null) return false;
+            ordered.replace(seq, task);
+            return true;
+        }
+        @Override
+        public boolean contains(Object task) {
+            return (task instanceof Task) && index.containsKey(((Task<?>)task).getId());
+        }
+        @Override
+        public int size() {
+            return index.size();
+        }
+        @Override
+        public boolean isEmpty() {
+            return index.isEmpty();
+        }
+        @Override
+        public Iterator<Task<?>> iterator() {
+            final Iterator<Task<?>> delegate = ordered.values().iterator();
+            return new Iterator<Task<?>>() {
+                Task<?> last;
+                @Override public boolean hasNext() {
+                    return delegate.hasNext();
+                }
+                @Override public Task<?> next() {
+                    return last = delegate.next();
+                }
+                @Override public void remove() {
+                    if (last==null) throw new IllegalStateException();
+                    TasksWithTag.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+    }
+
+    /** exposes live view, for internal use only; the set is concurrent so can be iterated without copying or synchronizing */
     @Beta
     public Set<Task<?>> tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.get(tag);
+    }
+    
+    /** count of tasks in memory with the given tag, without copying or iterating */
+    @Beta
+    public int getNumTasksWithTag(Object tag) {
+        Set<Task<?>> result = tasksByTag.get(tag);
+        return (result==null) ? 0 : result.size();
     }
 
     @Override
@@ -310,9 +597,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Set<Task<?>> getTasksWithTag(Object tag) {
         Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
         if (result==null) return Collections.emptySet();
-        synchronized (result) {
-            return (Set<Task<?>>)Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        return (Set<Task<?>>)Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
     
     @Override
@@ -322,9 +607,7 @@ public class BasicExecutionManager implements ExecutionManager {
         while (ti.hasNext()) {
             Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
             if (tasksForTag!=null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
+                result.addAll(tasksForTag);
             }
         }
         return Collections.unmodifiableSet(result);
@@ -356,9 +639,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Collection<Task<?>> allTasksLive() { return tasksById.values(); }
     
     public Set<Object> getTaskTags() { 
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
-        }
+        return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
     }
 
     public Task<?> submit(Runnable r) { return submit(new LinkedHashMap<Object,Object>(1), r); }
@@ -391,15 +672,26 @@ public class BasicExecutionManager implements ExecutionManager {
         
         beforeSubmitScheduledTaskAllIterations(flags, task);
         
-        return submitSubsequentScheduledTask(flags, task);
+        // one callable is used for all iterations of the task
+        return scheduleNextIteration(new ScheduledTaskCallable(task, flags));
     }
     
     protected Task<?> submitSubsequentScheduledTask(final Map<?,?> flags, final ScheduledTask task) {
+        return scheduleNextIteration(new ScheduledTaskCallable(task, flags));
+    }
+    
+    private Task<?> scheduleNextIteration(ScheduledTaskCallable callable) {
+        ScheduledTask task = callable.task;
         if (!task.isDone()) {
-            task.internalFuture = delayedRunner.schedule(new ScheduledTaskCallable(task, flags),
-                task.delay.toNanoseconds(), TimeUnit.NANOSECONDS);
+            long delay = task.delay.toNanoseconds();
+            if (task.runCount==0 && task.jitter!=null && task.jitter.isPositive()) {
+                // spread the first runs of tasks scheduled together; later runs then keep their offset
+                delay += ThreadLocalRandom.current().nextLong(task.jitter.toNanoseconds());
+            }
+            // one-shot per iteration (the callable is reused, the timeout is not), as the delay runs from the end of the previous run
+            task.internalFuture = delayedRunner.schedule(callable, delay, TimeUnit.NANOSECONDS);
         } else {
-            afterEndScheduledTaskAllIterations(flags, task);
+            afterEndScheduledTaskAllIterations(callable.flags, task);
         }
         return task;
     }
@@ -461,7 +753,7 @@ public class BasicExecutionManager implements ExecutionManager {
             task.runCount++;
             if (task.period!=null && !task.isCancelled()) {
                 task.delay = task.period;
-                submitSubsequentScheduledTask(flags, task);
+                scheduleNextIteration(this);
             }
         }
 
@@ -727,7 +1019,17 @@ public class BasicExecutionManager implements ExecutionManager {
         if (flags.get("tags")!=null) ((TaskInternal<?>)task).getMutableTags().addAll((Collection<?>)flags.remove("tags"));
 
         for (Object tag: ((TaskInternal<?>)task).getTags()) {
-            tasksWithTagCreating(tag).add(task);
+            addTaskWithTag(tag, task);
+        }
+        
+        for (ExecutionListener listener : listeners) {
+            if (listener instanceof ExecutionSubmissionListener) {
+                try {
+                    ((ExecutionSubmissionListener)listener).onTaskSubmitted(task);
+                } catch (Exception e) {
+                    log.warn("Error running execution listener "+listener+" of task "+task+" submitted", e);
+                }
+            }
         }
     }
 
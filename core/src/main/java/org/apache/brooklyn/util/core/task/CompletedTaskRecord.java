@@ -0,0 +1,497 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.api.mgmt.HasTaskChildren;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.exceptions.UserFacingException;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.common.primitives.Primitives;
+import com.google.common.util.concurrent.ExecutionList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A compact, immutable record of a completed task, which can be kept in place of the task
+ * (see {@link BasicExecutionManager#compactCompletedTask(Task)}).
+ * <p>
+ * The record keeps the id, names, tags, times and status of the task,
+ * and the result or error as a string (truncated to {@link #MAX_TEXT_LENGTH}),
+ * but not the job or the future.
+ * The result itself is kept only if it is small and immutable (see {@link #isResultRetainable(Object)});
+ * otherwise {@link #get()} throws {@link ResultNotRetainedException}, and only {@link #getResultText()} is available.
+ * The submitter and children are referred to by id and looked up in the execution manager when requested,
+ * so records do not keep other tasks in memory.
+ * <p>
+ * Records are equal to the task they record, as tasks are compared by id.
+ */
+@Beta
+public class CompletedTaskRecord implements TaskInternal<Object>, HasTaskChildren {
+
+    /** max length of the result, error, and status strings kept */
+    public static final int MAX_TEXT_LENGTH = 1024;
+
+    private final ExecutionManager executionManager;
+    private final String id;
+    private final String displayName;
+    private final String description;
+    private final Set<Object> tags;
+    private final long queuedTimeUtc;
+    private final long submitTimeUtc;
+    private final long startTimeUtc;
+    private final long endTimeUtc;
+    private final String submittedByTaskId;
+    private final String[] childIds;
+    private final String statusSummary;
+    private final String statusDetail;
+    private final String statusDetailMultiline;
+    private final boolean cancelled;
+    private final boolean error;
+    /** the result as a string, or if {@link #error} the error message */
+    private final String resultText;
+    /** the result, if {@link #resultRetained} */
+    private final Object result;
+    private final boolean resultRetained;
+
+    /**
+     * Thrown by {@link CompletedTaskRecord#get()} when the result of the task was not kept in the record.
+     */
+    public static class ResultNotRetainedException extends IllegalStateException {
+        private static final long serialVersionUID = -2985472094726813470L;
+
+        public ResultNotRetainedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Whether a result is kept in a record: null, strings up to {@link #MAX_TEXT_LENGTH},
+     * boxed primitives, enums and {@link Duration}s.
+     */
+    public static boolean isResultRetainable(Object result) {
+        if (result==null) return true;
+        if (result instanceof String) return ((String)result).length() <= MAX_TEXT_LENGTH;
+        return Primitives.isWrapperType(result.getClass()) || result instanceof Enum || result instanceof Duration;
+    }
+
+    public CompletedTaskRecord(Task<?> task, ExecutionManager executionManager) {
+        if (!task.isDone()) throw new IllegalStateException("Cannot make a record of "+task+" as it is not completed");
+        this.executionManager = executionManager;
+        id = task.getId();
+        displayName = task.getDisplayName();
+        description = task.getDescription();
+        tags = Collections.unmodifiableSet(MutableSet.copyOf(task.getTags()));
+        queuedTimeUtc = (task instanceof TaskInternal) ? ((TaskInternal<?>)task).getQueuedTimeUtc() : -1;
+        submitTimeUtc = task.getSubmitTimeUtc();
+        startTimeUtc = task.getStartTimeUtc();
+        endTimeUtc = task.getEndTimeUtc();
+        submittedByTaskId = (task.getSubmittedByTask()==null) ? null : task.getSubmittedByTask().getId();
+
+        List<String> children = MutableList.of();
+        if (task instanceof HasTaskChildren) {
+            for (Task<?> child: ((HasTaskChildren)task).getChildren()) children.add(child.getId());
+        }
+        childIds = children.toArray(new String[children.size()]);
+
+        statusSummary = Strings.maxlenWithEllipsis(task.getStatusSummary(), MAX_TEXT_LENGTH);
+        statusDetail = Strings.maxlenWithEllipsis(task.getStatusDetail(false), MAX_TEXT_LENGTH);
+        statusDetailMultiline = Strings.maxlenWithEllipsis(task.getStatusDetail(true), MAX_TEXT_LENGTH);
+
+        cancelled = task.isCancelled();
+        String text = null;
+        Object value = null;
+        boolean failed = cancelled;
+        if (!cancelled) {
+            try {
+                value = task.get();
+                text = (value==null) ? null : value.toString();
+            } catch (Throwable t) {
+                Exceptions.propagateIfFatal(t);
+                failed = true;
+                text = Exceptions.collapseText(t);
+            }
+        }
+        error = failed;
+        resultText = Strings.maxlenWithEllipsis(text, MAX_TEXT_LENGTH);
+        resultRetained = !failed && isResultRetainable(value);
+        result = resultRetained ? value : null;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Task)
+            return ((Task<?>)obj).getId().equals(getId());
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Task["+displayName+"]@"+getId();
+    }
+
+    @Override
+    public Task<Object> asTask() {
+        return this;
+    }
+
+    @Override
+    public Set<Object> getTags() {
+        return tags;
+    }
+
+    @Override
+    public long getSubmitTimeUtc() {
+        return submitTimeUtc;
+    }
+
+    @Override
+    public long getStartTimeUtc() {
+        return startTimeUtc;
+    }
+
+    @Override
+    public long getEndTimeUtc() {
+        return endTimeUtc;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    /** the task which submitted this one, if it is still known to the execution manager */
+    @Override
+    public Task<?> getSubmittedByTask() {
+        return (submittedByTaskId==null) ? null : executionManager.getTask(submittedByTaskId);
+    }
+
+    /** the id of the task which submitted this one, even if that task is no longer known */
+    public String getSubmittedByTaskId() {
+        return submittedByTaskId;
+    }
+
+    /** the children of the task, as far as they are still known to the execution manager */
+    @Override
+    public Iterable<Task<?>> getChildren() {
+        List<Task<?>> result = MutableList.of();
+        for (String childId: childIds) {
+            Task<?> child = executionManager.getTask(childId);
+            if (child!=null) result.add(child);
+        }
+        return result;
+    }
+
+    @Override
+    public Thread getThread() {
+        return null;
+    }
+
+    @Override
+    public boolean isSubmitted() {
+        return submitTimeUtc >= 0;
+    }
+
+    @Override
+    public boolean isBegun() {
+        return startTimeUtc >= 0;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isError() {
+        return error;
+    }
+
+    @Override
+    public String getStatusSummary() {
+        return statusSummary;
+    }
+
+    @Override
+    public String getStatusDetail(boolean multiline) {
+        return multiline ? statusDetailMultiline : statusDetail;
+    }
+
+    /**
+     * returns the result if it was kept, or throws if the task failed or was cancelled;
+     * throws {@link ResultNotRetainedException} if the task succeeded but its result was not kept
+     */
+    @Override
+    public Object get() throws ExecutionException {
+        if (cancelled) throw new CancellationException();
+        if (error) throw new ExecutionException(new UserFacingException(resultText));
+        if (!resultRetained) throw new ResultNotRetainedException("Result of "+this+" is not available, as the completed task was compacted; "
+                + "result was: "+resultText);
+        return result;
+    }
+
+    /** whether {@link #get()} returns the result of the task (rather than throwing {@link ResultNotRetainedException}) */
+    public boolean isResultRetained() {
+        return resultRetained;
+    }
+
+    /** the result as a string (possibly truncated), or the error message if the task failed */
+    public String getResultText() {
+        return resultText;
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public Object get(Duration duration) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public Object getUnchecked() {
+        try {
+            return get();
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public Object getUnchecked(Duration duration) {
+        return getUnchecked();
+    }
+
+    @Override
+    public void addListener(Runnable listener, Executor executor) {
+        // already done, so run immediately (as a completed ListenableFuture would)
+        executor.execute(listener);
+    }
+
+    @Override
+    public void blockUntilStarted() {
+    }
+
+    @Override
+    public boolean blockUntilStarted(Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public void blockUntilEnded() {
+    }
+
+    @Override
+    public boolean blockUntilEnded(Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean cancel() {
+        return false;
+    }
+
+    @Override
+    public boolean cancel(TaskCancellationMode mode) {
+        return false;
+    }
+
+    @Override
+    public long getQueuedTimeUtc() {
+        return queuedTimeUtc;
+    }
+
+    @Override
+    public boolean isQueued() {
+        return queuedTimeUtc >= 0;
+    }
+
+    @Override
+    public boolean isQueuedOrSubmitted() {
+        return isQueued() || isSubmitted();
+    }
+
+    @Override
+    public boolean isQueuedAndNotSubmitted() {
+        return isQueued() && !isSubmitted();
+    }
+
+    @Override
+    public void markQueued() {
+    }
+
+    /** a completed future, consistent with {@link #get()}; a record is never run */
+    @Override
+    public Future<Object> getInternalFuture() {
+        if (cancelled) return Futures.immediateCancelledFuture();
+        if (error) return Futures.immediateFailedFuture(new UserFacingException(resultText));
+        if (!resultRetained) return Futures.immediateFailedFuture(new ResultNotRetainedException("Result of "+this+" is not available, "
+                + "as the completed task was compacted; result was: "+resultText));
+        return Futures.immediateFuture(result);
+    }
+
+    @Override
+    public void initInternalFuture(ListenableFuture<Object> result) {
+        throw new UnsupportedOperationException("Cannot run "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public String setBlockingDetails(String blockingDetails) {
+        return null;
+    }
+
+    @Override
+    public Task<?> setBlockingTask(Task<?> blockingTask) {
+        return null;
+    }
+
+    @Override
+    public void resetBlockingDetails() {
+    }
+
+    @Override
+    public void resetBlockingTask() {
+    }
+
+    @Override
+    public String getBlockingDetails() {
+        return null;
+    }
+
+    @Override
+    public Task<?> getBlockingTask() {
+        return null;
+    }
+
+    @Override
+    public void setExtraStatusText(Object extraStatus) {
+    }
+
+    @Override
+    public Object getExtraStatusText() {
+        return null;
+    }
+
+    @Override
+    public void runListeners() {
+    }
+
+    @Override
+    public ExecutionList getListeners() {
+        ExecutionList result = new ExecutionList();
+        result.execute();
+        return result;
+    }
+
+    @Override
+    public Callable<Object> getJob() {
+        return null;
+    }
+
+    /** returns the tags, which cannot be modified */
+    @Override
+    public Set<Object> getMutableTags() {
+        return tags;
+    }
+
+    @Override
+    public void applyTagModifier(Function<Set<Object>, Void> modifier) {
+        throw new UnsupportedOperationException("Cannot modify tags of "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setEndTimeUtc(long val) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setThread(Thread thread) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setJob(Callable<Object> job) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setSubmitTimeUtc(long currentTimeMillis) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setSubmittedByTask(Task<?> task) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public void setStartTimeUtc(long currentTimeMillis) {
+        throw new UnsupportedOperationException("Cannot modify "+this+"; it is a record of a completed task");
+    }
+
+    @Override
+    public Task<?> getProxyTarget() {
+        return this;
+    }
+
+}
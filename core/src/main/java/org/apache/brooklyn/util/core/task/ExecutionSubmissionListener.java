@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import org.apache.brooklyn.api.mgmt.Task;
+
+import com.google.common.annotations.Beta;
+
+/** an {@link ExecutionListener} which is also told when tasks are submitted */
+@Beta
+public interface ExecutionSubmissionListener extends ExecutionListener {
+
+    /** invoked when a task is submitted, in the submitting thread, so should be quick:
+     * {@link Task#getSubmitTimeUtc()} and the task's tags are guaranteed to be set */
+    public void onTaskSubmitted(Task<?> task);
+    
+}
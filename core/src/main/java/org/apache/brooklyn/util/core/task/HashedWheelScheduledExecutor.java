@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hashed timer wheel, for large numbers of delayed and periodic jobs
+ * (such as feed polls) where a little imprecision is acceptable.
+ * <p>
+ * Time is divided into ticks (of {@link #DEFAULT_TICK} by default), and the wheel is a ring of buckets, one per tick.
+ * Scheduling is O(1): a job goes into the bucket for the tick at (or just after) its deadline, and on each tick
+ * the single worker thread visits only that bucket, running jobs which are due and leaving the rest for a later
+ * rotation. This avoids the O(log n) heap maintenance of a {@link java.util.concurrent.ScheduledThreadPoolExecutor},
+ * and contention on its single queue lock. Jobs run at most one tick late, and never early.
+ * <p>
+ * Jobs are run in the worker thread, so they should be quick (typically handing off to another executor).
+ * A periodic job (from {@link #scheduleAtFixedRate(Runnable, long, long, TimeUnit)} or
+ * {@link #scheduleWithFixedDelay(Runnable, long, long, TimeUnit)}) keeps its single future for all iterations;
+ * it is re-armed rather than re-created. One-shot jobs from {@code schedule} get a new future each time, as
+ * {@link ScheduledTask}s do (see {@link BasicExecutionManager.SchedulerType#TIMER_WHEEL}).
+ * Cancelled jobs are discarded when their bucket is next visited. When nothing is scheduled the worker parks,
+ * rather than ticking.
+ * <p>
+ * After {@link #shutdown()}, jobs already scheduled run (periodic jobs then stop); the executor terminates once
+ * nothing remains. {@link #shutdownNow()} stops the worker and cancels everything outstanding; it returns only
+ * those jobs not yet taken up by the worker.
+ */
+@Beta
+public class HashedWheelScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelScheduledExecutor.class);
+
+    public static final Duration DEFAULT_TICK = Duration.millis(10);
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOPPED = 2;
+
+    private final long tickNanos;
+    /** head of the list of jobs in each bucket; only accessed by the worker */
+    private final WheelFuture<?>[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    /** jobs scheduled but not yet placed in the wheel by the worker */
+    private final Queue<WheelFuture<?>> pending = new ConcurrentLinkedQueue<WheelFuture<?>>();
+    /** number of jobs scheduled and not yet finished or discarded */
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final Thread worker;
+    /** the last tick processed; only accessed by the worker */
+    private long processedTick = 0;
+
+    public HashedWheelScheduledExecutor(ThreadFactory threadFactory) {
+        this(threadFactory, DEFAULT_TICK, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * @param tick the resolution of the wheel
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two
+     */
+    public HashedWheelScheduledExecutor(ThreadFactory threadFactory, Duration tick, int ticksPerWheel) {
+        checkNotNull(threadFactory, "threadFactory");
+        checkArgument(tick.isPositive(), "tick must be positive");
+        checkArgument(ticksPerWheel > 0, "ticksPerWheel must be positive");
+        tickNanos = tick.toNanoseconds();
+        int buckets = Integer.highestOneBit(ticksPerWheel);
+        if (buckets < ticksPerWheel) buckets <<= 1;
+        wheel = new WheelFuture<?>[buckets];
+        mask = buckets - 1;
+        worker = threadFactory.newThread(new Runnable() {
+            @Override public void run() {
+                runWorker();
+            }
+        });
+        worker.start();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(checkNotNull(command, "command")), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return add(new WheelFuture<V>(checkNotNull(callable, "callable"), deadline(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        checkArgument(period > 0, "period must be positive");
+        return add(new WheelFuture<Void>(Executors.<Void>callable(checkNotNull(command, "command"), null), deadline(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        checkArgument(delay > 0, "delay must be positive");
+        return add(new WheelFuture<Void>(Executors.<Void>callable(checkNotNull(command, "command"), null), deadline(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        state.compareAndSet(RUNNING, SHUTDOWN);
+        LockSupport.unpark(worker);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        state.set(STOPPED);
+        worker.interrupt();
+        List<Runnable> result = MutableList.of();
+        WheelFuture<?> f;
+        while ((f = pending.poll()) != null) {
+            f.cancel(false);
+            result.add(f);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /** the number of jobs scheduled and not yet finished (including cancelled jobs not yet discarded) */
+    public int getScheduledCount() {
+        return size.get();
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private long deadline(long delay, TimeUnit unit) {
+        // cap so deadlines never overflow
+        return now() + Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE / 4);
+    }
+
+    private <V> WheelFuture<V> add(WheelFuture<V> f) {
+        if (state.get() != RUNNING) throw new RejectedExecutionException("Executor "+this+" has been shut down");
+        pending.add(f);
+        if (size.getAndIncrement() == 0) LockSupport.unpark(worker);
+        return f;
+    }
+
+    private void runWorker() {
+        try {
+            while (state.get() != STOPPED) {
+                transferPending();
+                if (state.get() == SHUTDOWN && size.get() == 0) break;
+                long now = now();
+                long nextTickTime = (processedTick + 1) * tickNanos;
+                if (now < nextTickTime) {
+                    if (size.get() == 0) LockSupport.park(this);
+                    else LockSupport.parkNanos(this, nextTickTime - now);
+                    continue;
+                }
+                long currentTick = now / tickNanos;
+                // after a long idle period one rotation suffices, as every job is checked against its deadline
+                if (currentTick - processedTick > wheel.length) processedTick = currentTick - wheel.length;
+                while (processedTick < currentTick && state.get() != STOPPED) {
+                    processedTick++;
+                    expireBucket(processedTick);
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Timer wheel worker "+Thread.currentThread().getName()+" failed; cancelling all scheduled jobs", t);
+            state.set(STOPPED);
+            throw t;
+        } finally {
+            cancelAll();
+            terminated.countDown();
+        }
+    }
+
+    /** puts pending jobs in the bucket for their deadline, or the next bucket to be visited if that is later */
+    private void transferPending() {
+        WheelFuture<?> f;
+        while ((f = pending.poll()) != null) {
+            if (f.isCancelled()) {
+                size.decrementAndGet();
+                continue;
+            }
+            long tick = Math.max((f.deadline + tickNanos - 1) / tickNanos, processedTick + 1);
+            int index = (int) (tick & mask);
+            f.next = wheel[index];
+            wheel[index] = f;
+        }
+    }
+
+    private void expireBucket(long tick) {
+        int index = (int) (tick & mask);
+        long tickTime = tick * tickNanos;
+        WheelFuture<?> due = null;
+        WheelFuture<?> kept = null;
+        WheelFuture<?> f = wheel[index];
+        while (f != null) {
+            WheelFuture<?> next = f.next;
+            if (f.isCancelled()) {
+                f.next = null;
+                size.decrementAndGet();
+            } else if (f.deadline <= tickTime) {
+                f.next = due;
+                due = f;
+            } else {
+                f.next = kept;
+                kept = f;
+            }
+            f = next;
+        }
+        wheel[index] = kept;
+
+        while (due != null && state.get() != STOPPED) {
+            f = due;
+            due = f.next;
+            f.next = null;
+            if (f.runOnce() && state.get() == RUNNING) {
+                // periodic and should continue; keep it counted in size
+                pending.add(f);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+        // if stopped, put back anything not run so it is cancelled
+        while (due != null) {
+            f = due;
+            due = f.next;
+            f.next = wheel[index];
+            wheel[index] = f;
+        }
+    }
+
+    private void cancelAll() {
+        for (int i = 0; i < wheel.length; i++) {
+            WheelFuture<?> f = wheel[i];
+            wheel[i] = null;
+            while (f != null) {
+                f.cancel(false);
+                WheelFuture<?> next = f.next;
+                f.next = null;
+                f = next;
+            }
+        }
+        WheelFuture<?> f;
+        while ((f = pending.poll()) != null) {
+            f.cancel(false);
+        }
+        size.set(0);
+    }
+
+    private class WheelFuture<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        /** nanos since the executor started; only changed by the worker, when re-arming */
+        volatile long deadline;
+        /** positive for fixed rate, negative for fixed delay, zero if not periodic */
+        final long period;
+        /** next in the bucket; only accessed by the worker */
+        WheelFuture<?> next;
+
+        WheelFuture(Callable<V> callable, long deadline, long period) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        /** runs the job; returns true if it is periodic and should be run again (having updated its deadline) */
+        boolean runOnce() {
+            if (!isPeriodic()) {
+                run();
+                return false;
+            }
+            if (!runAndReset()) return false;
+            deadline = (period > 0) ? deadline + period : now() - period;
+            return true;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - now(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this) return 0;
+            long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+        }
+    }
+}
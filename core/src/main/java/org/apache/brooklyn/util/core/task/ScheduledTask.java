@@ -69,6 +69,13 @@ public class ScheduledTask extends BasicTask<Object> {
      */
     protected boolean cancelOnException = true;
 
+    /**
+     * Optional max random extra delay before the first run, set as flag in constructor; defaults to null meaning none.
+     * Used to spread out tasks scheduled at the same time with the same period (e.g. polls on rebind),
+     * so that they do not all run at the same instant on every iteration.
+     */
+    protected Duration jitter = null;
+
     protected int runCount=0;
     protected Task<?> recentRun, nextRun;
     Class<? extends Exception> lastThrownType;
@@ -101,6 +108,7 @@ public class ScheduledTask extends BasicTask<Object> {
         maxIterations = elvis(flags.remove("maxIterations"), null);
         Object cancelFlag = flags.remove("cancelOnException");
         cancelOnException = cancelFlag == null || Boolean.TRUE.equals(cancelFlag);
+        jitter = Duration.of(elvis(flags.remove("jitter"), null));
     }
     
     public ScheduledTask delay(Duration d) {
@@ -131,6 +139,12 @@ public class ScheduledTask extends BasicTask<Object> {
         return this;
     }
 
+    @Beta
+    public ScheduledTask jitter(Duration d) {
+        this.jitter = d;
+        return this;
+    }
+
     public Callable<Task<?>> getTaskFactory() {
         return taskFactory;
     }
@@ -21,9 +21,11 @@ package org.apache.brooklyn.util.core.xstream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
@@ -35,6 +37,14 @@ import org.xml.sax.SAXException;
 public class XmlUtil {
 
     public static Object xpath(String xml, String xpath) {
+        return xpath(xml, xpath, XPathConstants.STRING);
+    }
+
+    /** 
+     * As {@link #xpath(String, String)}, but with the given return type, 
+     * e.g. {@link XPathConstants#NODESET} to get all matching nodes
+     */
+    public static Object xpath(String xml, String xpath, QName returnType) {
         // TODO Could share factory/doc in thread-local storage; see http://stackoverflow.com/questions/9828254/is-documentbuilderfactory-thread-safe-in-java-5
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -43,7 +53,7 @@ public class XmlUtil {
             XPathFactory xPathfactory = XPathFactory.newInstance();
             XPathExpression expr = xPathfactory.newXPath().compile(xpath);
             
-            return expr.evaluate(doc);
+            return expr.evaluate(doc, returnType);
             
         } catch (ParserConfigurationException e) {
             throw Exceptions.propagate(e);
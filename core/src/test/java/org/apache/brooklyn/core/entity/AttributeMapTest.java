@@ -64,10 +64,14 @@ public class AttributeMapTest {
         app = TestApplication.Factory.newManagedInstanceForTests();
         TestEntity entity = app.addChild(EntitySpec.create(TestEntity.class));
         entityImpl = (TestEntityImpl) Entities.deproxy(entity);
-        map = new AttributeMap(entityImpl, Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of()));
+        map = newAttributeMap(entityImpl);
         executor = Executors.newCachedThreadPool();
     }
     
+    protected AttributeMap newAttributeMap(TestEntityImpl entity) {
+        return new AttributeMap(entity, Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of()));
+    }
+    
     @AfterMethod(alwaysRun=true)
     public void tearDown() {
         if (executor != null) executor.shutdownNow();
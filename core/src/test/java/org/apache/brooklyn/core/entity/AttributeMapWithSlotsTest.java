@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.sensor.AttributeMap;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Runs the {@link AttributeMapTest} tests against attribute values stored in slots
+ * (see {@link BrooklynFeatureEnablement#FEATURE_ATTRIBUTE_SLOT_STORAGE}).
+ */
+public class AttributeMapWithSlotsTest extends AttributeMapTest {
+
+    @Override
+    protected AttributeMap newAttributeMap(TestEntityImpl entity) {
+        boolean oldEnabled = BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOT_STORAGE);
+        try {
+            return new AttributeMap(entity);
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOT_STORAGE, oldEnabled);
+        }
+    }
+    
+    @Test
+    public void testNullAndRemovedValues() throws Exception {
+        AttributeSensor<String> sensor1 = Sensors.newStringSensor("a.b");
+        AttributeSensor<String> sensor2 = Sensors.newStringSensor("c");
+        
+        map.update(sensor1, null);
+        map.update(sensor2, "2val");
+        assertNull(map.getValue(sensor1));
+        assertEquals(map.asMap().keySet(), ImmutableSet.of("a.b", "c"));
+        assertNull(map.asMap().get("a.b"));
+        assertEquals(map.asRawMap().keySet(), ImmutableSet.of(ImmutableList.of("a", "b"), ImmutableList.of("c")));
+        
+        map.remove(sensor1);
+        assertEquals(map.asRawMap().keySet(), ImmutableSet.of(ImmutableList.of("c")));
+        assertEquals(map.asMap(), ImmutableMap.of("c", "2val"));
+    }
+    
+    @Test
+    public void testSlotsSharedBetweenEntitiesOfSameType() throws Exception {
+        AttributeSensor<String> sensor = Sensors.newStringSensor("shared.sensor");
+        TestEntityImpl other = (TestEntityImpl) Entities.deproxy(app.addChild(EntitySpec.create(TestEntity.class)));
+        AttributeMap otherMap = newAttributeMap(other);
+        
+        otherMap.update(sensor, "otherval");
+        assertNull(map.getValue(sensor));
+        map.update(sensor, "val");
+        assertEquals(map.getValue(sensor), "val");
+        assertEquals(otherMap.getValue(sensor), "otherval");
+    }
+    
+    @Test
+    public void testSlotValuesSizedByOwnWrites() throws Exception {
+        for (int i=0; i<100; i++) {
+            map.update(Sensors.newStringSensor("sizing.sensor"+i), "val"+i);
+        }
+        TestEntityImpl other = (TestEntityImpl) Entities.deproxy(app.addChild(EntitySpec.create(TestEntity.class)));
+        AttributeMap otherMap = newAttributeMap(other);
+        assertEquals(otherMap.getSlotCapacity(), 0);
+        
+        AttributeSensor<String> sensor = Sensors.newStringSensor("sizing.sensor.own");
+        otherMap.update(sensor, "val");
+        assertEquals(otherMap.getValue(sensor), "val");
+        assertEquals(otherMap.asMap(), ImmutableMap.of("sizing.sensor.own", "val"));
+    }
+}
@@ -25,16 +25,19 @@ import static org.testng.Assert.fail;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.BasicConfigKey;
+import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.location.SimulatedLocation;
 import org.apache.brooklyn.core.sensor.DependentConfiguration;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -311,4 +314,47 @@ public class EntityConfigMapUsageTest extends BrooklynAppUnitTestSupport {
             t.interrupt();
         }
     }
+
+    @Test
+    public void testResolvedValuesCachedUntilConfigChanged() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(strKey, "aval"));
+        EntityConfigMap configMap = ((AbstractEntity)Entities.deproxy(entity)).getConfigMap();
+        
+        assertEquals(entity.getConfig(strKey), "aval");
+        long hits = configMap.getResolvedValueCacheHits();
+        assertEquals(entity.getConfig(strKey), "aval");
+        assertEquals(configMap.getResolvedValueCacheHits(), hits+1);
+        
+        entity.config().set(strKey, "bval");
+        assertEquals(entity.getConfig(strKey), "bval");
+        assertEquals(configMap.getResolvedValueCacheHits(), hits+1);
+    }
+    
+    @Test
+    public void testCachedInheritedValueRefreshedWhenParentConfigChanged() throws Exception {
+        TestEntity parent = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(intKeyWithDefault, 2));
+        TestEntity entity = parent.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        assertEquals(entity.getConfig(intKeyWithDefault), (Integer)2);
+        assertEquals(entity.getConfig(intKeyWithDefault), (Integer)2);
+        
+        parent.config().set(intKeyWithDefault, 3);
+        assertEquals(entity.getConfig(intKeyWithDefault), (Integer)3);
+    }
+    
+    @Test
+    public void testDeferredValuesNotCached() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        ConfigKey<Object> objKey = new BasicConfigKey<Object>(Object.class, "okey", "o key");
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(objKey, new DeferredSupplier<String>() {
+                    @Override public String get() {
+                        return "val"+counter.incrementAndGet();
+                    }}));
+        
+        assertEquals(entity.getConfig(objKey), "val1");
+        assertEquals(entity.getConfig(objKey), "val2");
+    }
 }
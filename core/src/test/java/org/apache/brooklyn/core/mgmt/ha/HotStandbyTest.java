@@ -133,6 +133,10 @@ public class HotStandbyTest {
         public RebindManagerImpl rebinder() {
             return (RebindManagerImpl)mgmt.getRebindManager();
         }
+
+        public ManagementContextInternal getManagementContext() {
+            return mgmt;
+        }
     }
     
     @BeforeMethod(alwaysRun=true)
@@ -163,21 +167,21 @@ public class HotStandbyTest {
         return new InMemoryObjectStore(sharedBackingStore, sharedBackingStoreDates);
     }
 
-    private HaMgmtNode createMaster(Duration persistOrRebindPeriod) throws Exception {
+    protected HaMgmtNode createMaster(Duration persistOrRebindPeriod) throws Exception {
         HaMgmtNode n1 = newNode(persistOrRebindPeriod);
         n1.ha.start(HighAvailabilityMode.AUTO);
         assertEquals(n1.ha.getNodeState(), ManagementNodeState.MASTER);
         return n1;
     }
     
-    private HaMgmtNode createHotStandby(Duration rebindPeriod) throws Exception {
+    protected HaMgmtNode createHotStandby(Duration rebindPeriod) throws Exception {
         HaMgmtNode n2 = newNode(rebindPeriod);
         n2.ha.start(HighAvailabilityMode.HOT_STANDBY);
         assertEquals(n2.ha.getNodeState(), ManagementNodeState.HOT_STANDBY);
         return n2;
     }
 
-    private TestApplication createFirstAppAndPersist(HaMgmtNode n1) throws Exception {
+    protected TestApplication createFirstAppAndPersist(HaMgmtNode n1) throws Exception {
         TestApplication app = TestApplication.Factory.newManagedInstanceForTests(n1.mgmt);
         // for testing without enrichers, if desired:
 //        TestApplication app = ApplicationBuilder.newManagedApp(EntitySpec.create(TestApplication.class).impl(TestApplicationNoEnrichersImpl.class), n1.mgmt);
@@ -190,6 +194,11 @@ public class HotStandbyTest {
         return app;
     }
 
+    /** whether hot standby nodes keep what they last read from the persistence store, which adds to their memory use */
+    protected boolean isPersistedStateRetainedByHotStandby() {
+        return false;
+    }
+
     protected void forcePersistNow(HaMgmtNode n1) {
         n1.mgmt.getRebindManager().forcePersistNow(false, null);
     }
@@ -214,7 +223,7 @@ public class HotStandbyTest {
         return appRO;
     }
 
-    private void forceRebindNow(HaMgmtNode hotStandby) {
+    protected void forceRebindNow(HaMgmtNode hotStandby) {
         hotStandby.mgmt.getRebindManager().rebind(null, null, ManagementNodeState.HOT_STANDBY);
     }
     
@@ -449,10 +458,16 @@ public class HotStandbyTest {
         app.config().set(TestEntity.CONF_OBJECT, "big is now small");
         assertUsedMemoryMaxDelta("Big made small at primary", -SIZE_DOWN_BOUND);
         forcePersistNow(n1);
-        assertUsedMemoryMaxDelta("And persisted", -SIZE_IN_XML_DOWN);
-        
-        forceRebindNow(n2);
-        assertUsedMemoryMaxDelta("And at secondary", -SIZE_DOWN_BOUND);
+        if (isPersistedStateRetainedByHotStandby()) {
+            // the old persisted state is freed only when the secondary next rebinds
+            assertUsedMemoryMaxDelta("And persisted", GRACE);
+            forceRebindNow(n2);
+            assertUsedMemoryMaxDelta("And at secondary", -SIZE_DOWN_BOUND-SIZE_IN_XML_DOWN);
+        } else {
+            assertUsedMemoryMaxDelta("And persisted", -SIZE_IN_XML_DOWN);
+            forceRebindNow(n2);
+            assertUsedMemoryMaxDelta("And at secondary", -SIZE_DOWN_BOUND);
+        }
         
         Entities.unmanage(app);
         forcePersistNow(n1);
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.ha;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+/** Runs the {@link HotStandbyTest} tests with {@link RebindManagerImpl#REBIND_READ_ONLY_DELTAS}, and checks only changes are rebinded. */
+@Test
+public class HotStandbyWithDeltasTest extends HotStandbyTest {
+
+    @Override
+    protected ManagementContextInternal newLocalManagementContext() {
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(RebindManagerImpl.REBIND_READ_ONLY_DELTAS, true);
+        return new LocalManagementContextForTests(properties);
+    }
+    
+    @Override
+    protected boolean isPersistedStateRetainedByHotStandby() {
+        return true;
+    }
+
+    @Test
+    public void testHotStandbyRebindsOnlyChangedEntities() throws Exception {
+        HaMgmtNode n1 = createMaster(Duration.PRACTICALLY_FOREVER);
+        TestApplication app = createFirstAppAndPersist(n1);
+        TestEntity child1 = app.addChild(EntitySpec.create(TestEntity.class));
+        TestEntity child2 = app.addChild(EntitySpec.create(TestEntity.class));
+        forcePersistNow(n1);
+        
+        HaMgmtNode n2 = createHotStandby(Duration.PRACTICALLY_FOREVER);
+        final ManagementContextInternal mgmtRO = n2.getManagementContext();
+        persistAndRebindUntilUnchanged(n1, n2);
+        Entity appRO = mgmtRO.lookup(app.getId(), Entity.class);
+        Entity child1RO = mgmtRO.lookup(child1.getId(), Entity.class);
+        Entity child2RO = mgmtRO.lookup(child2.getId(), Entity.class);
+        Entity child1Impl = Entities.deproxy(child1RO);
+        Entity child2Impl = Entities.deproxy(child2RO);
+        
+        // change one child only
+        child1.sensors().set(TestEntity.SEQUENCE, 4);
+        forcePersistNow(n1);
+        forceRebindNow(n2);
+        
+        assertEquals(child1RO.getAttribute(TestEntity.SEQUENCE), (Integer)4);
+        assertSame(mgmtRO.lookup(child1.getId(), Entity.class), child1RO);
+        assertNotSame(Entities.deproxy(child1RO), child1Impl);
+        assertSame(Entities.deproxy(child2RO), child2Impl);
+        assertEquals(child1RO.getParent(), appRO);
+        assertEquals(appRO.getChildren().size(), 2);
+        
+        // remove a child, and change a grandchild
+        TestEntity grandchild = child2.addChild(EntitySpec.create(TestEntity.class));
+        forcePersistNow(n1);
+        forceRebindNow(n2);
+        Entities.unmanage(child1);
+        grandchild.sensors().set(TestEntity.SEQUENCE, 5);
+        forcePersistNow(n1);
+        forceRebindNow(n2);
+        
+        assertNull(mgmtRO.lookup(child1.getId(), Entity.class));
+        assertEquals(appRO.getChildren().size(), 1);
+        Entity grandchildRO = mgmtRO.lookup(grandchild.getId(), Entity.class);
+        assertEquals(grandchildRO.getAttribute(TestEntity.SEQUENCE), (Integer)5);
+        assertEquals(grandchildRO.getParent(), child2RO);
+        assertEquals(mgmtRO.getEntityManager().getEntities().size(), 3);
+    }
+
+    /** waits for sensors set asynchronously (e.g. by enrichers) to settle, checking that a rebind with no changes leaves every entity as it was */
+    private void persistAndRebindUntilUnchanged(final HaMgmtNode master, final HaMgmtNode hotStandby) {
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                forcePersistNow(master);
+                forceRebindNow(hotStandby);
+                List<Entity> before = MutableList.of();
+                for (Entity entity : hotStandby.getManagementContext().getEntityManager().getEntities()) {
+                    before.add(Entities.deproxy(entity));
+                }
+                forcePersistNow(master);
+                forceRebindNow(hotStandby);
+                for (Entity entity : before) {
+                    assertSame(Entities.deproxy(hotStandby.getManagementContext().lookup(entity.getId(), Entity.class)), entity);
+                }
+            }});
+    }
+
+}
@@ -50,7 +50,9 @@ import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.CompletedTaskRecord;
 import org.apache.brooklyn.util.core.task.ExecutionListener;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.TaskBuilder;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
@@ -256,7 +258,134 @@ public class EntityExecutionManagerTest {
         // (if there are no test failures for a few months, since Sept 2014, then we can remove this comment)
         assertTaskCountForEntitySoon(e, 2);
     }
-    
+
+    @Test
+    public void testGcTaskAtNormalTagLimitOnCompletionWithoutPeriodicGc() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 10);
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+
+        for (int count=0; count<50; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+
+        // the limit is enforced as tasks complete, allowing a slack of 10% before doing so
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                int count = em.getNumTasksWithTag("boring-tag");
+                assertTrue(count>=10 && count<=11, "count="+count);
+            }});
+    }
+
+    @Test
+    public void testCompletedTasksCompactedAndGced() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.COMPACT_COMPLETED_TASKS, true);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final ExecutionManager em = app.getManagementContext().getExecutionManager();
+
+        for (int count=0; count<5; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+
+        assertTaskCountForEntitySoon(e, 2);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                for (Task<?> task: em.getTasksWithTag("boring-tag")) {
+                    assertTrue(task instanceof CompletedTaskRecord, "task="+task);
+                    assertTrue(task.isDone());
+                    assertTrue(task.getTags().contains(BrooklynTaskTags.tagForContextEntity(e)), "tags="+task.getTags());
+                }
+            }});
+    }
+
+    @Test
+    public void testGcForgetsBackgroundTasksDeletedElsewhereEvenWhenNothingExpired() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)app.getManagementContext()).getGarbageCollector();
+
+        final List<Task<?>> backgroundTasks = Lists.newCopyOnWriteArrayList();
+        for (int count=0; count<5; count++) {
+            ((EntityInternal)e).getExecutionContext().submit(Tasks.builder().displayName("submitter").dynamic(false)
+                    .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG)
+                    .body(new Callable<Object>() {
+                        @Override public Object call() throws Exception {
+                            Task<?> background = ((EntityInternal)e).getExecutionContext().submit(newEmptyTask("background")
+                                    .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG).build());
+                            backgroundTasks.add(background);
+                            return background.get();
+                        }}).build()).get();
+        }
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(gc.getNumCompletedBackgroundTasksRecorded(), 5);
+            }});
+
+        for (Task<?> task : backgroundTasks) {
+            em.deleteTask(task);
+        }
+        gc.gcIteration();
+        assertEquals(gc.getNumCompletedBackgroundTasksRecorded(), 0);
+    }
+
+    @Test
+    public void testGcScheduledTaskForAgeOnceEndedButNotBefore() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASK_AGE, Duration.millis(500));
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+        final BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)app.getManagementContext()).getGarbageCollector();
+        
+        // scheduled tasks do not report their completion, so are only expired by the periodic pass
+        ScheduledTask running = newEmptyScheduledTask(MutableMap.of("period", Duration.millis(10)));
+        ScheduledTask finished = newEmptyScheduledTask(MutableMap.of("period", Duration.millis(10), "maxIterations", 1));
+        em.submit(running);
+        em.submit(finished);
+        finished.blockUntilEnded();
+        gc.gcIteration();
+        assertEquals(em.getTask(finished.getId()), finished);
+        
+        // both submitted more than the max age ago, but only one ended that long ago
+        Time.sleep(Duration.millis(600));
+        gc.gcIteration();
+        assertEquals(em.getTask(finished.getId()), null);
+        assertEquals(em.getTask(running.getId()), running);
+        running.cancel();
+    }
+
+    @Test
+    public void testGcCancelledScheduledTask() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_HOUR);
+        app = ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+        final BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)app.getManagementContext()).getGarbageCollector();
+        
+        ScheduledTask scheduled = newEmptyScheduledTask(MutableMap.of("period", Duration.millis(10)));
+        em.submit(scheduled);
+        gc.gcIteration();
+        assertEquals(em.getTask(scheduled.getId()), scheduled);
+        
+        scheduled.cancel();
+        gc.gcIteration();
+        assertEquals(em.getTask(scheduled.getId()), null);
+    }
+
+    protected static ScheduledTask newEmptyScheduledTask(Map<?,?> flags) {
+        return new ScheduledTask(flags, new Callable<Task<?>>() {
+                @Override public Task<?> call() throws Exception {
+                    return newEmptyTask("iteration").build();
+                }});
+    }
+
     @Test
     public void testUnmanagedEntityCanBeGcedEvenIfPreviouslyTagged() throws Exception {
         app = TestApplication.Factory.newManagedInstanceForTests();
@@ -19,6 +19,7 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
@@ -34,12 +35,22 @@ import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+
 /**
  * testing the {@link SubscriptionManager} and associated classes.
  */
@@ -133,6 +144,106 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         assertEquals(events.get(0).getSource().getId(), member.getId());
     }
     
+    @Test
+    public void testBatchedDeliveryPreservesOrderPerSubscriber() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager(), true);
+        final int numEvents = 1000;
+        final List<Integer> received1 = new CopyOnWriteArrayList<Integer>();
+        final List<Integer> received2 = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s1"), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                received1.add(event.getValue());
+                if (received1.size() == numEvents) latch.countDown();
+            }});
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s2"), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                received2.add(event.getValue());
+                if (received2.size() == numEvents) latch.countDown();
+            }});
+        
+        for (int i = 0; i < numEvents; i++) {
+            subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, i));
+        }
+        if (!latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            fail("Timeout waiting for batched events; received "+received1.size()+" and "+received2.size());
+        }
+        
+        List<Integer> expected = Lists.newArrayList(ContiguousSet.create(Range.closedOpen(0, numEvents), DiscreteDomain.integers()));
+        assertEquals(received1, expected);
+        assertEquals(received2, expected);
+        assertEquals(subscriptionManager.getTotalEventsDelivered(), 2*numEvents);
+    }
+    
+    @Test
+    public void testCoalescingSubscriptionDeliversLatestValue() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager());
+        final int numEvents = 1000;
+        final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch firstEventLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s1", "coalesce", true), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                received.add(event.getValue());
+                firstEventLatch.countDown();
+                try {
+                    // block the first delivery so that subsequent events queue up
+                    releaseLatch.await();
+                } catch (InterruptedException e) {
+                    throw Exceptions.propagate(e);
+                }
+            }});
+        
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, -1));
+        assertTrue(firstEventLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < numEvents; i++) {
+            subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, i));
+        }
+        releaseLatch.countDown();
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received, ImmutableList.of(-1, numEvents-1));
+            }});
+        assertEquals(subscriptionManager.getTotalEventsCoalesced(), numEvents-1);
+    }
+    
+    @Test
+    public void testMixedCoalescingAndPlainSubscriptionsPreserveOrderPerSubscriber() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager());
+        final List<Object> received = new CopyOnWriteArrayList<Object>();
+        final CountDownLatch firstEventLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        SensorEventListener<Object> listener = new SensorEventListener<Object>() {
+            @Override public void onEvent(SensorEvent<Object> event) {
+                received.add(event.getValue());
+                if (firstEventLatch.getCount() > 0) {
+                    firstEventLatch.countDown();
+                    try {
+                        // block the first delivery so that subsequent events queue up
+                        releaseLatch.await();
+                    } catch (InterruptedException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            }};
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s1", "coalesce", true), entity, TestEntity.SEQUENCE, listener);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s1", "coalesce", true), entity, TestEntity.NAME, listener);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "s1"), entity, TestEntity.MY_NOTIF, listener);
+        
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, -1));
+        assertTrue(firstEventLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, 1));
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.MY_NOTIF, entity, 2));
+        subscriptionManager.publish(new BasicSensorEvent<String>(TestEntity.NAME, entity, "3"));
+        releaseLatch.countDown();
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received, ImmutableList.<Object>of(-1, 1, 2, "3"));
+            }});
+    }
+    
     // Regression test for ConcurrentModificationException in issue #327
     @Test(groups="Integration")
     public void testConcurrentSubscribingAndPublishing() throws Exception {
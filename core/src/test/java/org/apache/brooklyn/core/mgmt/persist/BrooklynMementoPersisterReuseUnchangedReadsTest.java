@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindExceptionHandlerImpl;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BrooklynMementoPersisterReuseUnchangedReadsTest {
+
+    // well in the past, as for a store whose clock is behind ours
+    private static final long STORE_TIME = 1000*1000;
+
+    private Map<String, String> contents;
+    private Map<String, Date> modTimes;
+    private BrooklynMementoPersisterToObjectStore persister;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        contents = MutableMap.of();
+        modTimes = MutableMap.of();
+        InMemoryObjectStore objectStore = new InMemoryObjectStore(contents, modTimes);
+        objectStore.prepareForSharedUse(null, null);
+        persister = new BrooklynMementoPersisterToObjectStore(objectStore, BrooklynProperties.Factory.newEmpty(), getClass().getClassLoader());
+        persister.setReuseUnchangedReads(true);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (persister != null) persister.stop(false);
+    }
+
+    @Test
+    public void testRereadsWriteWithSameLastModifiedWhenStoreClockBehind() throws Exception {
+        putEntity("e1", "v1", STORE_TIME);
+        assertEquals(loadEntity("e1"), entityXml("e1", "v1"));
+
+        // a second write within the store's last-modified resolution
+        putEntity("e1", "v2", STORE_TIME);
+        assertEquals(loadEntity("e1"), entityXml("e1", "v2"));
+    }
+
+    @Test
+    public void testReusesReadOnceStoreClockPastLastModified() throws Exception {
+        putEntity("e1", "v1", STORE_TIME);
+        loadEntity("e1");
+
+        // a later write elsewhere shows the store's clock has moved on
+        putEntity("e2", "v1", STORE_TIME + 5000);
+        loadEntity("e1");
+        loadEntity("e1");
+        String read = loadEntity("e1");
+        assertEquals(read, entityXml("e1", "v1"));
+        assertSame(loadEntity("e1"), read);
+    }
+
+    private void putEntity(String id, String value, long lastModified) {
+        synchronized (contents) {
+            contents.put("entities/"+id, entityXml(id, value));
+            modTimes.put("entities/"+id, new Date(lastModified));
+        }
+    }
+
+    private String entityXml(String id, String value) {
+        return "<entity><id>"+id+"</id><value>"+value+"</value></entity>";
+    }
+
+    private String loadEntity(String id) {
+        BrooklynMementoRawData data = persister.loadMementoRawData(RebindExceptionHandlerImpl.builder().build());
+        return data.getEntities().get(id);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.factory.ApplicationBuilder;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BrooklynMementoPersisterSkipUnchangedWritesTest {
+
+    private InMemoryObjectStore objectStore;
+    private LocalManagementContext mgmt;
+    private BrooklynMementoPersisterToObjectStore persister;
+    private TestEntity entity;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(BrooklynMementoPersisterToObjectStore.PERSISTER_SKIP_UNCHANGED_WRITES, true);
+        objectStore = new InMemoryObjectStore();
+        mgmt = RebindTestUtils.managementContextBuilder(getClass().getClassLoader(), objectStore)
+                .properties(properties)
+                .persistPeriod(Duration.millis(10))
+                .buildStarted();
+        persister = (BrooklynMementoPersisterToObjectStore) mgmt.getRebindManager().getPersister();
+        TestApplication app = ApplicationBuilder.newManagedApp(EntitySpec.create(TestApplication.class), mgmt);
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        entity.sensors().set(TestEntity.NAME, "myname");
+        RebindTestUtils.waitForPersisted(mgmt);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (mgmt != null) Entities.destroyAll(mgmt);
+    }
+
+    @Test
+    public void testUnchangedMementoNotRewritten() throws Exception {
+        long skippedBefore = persister.getSkippedWriteCount();
+        
+        // sets the same value, so the entity is persisted again but its memento is unchanged
+        entity.sensors().set(TestEntity.NAME, "myname");
+        RebindTestUtils.waitForPersisted(mgmt);
+        assertTrue(persister.getSkippedWriteCount() > skippedBefore, "skipped="+persister.getSkippedWriteCount());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metrics = (Map<String, Object>) ((RebindManagerImpl)mgmt.getRebindManager()).getMetrics().get("persist");
+        assertEquals(metrics.get("skippedWriteCount"), persister.getSkippedWriteCount(), "metrics="+metrics);
+        assertTrue((Double) metrics.get("skippedWriteRatio") > 0, "metrics="+metrics);
+    }
+
+    @Test
+    public void testChangedMementoRewritten() throws Exception {
+        entity.sensors().set(TestEntity.NAME, "newname");
+        RebindTestUtils.waitForPersisted(mgmt);
+        assertTrue(objectStore.newAccessor("entities/"+entity.getId()).get().contains("newname"));
+
+        // and back again, which must not be mistaken for the original (unchanged) content
+        entity.sensors().set(TestEntity.NAME, "myname");
+        RebindTestUtils.waitForPersisted(mgmt);
+        String contents = objectStore.newAccessor("entities/"+entity.getId()).get();
+        assertTrue(contents.contains("myname") && !contents.contains("newname"), "contents="+contents);
+    }
+}
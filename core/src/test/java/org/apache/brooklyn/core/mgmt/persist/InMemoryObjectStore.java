@@ -18,6 +18,10 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -29,9 +33,11 @@ import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.StoreObjectAccessorLocking;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 
 public class InMemoryObjectStore implements PersistenceObjectStore {
@@ -92,6 +98,11 @@ public class InMemoryObjectStore implements PersistenceObjectStore {
             return get().getBytes();
         }
         @Override
+        public InputStream getStream() {
+            String val = get();
+            return val == null ? null : new ByteArrayInputStream(val.getBytes(Charsets.UTF_8));
+        }
+        @Override
         public boolean exists() {
             synchronized (map) {
                 return map.containsKey(key);
@@ -105,6 +116,16 @@ public class InMemoryObjectStore implements PersistenceObjectStore {
             }
         }
         @Override
+        public void put(ContentWriter contentWriter) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                contentWriter.write(out);
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+            put(new String(out.toByteArray(), Charsets.UTF_8));
+        }
+        @Override
         public void append(String val) {
             synchronized (map) {
                 String val2 = get();
@@ -18,6 +18,9 @@
  */
 package org.apache.brooklyn.core.mgmt.persist;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
@@ -34,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.io.CountingOutputStream;
 
 public class ListeningObjectStore implements PersistenceObjectStore {
 
@@ -209,6 +213,21 @@ public class ListeningObjectStore implements PersistenceObjectStore {
             delegate.put(val);
         }
         @Override
+        public void put(final ContentWriter contentWriter) {
+            if (writesFailSilently)
+                return;
+
+            final CountingOutputStream[] countingOut = new CountingOutputStream[1];
+            delegate.put(new ContentWriter() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    countingOut[0] = new CountingOutputStream(out);
+                    contentWriter.write(countingOut[0]);
+                }});
+            for (ObjectStoreTransactionListener listener: listeners)
+                listener.recordDataOut("writing "+path, countingOut[0]==null ? 0 : (int)countingOut[0].getCount());
+        }
+        @Override
         public void append(String s) {
             if (writesFailSilently)
                 return;
@@ -241,6 +260,12 @@ public class ListeningObjectStore implements PersistenceObjectStore {
             return get().getBytes();
         }
         @Override
+        public InputStream getStream() {
+            for (ObjectStoreTransactionListener listener: listeners)
+                listener.recordQueryOut("requesting "+path, path.length());
+            return delegate.getStream();
+        }
+        @Override
         public Date getLastModifiedDate() {
             return delegate.getLastModifiedDate();
         }
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class LogBasedObjectStoreTest {
+
+    private LocalManagementContextForTests mgmt;
+    private File parentdir;
+    private File basedir;
+    private LogBasedObjectStore store;
+    private List<LogBasedObjectStore> otherStores = Lists.newArrayList();
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        mgmt = new LocalManagementContextForTests();
+        parentdir = Files.createTempDir();
+        basedir = new File(parentdir, "mystore");
+        // small segments, and compaction only when the test asks
+        store = newStore();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (store != null) store.close();
+        for (LogBasedObjectStore other : otherStores) other.close();
+        otherStores.clear();
+        if (parentdir != null) Os.deleteRecursively(parentdir);
+        if (mgmt != null) Entities.destroyAll(mgmt);
+    }
+
+    private LogBasedObjectStore newStore() {
+        LogBasedObjectStore result = new LogBasedObjectStore(basedir, 1024, Duration.ONE_HOUR);
+        result.injectManagementContext(mgmt);
+        result.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.DISABLED);
+        if (store != null) otherStores.add(result);
+        return result;
+    }
+
+    @Test
+    public void testPutGetAndDelete() throws Exception {
+        StoreObjectAccessor accessor = store.newAccessor("entities/abc");
+        assertFalse(accessor.exists());
+        assertNull(accessor.get());
+        assertNull(accessor.getLastModifiedDate());
+
+        accessor.put("first");
+        accessor.put("second");
+        accessor.append("+more");
+        assertTrue(accessor.exists());
+        assertEquals(accessor.get(), "second+more");
+        assertEquals(store.newAccessor("entities/abc").getBytes(), "second+more".getBytes("UTF-8"));
+        assertTrue(accessor.getLastModifiedDate().getTime() > 0);
+
+        accessor.delete();
+        assertFalse(accessor.exists());
+        assertNull(accessor.get());
+    }
+
+    @Test
+    public void testListsContentsDirectlyUnderSubPath() throws Exception {
+        store.createSubPath("entities");
+        store.newAccessor("entities/a").put("a");
+        store.newAccessor("entities/b").put("b");
+        store.newAccessor("entities/b/nested").put("nested");
+        store.newAccessor("locations/c").put("c");
+        store.newAccessor("entities/d").put("d");
+        store.newAccessor("entities/d").delete();
+
+        assertEquals(store.listContentsWithSubPath("entities"), ImmutableList.of("entities/a", "entities/b"));
+        assertEquals(store.listContentsWithSubPath("locations"), ImmutableList.of("locations/c"));
+        assertEquals(store.listContentsWithSubPath("policies"), ImmutableList.of());
+    }
+
+    @Test
+    public void testConcurrentWritesAllPersisted() throws Exception {
+        ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(10));
+        try {
+            List<ListenableFuture<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                final String path = "entities/"+i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        store.newAccessor(path).put("val-"+path);
+                        return null;
+                    }}));
+            }
+            Futures.allAsList(futures).get();
+        } finally {
+            executor.shutdownNow();
+        }
+        store.close();
+
+        store = newStore();
+        assertEquals(store.listContentsWithSubPath("entities").size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(store.newAccessor("entities/"+i).get(), "val-entities/"+i);
+        }
+    }
+
+    @Test
+    public void testRecoversContentsAfterReopening() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            store.newAccessor("entities/"+(i % 10)).put("val-"+i);
+        }
+        store.newAccessor("entities/0").delete();
+        assertTrue(store.getSegmentCount() > 1, "segments="+store.getSegmentCount());
+        store.close();
+
+        store = newStore();
+        assertEquals(store.listContentsWithSubPath("entities").size(), 9);
+        assertFalse(store.newAccessor("entities/0").exists());
+        assertEquals(store.newAccessor("entities/9").get(), "val-49");
+
+        // and can carry on writing after recovering
+        store.newAccessor("entities/0").put("again");
+        assertEquals(store.newAccessor("entities/0").get(), "again");
+    }
+
+    @Test
+    public void testIgnoresPartialRecordAtEndOfSegment() throws Exception {
+        store.newAccessor("entities/a").put("a1");
+        store.newAccessor("entities/b").put("b1");
+        store.newAccessor("entities/a").put("a2");
+        store.close();
+
+        // simulate a crash part way through writing the last record
+        File segment = lastSegment();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+
+        store = newStore();
+        assertEquals(store.newAccessor("entities/a").get(), "a1");
+        assertEquals(store.newAccessor("entities/b").get(), "b1");
+    }
+
+    @Test
+    public void testCompactionRemovesSupersededSegments() throws Exception {
+        store.newAccessor("entities/unchanged").put("unchanged");
+        store.newAccessor("entities/deleted").put("deleted");
+        store.newAccessor("entities/deleted").delete();
+        for (int i = 0; i < 200; i++) {
+            store.newAccessor("entities/changing").put("val-"+i);
+        }
+        int segmentsBefore = store.getSegmentCount();
+        store.compact();
+        int segmentsAfter = store.getSegmentCount();
+        assertTrue(segmentsAfter < segmentsBefore, "before="+segmentsBefore+"; after="+segmentsAfter);
+
+        assertEquals(store.newAccessor("entities/unchanged").get(), "unchanged");
+        assertEquals(store.newAccessor("entities/changing").get(), "val-199");
+        assertFalse(store.newAccessor("entities/deleted").exists());
+        store.close();
+
+        store = newStore();
+        assertEquals(store.listContentsWithSubPath("entities"), ImmutableList.of("entities/changing", "entities/unchanged"));
+        assertEquals(store.newAccessor("entities/unchanged").get(), "unchanged");
+        assertEquals(store.newAccessor("entities/changing").get(), "val-199");
+    }
+
+    @Test
+    public void testReadingStoreCatchesUpWithWriter() throws Exception {
+        store.newAccessor("entities/a").put("a1");
+        LogBasedObjectStore reader = newStore();
+        assertEquals(reader.listContentsWithSubPath("entities"), ImmutableList.of("entities/a"));
+
+        store.newAccessor("entities/b").put("b1");
+        store.newAccessor("entities/a").delete();
+        assertEquals(reader.listContentsWithSubPath("entities"), ImmutableList.of("entities/b"));
+        assertEquals(reader.newAccessor("entities/b").get(), "b1");
+    }
+
+    @Test
+    public void testNewWriterTakesOverFromOldOne() throws Exception {
+        store.newAccessor("entities/a").put("a1");
+        LogBasedObjectStore other = newStore();
+        other.newAccessor("entities/a").put("a2");
+
+        assertEquals(store.listContentsWithSubPath("entities"), ImmutableList.of("entities/a"));
+        assertEquals(store.newAccessor("entities/a").get(), "a2");
+    }
+
+    private File lastSegment() {
+        File[] segments = basedir.listFiles();
+        File result = null;
+        for (File segment : segments) {
+            if (segment.getName().endsWith(".log") && (result == null || segment.getName().compareTo(result.getName()) > 0)) {
+                result = segment;
+            }
+        }
+        return result;
+    }
+}
@@ -20,12 +20,17 @@ package org.apache.brooklyn.core.mgmt.persist;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.concurrent.Executors;
 
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessorWithLock;
 import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.time.Duration;
@@ -35,6 +40,8 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -70,6 +77,50 @@ public abstract class PersistenceStoreObjectAccessorWriterTestFixture {
         assertEquals(accessor.get(), "abc");
     }
 
+    @Test
+    public void testStreamedWriteAndRead() throws Exception {
+        final String big = makeBigString(biggishSize());
+        accessor.put(new ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write(big.getBytes(Charsets.UTF_8));
+            }});
+        accessor.waitForCurrentWrites(TIMEOUT);
+        assertEquals(accessor.get(), big);
+        
+        InputStream in = accessor.getStream();
+        try {
+            assertEquals(CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8)), big);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testFailedStreamedWriteLeavesContentsUnchanged() throws Exception {
+        accessor.put("abc");
+        try {
+            accessor.put(new ContentWriter() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    out.write("partial".getBytes(Charsets.UTF_8));
+                    throw new IllegalStateException("simulated failure");
+                }});
+            Assert.fail("write should have failed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        accessor.waitForCurrentWrites(TIMEOUT);
+        assertEquals(accessor.get(), "abc");
+    }
+
+    @Test
+    public void testGetStreamWhenAbsent() throws Exception {
+        accessor.delete();
+        accessor.waitForCurrentWrites(TIMEOUT);
+        assertNull(accessor.getStream());
+    }
+
     @Test
     public void testExists() throws Exception {
         accessor.put("abc");
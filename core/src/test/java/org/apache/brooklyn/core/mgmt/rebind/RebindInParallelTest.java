@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.core.entity.factory.ApplicationBuilder;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.location.SimulatedLocation;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestApplicationNoEnrichersImpl;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+public class RebindInParallelTest extends RebindTestFixtureWithApp {
+
+    @Override
+    protected LocalManagementContext createNewManagementContext(File mementoDir) {
+        if (mementoDir==null) mementoDir = this.mementoDir;
+        BrooklynProperties properties = BrooklynProperties.Factory.newDefault();
+        properties.put(RebindManagerImpl.REBIND_PARALLELISM, 4);
+        return RebindTestUtils.managementContextBuilder(mementoDir, classLoader)
+                .properties(properties)
+                .forLive(useLiveManagementContext())
+                .emptyCatalog(useEmptyCatalog())
+                .buildUnstarted();
+    }
+
+    @Test
+    public void testRebindsManyApplicationsInParallel() throws Exception {
+        List<TestApplication> origApps = Lists.newArrayList(origApp);
+        for (int i = 0; i < 5; i++) {
+            origApps.add(ApplicationBuilder.newManagedApp(EntitySpec.create(TestApplication.class, TestApplicationNoEnrichersImpl.class), origManagementContext));
+        }
+        for (TestApplication app : origApps) {
+            SimulatedLocation loc = origManagementContext.getLocationManager().createLocation(LocationSpec.create(SimulatedLocation.class));
+            origManagementContext.getLocationManager().createLocation(LocationSpec.create(SimulatedLocation.class).parent(loc));
+            TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .configure(TestEntity.CONF_NAME, "child-"+app.getId()));
+            TestEntity grandchild = child.addChild(EntitySpec.create(TestEntity.class)
+                    .configure(TestEntity.CONF_NAME, "grandchild-"+app.getId()));
+            grandchild.sensors().set(TestEntity.NAME, "sensor-"+app.getId());
+            app.addLocations(ImmutableList.of(loc));
+        }
+
+        rebind();
+
+        assertEquals(newManagementContext.getApplications().size(), origApps.size());
+        for (TestApplication origApp : origApps) {
+            Application newApp = (Application) newManagementContext.getEntityManager().getEntity(origApp.getId());
+            assertNotNull(newApp, "app "+origApp);
+            Entity child = Iterables.getOnlyElement(newApp.getChildren());
+            Entity grandchild = Iterables.getOnlyElement(child.getChildren());
+            assertEquals(child.getParent(), newApp);
+            assertEquals(grandchild.getParent(), child);
+            assertEquals(child.config().get(TestEntity.CONF_NAME), "child-"+origApp.getId());
+            assertEquals(grandchild.config().get(TestEntity.CONF_NAME), "grandchild-"+origApp.getId());
+            assertEquals(grandchild.sensors().get(TestEntity.NAME), "sensor-"+origApp.getId());
+
+            Location loc = Iterables.getOnlyElement(newApp.getLocations());
+            assertEquals(Iterables.getOnlyElement(loc.getChildren()).getParent(), loc);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReportsPhaseDurations() throws Exception {
+        origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        rebind();
+
+        Map<String, Object> rebindMetrics = (Map<String, Object>) newManagementContext.getRebindManager().getMetrics().get("rebind");
+        Map<String, Long> phases = (Map<String, Long>) rebindMetrics.get("lastPhaseDurations");
+        assertEquals(phases.keySet(), ImmutableSet.copyOf(RebindIteration.PHASE_NAMES));
+        for (Long duration : phases.values()) {
+            assertTrue(duration >= 0, "phases="+phases);
+        }
+    }
+}
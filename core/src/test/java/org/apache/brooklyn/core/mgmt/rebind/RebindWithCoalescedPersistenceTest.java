@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+
+public class RebindWithCoalescedPersistenceTest extends RebindTestFixtureWithApp {
+
+    private static final int PERSIST_PERIOD_MILLIS = 100;
+
+    @Override
+    protected LocalManagementContext createOrigManagementContext() {
+        BrooklynProperties properties = BrooklynProperties.Factory.newDefault();
+        properties.put(RebindManagerImpl.PERSIST_MIN_WRITE_INTERVAL, Duration.ONE_HOUR);
+        properties.put(RebindManagerImpl.PERSIST_ADAPTIVE_PERIOD, true);
+        return RebindTestUtils.managementContextBuilder(mementoDir, classLoader)
+                .properties(properties)
+                .persistPeriodMillis(getPersistPeriodMillis())
+                .forLive(useLiveManagementContext())
+                .emptyCatalog(useEmptyCatalog())
+                .buildStarted();
+    }
+
+    @Override
+    protected int getPersistPeriodMillis() {
+        return PERSIST_PERIOD_MILLIS;
+    }
+
+    @Test
+    public void testRecentlyWrittenEntityHeldBackUntilForced() throws Exception {
+        TestEntity origEntity = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        origEntity.sensors().set(TestEntity.NAME, "first");
+        RebindTestUtils.waitForPersisted(origApp);
+        File entityFile = new File(Os.mergePaths(mementoDir.getAbsolutePath(), "entities", origEntity.getId()));
+        assertTrue(Files.toString(entityFile, Charsets.UTF_8).contains("first"));
+
+        origEntity.sensors().set(TestEntity.NAME, "second");
+        Time.sleep(Duration.millis(PERSIST_PERIOD_MILLIS * 5));
+        assertFalse(Files.toString(entityFile, Charsets.UTF_8).contains("second"));
+
+        // rebind forces persistence, which writes everything held back
+        rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        EntityAsserts.assertAttributeEquals(newEntity, TestEntity.NAME, "second");
+    }
+
+    @Test
+    public void testMetricsAndPeriodAdaptedWhenIdle() throws Exception {
+        origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        RebindTestUtils.waitForPersisted(origApp);
+
+        Asserts.succeedsEventually(new Runnable() {
+            @SuppressWarnings("unchecked")
+            public void run() {
+                Map<String, Object> metrics = (Map<String, Object>) ((RebindManagerImpl)origManagementContext.getRebindManager()).getMetrics().get("persist");
+                assertEquals(metrics.get("currentPeriod"), (long) PERSIST_PERIOD_MILLIS / 4);
+                assertNotNull(metrics.get("maxDuration"));
+                assertEquals(metrics.get("lastQueuedWrites"), 0);
+                assertTrue((Long) metrics.get("bytesWritten") > 0, "metrics="+metrics);
+            }});
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.AttributeSensor.SensorPersistenceMode;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.persist.XmlMementoSerializer;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+
+public class RebindWithPartialEntityMementosTest extends RebindTestFixtureWithApp {
+
+    private static final AttributeSensor<String> DYNAMIC_SENSOR = Sensors.newStringSensor("test.dynamic");
+    private static final AttributeSensor<String> TRANSIENT_SENSOR = Sensors.builder(String.class, "test.transient")
+            .persistence(SensorPersistenceMode.NONE)
+            .build();
+
+    private boolean partialMementosWasPreviouslyEnabled;
+    private TestEntity origEntity;
+
+    @BeforeMethod(alwaysRun = true)
+    @Override
+    public void setUp() throws Exception {
+        partialMementosWasPreviouslyEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_PARTIAL_ENTITY_MEMENTOS);
+        BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_PARTIAL_ENTITY_MEMENTOS);
+        super.setUp();
+        origEntity = origApp.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(TestEntity.CONF_NAME, "myname"));
+        RebindTestUtils.waitForPersisted(origApp);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_PARTIAL_ENTITY_MEMENTOS, partialMementosWasPreviouslyEnabled);
+    }
+
+    @Test
+    public void testAttributeChangesPersisted() throws Exception {
+        origEntity.sensors().set(TestEntity.SEQUENCE, 1);
+        origEntity.sensors().set(TestEntity.NAME, "first");
+        RebindTestUtils.waitForPersisted(origApp);
+
+        // each of these is patched into the previous memento
+        origEntity.sensors().set(TestEntity.SEQUENCE, 2);
+        origEntity.sensors().set(DYNAMIC_SENSOR, "dynamic");
+        origEntity.sensors().remove(TestEntity.NAME);
+        origEntity.sensors().set(TRANSIENT_SENSOR, "not persisted");
+
+        rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        EntityAsserts.assertAttributeEquals(newEntity, TestEntity.SEQUENCE, 2);
+        assertEquals(newEntity.sensors().get(Sensors.newStringSensor("test.dynamic")), "dynamic");
+        assertNull(newEntity.sensors().get(TestEntity.NAME));
+        assertNull(newEntity.sensors().get(TRANSIENT_SENSOR));
+        assertEquals(newEntity.config().get(TestEntity.CONF_NAME), "myname");
+    }
+
+    @Test
+    public void testPatchedMementoSameAsGenerated() throws Exception {
+        origEntity.sensors().set(TestEntity.SEQUENCE, 1);
+        origEntity.sensors().set(TestEntity.NAME, null);
+        origEntity.sensors().set(DYNAMIC_SENSOR, "first");
+        RebindTestUtils.waitForPersisted(origApp);
+
+        // patched in place, so keeps its position before the later attributes
+        origEntity.sensors().set(TestEntity.SEQUENCE, 2);
+        RebindTestUtils.waitForPersisted(origApp);
+
+        String persisted = Files.asCharSource(new File(new File(mementoDir, "entities"), origEntity.getId()), Charsets.UTF_8).read();
+        XmlMementoSerializer<Object> serializer = new XmlMementoSerializer<Object>(getClass().getClassLoader());
+        String generated = serializer.toString(((EntityInternal)origEntity).getRebindSupport().getMemento());
+        assertEquals(persisted, generated);
+    }
+
+    @Test
+    public void testOtherChangesAfterAttributeChangesPersisted() throws Exception {
+        origEntity.sensors().set(TestEntity.SEQUENCE, 1);
+        RebindTestUtils.waitForPersisted(origApp);
+
+        origEntity.sensors().set(TestEntity.SEQUENCE, 2);
+        origEntity.config().set(TestEntity.CONF_NAME, "newname");
+        origEntity.tags().addTag("mytag");
+
+        rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        EntityAsserts.assertAttributeEquals(newEntity, TestEntity.SEQUENCE, 2);
+        assertEquals(newEntity.config().get(TestEntity.CONF_NAME), "newname");
+        assertEquals(newEntity.tags().getTags(), origEntity.tags().getTags());
+    }
+}
@@ -18,17 +18,25 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.group.DynamicGroup;
+import org.apache.brooklyn.entity.stock.BasicEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -36,6 +44,7 @@ import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
@@ -107,6 +116,111 @@ public class EntityPerformanceTest extends AbstractPerformanceTest {
             }});
     }
 
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetAttribute() {
+        doTestGetAttribute(entity, "EntityPerformanceTest.testGetAttribute");
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetAttributeWithSlotStorage() {
+        TestEntity slotEntity;
+        boolean oldEnabled = BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOT_STORAGE);
+        try {
+            slotEntity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOT_STORAGE, oldEnabled);
+        }
+        doTestGetAttribute(slotEntity, "EntityPerformanceTest.testGetAttributeWithSlotStorage");
+    }
+
+    /** measures reads of attributes, while other threads also read them, and occasionally set one */
+    protected void doTestGetAttribute(final TestEntity entity, String summary) {
+        int numIterations = numIterations() * 100;
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        final int numReaderThreads = 4;
+        final AtomicInteger i = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean();
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        entity.sensors().set(TestEntity.NAME, "myname");
+        
+        ExecutorService executor = Executors.newFixedThreadPool(numReaderThreads);
+        try {
+            for (int t = 0; t < numReaderThreads; t++) {
+                executor.submit(new Runnable() {
+                    public void run() {
+                        while (!done.get()) {
+                            entity.sensors().get(TestEntity.SEQUENCE);
+                            entity.sensors().get(TestEntity.NAME);
+                        }
+                    }});
+            }
+            
+            measure(PerformanceTestDescriptor.create()
+                    .summary(summary)
+                    .iterations(numIterations)
+                    .minAcceptablePerSecond(minRatePerSec)
+                    .job(new Runnable() {
+                        public void run() {
+                            entity.sensors().get(TestEntity.SEQUENCE);
+                            entity.sensors().get(TestEntity.NAME);
+                            if (i.incrementAndGet() % 100 == 0) entity.sensors().set(TestEntity.SEQUENCE, i.get());
+                        }}));
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testInvokeNonEffectorMethodsViaProxy() {
+        int numIterations = numIterations() * 100;
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("EntityPerformanceTest.testInvokeNonEffectorMethodsViaProxy")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    public void run() {
+                        entity.getId();
+                        entity.getParent();
+                        entity.getSequenceValue();
+                    }}));
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRescanDynamicGroup() {
+        doTestRescanDynamicGroup(null, "EntityPerformanceTest.testRescanDynamicGroup");
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRescanDynamicGroupWithEntityIndex() {
+        doTestRescanDynamicGroup(EntityIndexKey.ofType(TestEntity.class), "EntityPerformanceTest.testRescanDynamicGroupWithEntityIndex");
+    }
+
+    /** measures rescans of a group selecting the test entities, from an estate mostly of other entities */
+    protected void doTestRescanDynamicGroup(EntityIndexKey index, String summary) {
+        int numIterations = numIterations();
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        for (int i = 0; i < 1000; i++) {
+            app.createAndManageChild(EntitySpec.create(BasicEntity.class));
+        }
+        final DynamicGroup group = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_INDEX, index)
+                .configure(DynamicGroup.ENTITY_FILTER, Predicates.instanceOf(TestEntity.class)));
+        group.rescanEntities();
+        assertEquals(group.getMembers().size(), entities.size());
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary(summary)
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    public void run() {
+                        group.rescanEntities();
+                    }}));
+    }
+    
     @Test(groups={"Integration", "Acceptance"})
     public void testInvokeEffector() {
         int numIterations = numIterations();
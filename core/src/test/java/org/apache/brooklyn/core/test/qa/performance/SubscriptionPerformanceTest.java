@@ -152,4 +152,48 @@ public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
             throw exception.get();
         }
     }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testManyPublishedWithManySubscribersAcrossEntitiesAndWildcards() throws Exception {
+        int numSubscribers = 10000;
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        // one subscriber per entity listens to SEQUENCE on that entity; everything else is unrelated
+        final int expectedCount = numIterations;
+        
+        final AtomicInteger listenerCount = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        
+        // subscribers spread over every entity, on related and unrelated sensors, plus unrelated wildcard-producer subscribers
+        for (int i = 0; i < numSubscribers; i++) {
+            TestEntity producer = entities.get(i % entities.size());
+            if (i < entities.size()) {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", i), producer, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                    public void onEvent(SensorEvent<Integer> event) {
+                        int count = listenerCount.incrementAndGet();
+                        if (count >= expectedCount) completionLatch.countDown();
+                    }});
+            } else if (i % 2 == 0) {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", i), producer, TestEntity.MY_NOTIF, new SensorEventListener<Integer>() {
+                    public void onEvent(SensorEvent<Integer> event) {
+                    }});
+            } else {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", i), null, TestEntity.MY_NOTIF, new SensorEventListener<Integer>() {
+                    public void onEvent(SensorEvent<Integer> event) {
+                    }});
+            }
+        }
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testManyPublishedWithManySubscribersAcrossEntitiesAndWildcards")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        int i = iter.getAndIncrement();
+                        entities.get(i % 2).sensors().set(TestEntity.SEQUENCE, i);
+                    }})
+                .completionLatch(completionLatch));
+    }
 }
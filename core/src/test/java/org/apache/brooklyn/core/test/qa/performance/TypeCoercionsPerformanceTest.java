@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+
+public class TypeCoercionsPerformanceTest extends AbstractPerformanceTest {
+
+    protected int numIterations() {
+        return 100000;
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceStringToInteger() {
+        int numIterations = numIterations();
+        double minRatePerSec = 100000 * PERFORMANCE_EXPECTATION;
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("TypeCoercions.coerce(String, Integer)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        TypeCoercions.coerce("123", Integer.class);
+                    }}));
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceStringToDuration() {
+        int numIterations = numIterations();
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        assertEquals(TypeCoercions.coerce("5m", Duration.class), Duration.minutes(5));
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("TypeCoercions.coerce(String, Duration)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        TypeCoercions.coerce("5m", Duration.class);
+                    }}));
+    }
+    
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceMapToConfigBag() {
+        int numIterations = numIterations();
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        final Map<String, String> map = ImmutableMap.of("a", "1", "b", "2");
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("TypeCoercions.tryCoerce(Map, ConfigBag)")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        TypeCoercions.tryCoerce(map, TypeToken.of(ConfigBag.class));
+                    }}));
+    }
+}
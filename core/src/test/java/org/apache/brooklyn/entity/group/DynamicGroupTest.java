@@ -41,10 +41,14 @@ import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityIndexKey;
 import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.core.entity.factory.ApplicationBuilder;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestApplication;
 import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.stock.BasicEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -138,6 +142,49 @@ public class DynamicGroupTest {
         assertEqualsIgnoringOrder(group.getMembers(), ImmutableSet.of(e3));
     }
 
+    @Test
+    public void testGroupWithEntityIndexOnlyAppliesFilterToIndexedEntities() throws Exception {
+        final Set<Entity> filtered = Sets.newConcurrentHashSet();
+        group.config().set(DynamicGroup.ENTITY_INDEX, EntityIndexKey.ofType(TestEntity.class));
+        group.setEntityFilter(new Predicate<Entity>() {
+            @Override public boolean apply(Entity input) {
+                filtered.add(input);
+                return true;
+            }});
+        assertEqualsIgnoringOrder(group.getMembers(), ImmutableSet.of(e1, e2));
+
+        final Entity e3 = app.addChild(EntitySpec.create(TestEntity.class));
+        app.addChild(EntitySpec.create(BasicEntity.class));
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEqualsIgnoringOrder(group.getMembers(), ImmutableSet.of(e1, e2, e3));
+            }});
+
+        Entities.unmanage(e3);
+        group.rescanEntities();
+        assertEqualsIgnoringOrder(group.getMembers(), ImmutableSet.of(e1, e2));
+        assertEqualsIgnoringOrder(filtered, ImmutableSet.of(e1, e2, e3));
+    }
+
+    @Test
+    public void testEntityIndexMaintainedOnManageAndUnmanage() throws Exception {
+        EntityManagerInternal entityManager = (EntityManagerInternal) app.getManagementContext().getEntityManager();
+        TestApplication app2 = ApplicationBuilder.newManagedApp(TestApplication.class, app.getManagementContext());
+        TestEntity e3 = app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        EntityIndexKey index = EntityIndexKey.inApplication(app.getId());
+        assertEqualsIgnoringOrder(entityManager.getEntitiesInIndex(index), ImmutableSet.of(app, group, e1, e2));
+        assertEqualsIgnoringOrder(entityManager.getEntitiesInIndex(EntityIndexKey.ofType(TestEntity.class)), ImmutableSet.of(e1, e2, e3));
+
+        TestEntity e4 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        assertEqualsIgnoringOrder(entityManager.getEntitiesInIndex(index), ImmutableSet.of(app, group, e1, e2, e4));
+
+        Entities.unmanage(e1);
+        Entities.unmanage(app2);
+        assertEqualsIgnoringOrder(entityManager.getEntitiesInIndex(index), ImmutableSet.of(app, group, e2, e4));
+        assertEqualsIgnoringOrder(entityManager.getEntitiesInIndex(EntityIndexKey.ofType(TestEntity.class)), ImmutableSet.of(e2, e4));
+    }
+
     @Test
     public void testGroupDetectsChangedEntities() throws Exception {
         final AttributeSensor<String> MY_ATTRIBUTE = Sensors.newStringSensor("test.myAttribute", "My test attribute");
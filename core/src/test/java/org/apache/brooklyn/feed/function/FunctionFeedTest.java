@@ -46,6 +46,7 @@ import org.apache.brooklyn.feed.function.FunctionFeedTest;
 import org.apache.brooklyn.feed.function.FunctionPollConfig;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.EntityTestUtils;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -59,6 +60,7 @@ import com.google.common.base.Functions;
 import com.google.common.base.Predicates;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.Callables;
 
@@ -204,6 +206,61 @@ public class FunctionFeedTest extends BrooklynAppUnitTestSupport {
         EntityTestUtils.assertAttributeEqualsEventually(entity, SENSOR_INT, -1);
     }
     
+    @Test
+    public void testSuppressesDuplicates() throws Exception {
+        final List<Integer> ints = subscribeToIntSensor();
+        
+        feed = FunctionFeed.builder()
+                .entity(entity)
+                .poll(new FunctionPollConfig<Integer, Integer>(SENSOR_INT)
+                        .period(1)
+                        .callable(Callables.returning(123))
+                        .suppressDuplicates(true))
+                .build();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(ints, ImmutableList.of(123));
+            }});
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", 100), new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(ints, ImmutableList.of(123));
+            }});
+    }
+    
+    @Test
+    public void testRepublishesDuplicatesAfterMaxTime() throws Exception {
+        final List<Integer> ints = subscribeToIntSensor();
+        
+        feed = FunctionFeed.builder()
+                .entity(entity)
+                .poll(new FunctionPollConfig<Integer, Integer>(SENSOR_INT)
+                        .period(1)
+                        .callable(Callables.returning(123))
+                        .suppressDuplicates(true)
+                        .republishDuplicatesAfter(Duration.millis(50)))
+                .build();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(ints.size() >= 3, "ints="+ints);
+            }});
+        // far fewer than one per poll
+        assertTrue(ints.size() < 20, "ints="+ints);
+    }
+    
+    private List<Integer> subscribeToIntSensor() {
+        final List<Integer> ints = new CopyOnWriteArrayList<Integer>();
+        entity.subscriptions().subscribe(entity, SENSOR_INT, new SensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    ints.add(event.getValue());
+                }});
+        return ints;
+    }
+    
     @Test
     public void testSharesFunctionWhenMultiplePostProcessors() throws Exception {
         final IncrementingCallable incrementingCallable = new IncrementingCallable();
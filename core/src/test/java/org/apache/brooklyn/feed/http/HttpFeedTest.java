@@ -36,9 +36,11 @@ import org.apache.brooklyn.core.entity.EntityInternal.FeedSupport;
 import org.apache.brooklyn.core.feed.FeedConfig;
 import org.apache.brooklyn.core.feed.PollConfig;
 import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.test.EntityTestUtils;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.http.BetterMockWebServer;
@@ -134,6 +136,33 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
         Assert.assertEquals(feeds.getFeeds().size(), 1, "Wrong feed count: "+feeds.getFeeds());
     }
     
+    @Test
+    public void testFeedsToSameEndpointShareHttpClient() throws Exception {
+        mgmt.getBrooklynProperties().put(BrooklynServerConfig.HTTP_CLIENT_SHARED, true);
+        TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        feed = HttpFeed.builder()
+                .entity(entity)
+                .baseUrl(baseUrl)
+                .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.responseCode()))
+                .build();
+        HttpFeed feed2 = HttpFeed.builder()
+                .entity(entity2)
+                .baseUrl(baseUrl)
+                .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.responseCode()))
+                .build();
+        try {
+            assertSensorEventually(SENSOR_INT, (Integer)200, TIMEOUT_MS);
+            EntityTestUtils.assertAttributeEqualsEventually(entity2, SENSOR_INT, (Integer)200);
+            assertEquals(mgmt.getHttpClientRegistry().size(), 1);
+        } finally {
+            feed2.stop();
+        }
+    }
+    
     @Test
     public void testSetsConnectionTimeout() throws Exception {
         feed = HttpFeed.builder()
@@ -36,6 +36,7 @@ import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.flags.ClassCoercionException;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.text.StringPredicates;
 import org.codehaus.groovy.runtime.GStringImpl;
 import org.slf4j.Logger;
@@ -43,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -356,6 +358,20 @@ public class TypeCoercionsTest {
         TypeCoercions.coerce(new Object(), TypeToken.of(Integer.class));
     }
 
+    @Test
+    public void testRegisteringAdapterAffectsPreviouslyFailedCoercion() {
+        Maybe<WithRegistered> before = TypeCoercions.tryCoerce(new WithAs("1"), TypeToken.of(WithRegistered.class));
+        Assert.assertTrue(before.isAbsent());
+        
+        TypeCoercions.registerAdapter(WithAs.class, WithRegistered.class, new Function<WithAs, WithRegistered>() {
+            @Override public WithRegistered apply(WithAs input) {
+                WithRegistered result = new WithRegistered();
+                result.value = input.value;
+                return result;
+            }});
+        assertEquals(TypeCoercions.coerce(new WithAs("1"), WithRegistered.class).value, "1");
+    }
+
     @Test
     public void testCoercionFunction() {
         assertEquals(TypeCoercions.function(Double.class).apply("1"), Double.valueOf(1));
@@ -369,6 +385,10 @@ public class TypeCoercionsTest {
         }
     }
 
+    public static class WithRegistered {
+        String value;
+    }
+
     public static class WithFrom {
         int value;
         public static WithFrom fromString(String s) {
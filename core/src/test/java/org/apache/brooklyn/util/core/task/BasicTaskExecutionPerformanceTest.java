@@ -157,6 +157,25 @@ public class BasicTaskExecutionPerformanceTest {
     // (e.g. 9s for first 1000; 26s for next 1000; 42s for next 1000).
     @Test
     public void testExecutionManagerPerformance() throws Exception {
+        assertExecutionManagerPerformance();
+    }
+    
+    @Test
+    public void testExecutionManagerPerformanceWithForkJoinRunner() throws Exception {
+        em.shutdownNow();
+        em = new BasicExecutionManager("mycontext", BasicExecutionManager.RunnerType.FORK_JOIN, 0);
+        assertExecutionManagerPerformance();
+    }
+    
+    @Test
+    public void testExecutionManagerPerformanceWithVirtualThreadRunner() throws Exception {
+        em.shutdownNow();
+        // falls back to the cached runner where virtual threads are not supported
+        em = new BasicExecutionManager("mycontext", BasicExecutionManager.RunnerType.VIRTUAL_THREAD, 0);
+        assertExecutionManagerPerformance();
+    }
+    
+    private void assertExecutionManagerPerformance() throws Exception {
         // Was fixed at 1000 tasks, but was running out of virtual memory due to excessive thread creation
         // on machines which were not able to execute the threads quickly.
         final int NUM_TASKS = Math.min(500 * Runtime.getRuntime().availableProcessors(), 1000);
@@ -177,7 +196,8 @@ public class BasicTaskExecutionPerformanceTest {
                         return input > MAX_ACCEPTABLE_TIME;
                     }},
                 null);
-        assertNull(toobig, "warmup="+tWarmup+"; times="+times);
+        log.info("Runner {}: warmup={}ms; times={}; {} threads at end", new Object[] {em.getRunnerType(), tWarmup, times, em.getRunnerThreadCount()});
+        assertNull(toobig, "runner="+em.getRunnerType()+"; warmup="+tWarmup+"; times="+times);
     }
     
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -28,6 +28,7 @@ import static org.testng.Assert.fail;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -48,6 +49,7 @@ import org.testng.annotations.Test;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Callables;
 
@@ -261,7 +263,83 @@ public class BasicTaskExecutionTest {
             finishLatch.countDown();
         }
     }
-    
+
+    @Test
+    public void testCompactCompletedTaskReplacesTaskWithRecord() throws Exception {
+        Task<?> t1 = new BasicTask<String>(Callables.returning("first"));
+        Task<?> t2 = new BasicTask<String>(Callables.returning("second"));
+        em.submit(MutableMap.of("tags", ImmutableList.of("A", "B")), t1).get();
+        em.submit(MutableMap.of("tag", "A"), t2).get();
+
+        Task<?> record = em.compactCompletedTask(t1);
+        assertTrue(record instanceof CompletedTaskRecord, "record="+record);
+        assertTrue(em.getTask(t1.getId()) == record);
+        assertEquals(record, t1);
+        assertEquals(record.getTags(), t1.getTags());
+        assertEquals(record.getEndTimeUtc(), t1.getEndTimeUtc());
+        assertEquals(record.get(), "first");
+        assertFalse(record.isError());
+
+        // position in the tag is kept
+        assertTrue(Iterables.getFirst(em.getTasksWithTag("A"), null) == record);
+        assertEquals(em.getTasksWithTag("A"), ImmutableList.of(t1, t2));
+        assertTrue(Iterables.getOnlyElement(em.getTasksWithTag("B")) == record);
+
+        em.deleteTask(record);
+        assertNull(em.getTask(t1.getId()));
+        assertEquals(em.getTasksWithTag("A"), ImmutableList.of(t2));
+        assertEquals(em.getTasksWithTag("B"), ImmutableSet.of());
+    }
+
+    @Test
+    public void testCompactCompletedTaskKeepsErrorAsText() throws Exception {
+        BasicTask<Void> t = new BasicTask<Void>(new Callable<Void>() {
+            public Void call() throws Exception {
+                throw new IllegalStateException("Simulating failure in testCompactCompletedTaskKeepsErrorAsText");
+            }});
+        em.submit(MutableMap.of("tag", "A"), t).blockUntilEnded();
+
+        Task<?> record = em.compactCompletedTask(t);
+        assertTrue(record.isError());
+        assertFalse(record.isCancelled());
+        assertTrue(record.getStatusDetail(false).contains("Simulating failure"), "details="+record.getStatusDetail(false));
+        try {
+            record.get();
+            fail("get should have failed due to error");
+        } catch (Exception e) {
+            assertTrue(Throwables.getRootCause(e).getMessage().contains("Simulating failure"), "error="+e);
+        }
+    }
+
+    @Test
+    public void testCompactCompletedTaskKeepsSmallImmutableResult() throws Exception {
+        Task<?> t = new BasicTask<Integer>(Callables.returning(42));
+        em.submit(MutableMap.of("tag", "A"), t).get();
+
+        CompletedTaskRecord record = (CompletedTaskRecord) em.compactCompletedTask(t);
+        assertTrue(record.isResultRetained());
+        assertEquals(record.get(), 42);
+        assertEquals(record.getInternalFuture().get(), 42);
+        assertTrue(em.submit(record) == record);
+    }
+
+    @Test
+    public void testCompactCompletedTaskDoesNotKeepOtherResults() throws Exception {
+        Task<?> t = new BasicTask<List<String>>(Callables.returning((List<String>)ImmutableList.of("a", "b")));
+        em.submit(MutableMap.of("tag", "A"), t).get();
+
+        CompletedTaskRecord record = (CompletedTaskRecord) em.compactCompletedTask(t);
+        assertFalse(record.isResultRetained());
+        assertFalse(record.isError());
+        assertEquals(record.getResultText(), "[a, b]");
+        try {
+            record.get();
+            fail("get should have failed as result not kept");
+        } catch (CompletedTaskRecord.ResultNotRetainedException e) {
+            assertTrue(e.getMessage().contains("[a, b]"), "error="+e);
+        }
+    }
+
     @Test
     public void cancelBeforeRun() throws Exception {
         final CountDownLatch blockForever = new CountDownLatch(1);
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+
+public class HashedWheelScheduledExecutorTest {
+
+    private HashedWheelScheduledExecutor executor;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        // small wheel, so tests also cover jobs which wait more than one rotation
+        executor = new HashedWheelScheduledExecutor(Executors.defaultThreadFactory(), Duration.millis(5), 8);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Test
+    public void testRunsDelayedJobNotEarly() throws Exception {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ScheduledFuture<String> future = executor.schedule(new Callable<String>() {
+            public String call() {
+                return "done";
+            }}, 100, TimeUnit.MILLISECONDS);
+        assertEquals(future.get(), "done");
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 100, "elapsed="+stopwatch);
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testRunsJobsInDeadlineOrder() throws Exception {
+        final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+        ScheduledFuture<?> last = null;
+        for (final int delay : new int[] {90, 10, 50, 30, 70}) {
+            ScheduledFuture<?> f = executor.schedule(new Runnable() {
+                public void run() {
+                    order.add(delay);
+                }}, delay, TimeUnit.MILLISECONDS);
+            if (delay == 90) last = f;
+        }
+        last.get();
+        assertEquals(order, ImmutableList.of(10, 30, 50, 70, 90));
+    }
+
+    @Test
+    public void testCancelledJobNotRun() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        ScheduledFuture<?> future = executor.schedule(new Runnable() {
+            public void run() {
+                calls.incrementAndGet();
+            }}, 50, TimeUnit.MILLISECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEquals(executor.getScheduledCount(), 0);
+            }});
+        assertEquals(calls.get(), 0);
+    }
+
+    @Test
+    public void testFixedRateJobRepeatsUntilCancelled() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                calls.incrementAndGet();
+            }}, 0, 10, TimeUnit.MILLISECONDS);
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertTrue(calls.get() >= 5, "calls="+calls);
+            }});
+        future.cancel(false);
+        final int callsAfterCancel = calls.get();
+        Asserts.succeedsContinually(MutableMap.of("timeout", 100), new Runnable() {
+            public void run() {
+                assertEquals(calls.get(), callsAfterCancel);
+            }});
+    }
+
+    @Test
+    public void testShutdownRunsScheduledJobsThenTerminates() throws Exception {
+        ScheduledFuture<String> future = executor.schedule(new Callable<String>() {
+            public String call() {
+                return "done";
+            }}, 50, TimeUnit.MILLISECONDS);
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        try {
+            executor.schedule(new Runnable() { public void run() {} }, 0, TimeUnit.MILLISECONDS);
+            Asserts.shouldHaveFailedPreviously();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(future.get(), "done");
+    }
+
+    @Test
+    public void testShutdownNowCancelsScheduledJobs() throws Exception {
+        ScheduledFuture<?> future = executor.schedule(new Runnable() { public void run() {} }, 1, TimeUnit.HOURS);
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+        assertTrue(executor.isTerminated());
+    }
+}
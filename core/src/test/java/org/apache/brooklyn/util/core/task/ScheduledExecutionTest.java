@@ -327,4 +327,90 @@ public class ScheduledExecutionTest {
             if (timeDiff < (SLEEP_TIME - EARLY_RETURN_GRACE)) fail("timeDiffs="+timeDiffs+"; execTimes="+execTimes);
         }
     }
+
+    @Test
+    public void testScheduledTaskOnTimerWheel() throws Exception {
+        BasicExecutionManager m = new BasicExecutionManager("mycontextid", BasicExecutionManager.RunnerType.CACHED, 0, 
+                BasicExecutionManager.SchedulerType.TIMER_WHEEL);
+        try {
+            final AtomicInteger i = new AtomicInteger(0);
+            ScheduledTask t = new ScheduledTask(MutableMap.of("delay", 20, "period", 20, "maxIterations", 5), new Callable<Task<?>>() {
+                public Task<?> call() throws Exception {
+                    return new BasicTask<Integer>(new Callable<Integer>() {
+                        public Integer call() {
+                            return i.incrementAndGet();
+                        }});
+                }});
+            m.submit(t);
+            t.blockUntilEnded();
+            assertEquals(t.get(), (Integer)5);
+            assertEquals(i.get(), 5);
+            assertEquals(t.getRunCount(), 5);
+        } finally {
+            m.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScheduledTaskOnTimerWheelCancelled() throws Exception {
+        BasicExecutionManager m = new BasicExecutionManager("mycontextid", BasicExecutionManager.RunnerType.CACHED, 0, 
+                BasicExecutionManager.SchedulerType.TIMER_WHEEL);
+        try {
+            final AtomicInteger calls = new AtomicInteger(0);
+            ScheduledTask t = new ScheduledTask(MutableMap.of("period", 10), new Callable<Task<?>>() {
+                public Task<?> call() throws Exception {
+                    return new BasicTask<Integer>(new Callable<Integer>() {
+                        public Integer call() {
+                            return calls.incrementAndGet();
+                        }});
+                }});
+            m.submit(t);
+            Asserts.succeedsEventually(new Runnable() {
+                public void run() {
+                    assertTrue(calls.get() > 2, "calls="+calls.get());
+                }});
+            t.cancel();
+            t.blockUntilNextRunFinished(Duration.TEN_SECONDS);
+            final int callsAfterCancel = calls.get();
+            Asserts.succeedsContinually(MutableMap.of("timeout", 100), new Runnable() {
+                public void run() {
+                    assertEquals(calls.get(), callsAfterCancel);
+                }});
+        } finally {
+            m.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScheduledTaskJitterSpreadsFirstRuns() throws Exception {
+        BasicExecutionManager m = new BasicExecutionManager("mycontextid");
+        try {
+            final List<Long> firstRunTimes = new CopyOnWriteArrayList<Long>();
+            List<ScheduledTask> tasks = Lists.newArrayList();
+            for (int i = 0; i < 20; i++) {
+                ScheduledTask t = new ScheduledTask(MutableMap.of("period", 10, "maxIterations", 1, "jitter", Duration.millis(500)), new Callable<Task<?>>() {
+                    public Task<?> call() throws Exception {
+                        return new BasicTask<Void>(new Runnable() {
+                            public void run() {
+                                firstRunTimes.add(System.currentTimeMillis());
+                            }});
+                    }});
+                tasks.add(t);
+                m.submit(t);
+            }
+            for (ScheduledTask t : tasks) {
+                t.blockUntilEnded();
+            }
+            assertEquals(firstRunTimes.size(), 20);
+            // without jitter these would all run within a few millis; with it, it is vanishingly unlikely they would
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (Long time : firstRunTimes) {
+                min = Math.min(min, time);
+                max = Math.max(max, time);
+            }
+            assertTrue(max - min > 50, "firstRunTimes="+firstRunTimes);
+        } finally {
+            m.shutdownNow();
+        }
+    }
 }
@@ -84,6 +84,15 @@ public class JcloudsBlobStoreBasedObjectStore implements PersistenceObjectStore
         getBlobStoreContext();
     }
 
+    /** uses the given context, e.g. for the "transient" provider; the context is closed when this store is closed */
+    public JcloudsBlobStoreBasedObjectStore(BlobStoreContext context, String containerName) {
+        this.context = checkNotNull(context, "context");
+        String[] segments = splitOnce(containerName);
+        this.containerNameFirstPart = segments[0];
+        this.containerSubPath = segments[1];
+        context.getBlobStore().createContainerInLocation(null, getContainerNameFirstPart());
+    }
+
     public String getSummaryName() {
         return (locationSpec!=null ? locationSpec : location)+":"+getContainerNameFull();
     }
@@ -18,13 +18,19 @@
  */
 package org.apache.brooklyn.core.mgmt.persist.jclouds;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.io.FileUtil;
 import org.apache.commons.io.Charsets;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.domain.Blob;
@@ -33,6 +39,7 @@ import org.jclouds.util.Strings2;
 import com.google.common.base.Throwables;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 
 /**
  * @author Andrea Turli
@@ -73,6 +80,101 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
         blobStore.putBlob(containerName, blob);
     }
 
+    /** Contents up to this size are buffered in memory before upload; larger contents spill to a temporary file. */
+    static final int IN_MEMORY_THRESHOLD = 1024*1024;
+
+    /**
+     * The contents are buffered (in memory, or in a local temporary file if large) and then uploaded;
+     * blob stores generally need the content length before the upload starts.
+     */
+    @Override
+    public void put(ContentWriter contentWriter) {
+        SpillingOutputStream out = new SpillingOutputStream(IN_MEMORY_THRESHOLD);
+        try {
+            try {
+                contentWriter.write(out);
+            } finally {
+                out.close();
+            }
+            
+            blobStore.createContainerInLocation(null, containerName);
+            Blob blob = blobStore.blobBuilder(blobName).payload(out.asByteSource())
+                    .contentLength(out.size())
+                    .build();
+            blobStore.putBlob(containerName, blob);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            out.deleteFile();
+        }
+    }
+
+    /**
+     * Buffers in memory until the threshold is exceeded, then moves the content to a temporary file.
+     * The file is not marked delete-on-exit (which would leak an entry per write); callers must 
+     * call {@link #deleteFile()}.
+     */
+    static class SpillingOutputStream extends OutputStream {
+        private final int threshold;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileOut;
+        private long size;
+
+        SpillingOutputStream(int threshold) {
+            this.threshold = threshold;
+        }
+
+        private OutputStream target(int len) throws IOException {
+            if (file == null && size + len > threshold) {
+                file = File.createTempFile("brooklyn-persistence-", ".tmp");
+                FileUtil.setFilePermissionsTo600(file);
+                fileOut = new BufferedOutputStream(new FileOutputStream(file));
+                buffer.writeTo(fileOut);
+                buffer = null;
+            }
+            return file != null ? fileOut : buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target(1).write(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target(len).write(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileOut != null) fileOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) fileOut.close();
+        }
+
+        long size() {
+            return size;
+        }
+
+        boolean isInMemory() {
+            return file == null;
+        }
+
+        ByteSource asByteSource() {
+            return file != null ? Files.asByteSource(file) : ByteSource.wrap(buffer.toByteArray());
+        }
+
+        void deleteFile() {
+            if (file != null) file.delete();
+        }
+    }
+
     @Override
     public void append(String val) {
         String val0 = get();
@@ -98,6 +200,18 @@ public class JcloudsStoreObjectAccessor implements PersistenceObjectStore.StoreO
         }
     }
 
+    @Override
+    public InputStream getStream() {
+        try {
+            Blob blob = blobStore.getBlob(containerName, blobName);
+            if (blob==null) return null;
+            return blob.getPayload().openStream();
+        } catch (IOException e) {
+            Exceptions.propagateIfFatal(e);
+            throw new IllegalStateException("Error reading blobstore "+containerName+" "+blobName+": "+e, e);
+        }
+    }
+
     @Override
     public byte[] getBytes() {
         try {
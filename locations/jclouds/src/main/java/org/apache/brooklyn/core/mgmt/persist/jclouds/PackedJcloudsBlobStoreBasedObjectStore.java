@@ -0,0 +1,651 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist.jclouds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.mgmt.persist.BufferingPersistenceObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.location.jclouds.JcloudsLocation;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.Strings;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link JcloudsBlobStoreBasedObjectStore} which packs the persisted items (entities, locations, policies, etc)
+ * into segment blobs, rather than writing a blob per item. The items written between calls to {@link #flush()}
+ * (i.e. in each persistence delta) go into a single new segment, and a manifest blob lists the segments in the
+ * order they are applied. When there are more than {@link #getMaxSegments()} segments, the newest segments are
+ * merged into one, extending to each older segment only while its live (i.e. not since superseded) records are
+ * no bigger than the segments being merged; so small deltas are merged with each other, and the bulk of the
+ * items is only rewritten once most of it has been superseded.
+ * <p>
+ * This trades a blob store request per changed item for two requests per delta, and rebind fetches
+ * a few segments in parallel rather than each item in turn. The live items are held in memory.
+ * Other paths (e.g. the management plane records) are written as individual blobs, as normal.
+ * <p>
+ * A store written this way must always be read this way.
+ * 
+ * @since 0.9.0
+ */
+@Beta
+public class PackedJcloudsBlobStoreBasedObjectStore extends JcloudsBlobStoreBasedObjectStore implements BufferingPersistenceObjectStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PackedJcloudsBlobStoreBasedObjectStore.class);
+
+    public static final String PACKED_SUB_PATH = "packed";
+    public static final String MANIFEST_NAME = "manifest";
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+    
+    private static final String MANIFEST_HEADER = "brooklyn-packed-manifest-v1";
+    private static final int SEGMENT_MAGIC = 0x42504b31;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int MAX_LOAD_THREADS = 8;
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private static final Set<String> PACKED_SUB_PATHS;
+    static {
+        ImmutableSet.Builder<String> subPaths = ImmutableSet.builder();
+        for (BrooklynObjectType type : BrooklynObjectType.values()) {
+            if (type.getSubPathName()!=null) subPaths.add(type.getSubPathName());
+        }
+        PACKED_SUB_PATHS = subPaths.build();
+    }
+    
+    private static class Item {
+        final byte[] contents;
+        final long timestamp;
+        /** the segment holding this version, or null if not yet flushed; guarded by the store */
+        String segment;
+        Item(byte[] contents, long timestamp) {
+            this.contents = contents;
+            this.timestamp = timestamp;
+        }
+    }
+    
+    /** live packed items, including those not yet flushed */
+    private final Map<String, Item> items = new ConcurrentHashMap<String, Item>();
+    /** writes since the last flush, in order; a null value is a delete; guarded by this */
+    private Map<String, Item> pending = new LinkedHashMap<String, Item>();
+    /** the segment holding the delete record of each deleted path, while a segment before it might hold the path; guarded by this */
+    private final Map<String, String> deletedPaths = new HashMap<String, String>();
+    /** for each segment, the size of its records which are live (i.e. not superseded by a later segment or write); guarded by this */
+    private final Map<String, Long> segmentLiveBytes = new HashMap<String, Long>();
+    /** for each segment, the size of all its records; guarded by this */
+    private final Map<String, Long> segmentBytes = new HashMap<String, Long>();
+    
+    /** guards the segments, i.e. flushing and loading */
+    private final Object segmentsMutex = new Object();
+    private List<String> segments = ImmutableList.of();
+    private String lastManifest;
+    private boolean loaded;
+    private final AtomicLong segmentCounter = new AtomicLong();
+    
+    private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+    /** fetches segments in parallel; threads are released when idle, and the pool is shut down on close */
+    private final ListeningExecutorService loadExecutor = MoreExecutors.listeningDecorator(newLoadExecutor());
+
+    private static ThreadPoolExecutor newLoadExecutor() {
+        ThreadPoolExecutor result = new ThreadPoolExecutor(MAX_LOAD_THREADS, MAX_LOAD_THREADS, 
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("brooklyn-packed-store-load-%d").setDaemon(true).build());
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    public PackedJcloudsBlobStoreBasedObjectStore(String locationSpec, String containerName) {
+        super(locationSpec, containerName);
+    }
+
+    public PackedJcloudsBlobStoreBasedObjectStore(JcloudsLocation location, String containerName) {
+        super(location, containerName);
+    }
+
+    public PackedJcloudsBlobStoreBasedObjectStore(BlobStoreContext context, String containerName) {
+        super(context, containerName);
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+    
+    /** sets the number of segments above which the newest segments are merged */
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+    
+    /** the number of segments currently listed in the manifest */
+    public int getSegmentCount() {
+        synchronized (segmentsMutex) {
+            return segments.size();
+        }
+    }
+    
+    protected boolean isPacked(String path) {
+        path = Strings.removeFromStart(path, subPathSeparator());
+        int index = path.indexOf(subPathSeparator());
+        return index>0 && index<path.length()-1 && PACKED_SUB_PATHS.contains(path.substring(0, index));
+    }
+    
+    protected StoreObjectAccessor newBlobAccessor(String name) {
+        return super.newAccessor(mergePaths(PACKED_SUB_PATH, name));
+    }
+    
+    @Override
+    public StoreObjectAccessor newAccessor(String path) {
+        if (!isPacked(path)) return super.newAccessor(path);
+        checkPrepared();
+        ensureLoaded();
+        return new PackedStoreObjectAccessor(Strings.removeFromStart(path, subPathSeparator()));
+    }
+
+    @Override
+    public List<String> listContentsWithSubPath(String parentSubPath) {
+        String subPath = Strings.removeFromEnd(Strings.removeFromStart(parentSubPath, subPathSeparator()), subPathSeparator());
+        if (!PACKED_SUB_PATHS.contains(subPath)) return super.listContentsWithSubPath(parentSubPath);
+        checkPrepared();
+        // picks up segments written by another node, e.g. when we are a hot standby
+        load();
+        String prefix = subPath + subPathSeparator();
+        List<String> result = Lists.newArrayList();
+        for (String path : items.keySet()) {
+            if (path.startsWith(prefix)) result.add(path);
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Override
+    public void prepareForSharedUse(@Nullable PersistMode persistMode, HighAvailabilityMode haMode) {
+        super.prepareForSharedUse(persistMode, haMode);
+        load();
+    }
+    
+    protected void write(String path, @Nullable byte[] contents) {
+        Item item = (contents==null ? null : new Item(contents, System.currentTimeMillis()));
+        synchronized (this) {
+            supersede(path);
+            if (item==null) items.remove(path);
+            else items.put(path, item);
+            pending.put(path, item);
+        }
+    }
+    
+    /** the size of the record for the given path in a segment (roughly, as the path is counted in chars) */
+    private static long recordBytes(String path, @Nullable Item item) {
+        return 1 + 2 + path.length() + (item==null ? 0 : 8 + 4 + item.contents.length);
+    }
+    
+    private void addLiveBytes(String segment, long bytes) {
+        Long old = segmentLiveBytes.get(segment);
+        if (old!=null) segmentLiveBytes.put(segment, old+bytes);
+    }
+    
+    /** accounts for the record of the path in a segment (put or delete), if any, being superseded; caller must hold this */
+    private void supersede(String path) {
+        Item old = items.get(path);
+        if (old!=null && old.segment!=null) addLiveBytes(old.segment, -recordBytes(path, old));
+        String deletedIn = deletedPaths.remove(path);
+        if (deletedIn!=null) addLiveBytes(deletedIn, -recordBytes(path, null));
+    }
+    
+    /** 
+     * records that the given records are now held in the given segment, where they are still live;
+     * if merging, deletes are kept only if {@code keepDeletes} (i.e. the segment is not the first); caller must hold this
+     */
+    private void assignRecords(String segment, Map<String, Item> records, long bytes, boolean keepDeletes) {
+        long live = 0;
+        for (Map.Entry<String, Item> record : records.entrySet()) {
+            String path = record.getKey();
+            Item item = record.getValue();
+            if (item!=null) {
+                if (items.get(path)!=item) continue;
+                if (item.segment!=null) addLiveBytes(item.segment, -recordBytes(path, item));
+                item.segment = segment;
+            } else {
+                if (items.containsKey(path)) continue;
+                String deletedIn = deletedPaths.remove(path);
+                if (deletedIn!=null) addLiveBytes(deletedIn, -recordBytes(path, null));
+                if (!keepDeletes) continue;
+                deletedPaths.put(path, segment);
+            }
+            live += recordBytes(path, item);
+        }
+        segmentLiveBytes.put(segment, live);
+        segmentBytes.put(segment, bytes);
+    }
+    
+    @Override
+    public void flush() {
+        synchronized (segmentsMutex) {
+            Map<String, Item> writes;
+            synchronized (this) {
+                if (pending.isEmpty()) return;
+                writes = pending;
+                pending = new LinkedHashMap<String, Item>();
+            }
+            try {
+                String segment = writeSegment(writes);
+                List<String> newSegments = ImmutableList.<String>builder().addAll(segments).add(segment).build();
+                writeManifest(newSegments);
+                segments = newSegments;
+                synchronized (this) {
+                    assignRecords(segment, writes, totalRecordBytes(writes), true);
+                }
+            } catch (RuntimeException e) {
+                // keep the writes for the next flush, behind any made since
+                synchronized (this) {
+                    Map<String, Item> merged = new LinkedHashMap<String, Item>(writes);
+                    for (Map.Entry<String, Item> entry : pending.entrySet()) {
+                        merged.remove(entry.getKey());
+                        merged.put(entry.getKey(), entry.getValue());
+                    }
+                    pending = merged;
+                }
+                throw e;
+            }
+            if (segments.size() > maxSegments) {
+                try {
+                    mergeSegments(chooseSegmentsToMerge());
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.warn("Unable to compact segments of "+this+" (will retry on next flush): "+e, e);
+                }
+            }
+        }
+    }
+    
+    private static long totalRecordBytes(Map<String, Item> records) {
+        long result = 0;
+        for (Map.Entry<String, Item> record : records.entrySet()) {
+            result += recordBytes(record.getKey(), record.getValue());
+        }
+        return result;
+    }
+
+    /** 
+     * returns the index of the first of the newest segments to merge: at least the newest two, and each older one
+     * whose live records are no bigger than the segments after it, so that what is rewritten is paid for by what was written
+     */
+    protected int chooseSegmentsToMerge() {
+        synchronized (segmentsMutex) {
+            synchronized (this) {
+                int start = segments.size()-1;
+                long mergedBytes = bytesOf(segmentBytes, segments.get(start));
+                while (start > 0) {
+                    String older = segments.get(start-1);
+                    if (start < segments.size()-1 && bytesOf(segmentLiveBytes, older) > mergedBytes) break;
+                    start--;
+                    mergedBytes += bytesOf(segmentBytes, older);
+                }
+                return start;
+            }
+        }
+    }
+    
+    private static long bytesOf(Map<String, Long> bytesBySegment, String segment) {
+        Long result = bytesBySegment.get(segment);
+        return result==null ? 0 : result;
+    }
+    
+    /** rewrites the live items as a single segment, deleting the old segments (and any not in the manifest) */
+    protected void compact() {
+        synchronized (segmentsMutex) {
+            if (!segments.isEmpty()) mergeSegments(0);
+        }
+    }
+    
+    /** 
+     * rewrites the live records of the segments from the given index onwards as a single segment, deleting those segments
+     * (and, when merging all segments, any others not in the manifest)
+     */
+    protected void mergeSegments(int start) {
+        synchronized (segmentsMutex) {
+            Set<String> mergingSet = ImmutableSet.copyOf(segments.subList(start, segments.size()));
+            // deletes are needed only if an earlier segment might hold the path
+            boolean keepDeletes = start > 0;
+            Map<String, Item> records = new LinkedHashMap<String, Item>();
+            synchronized (this) {
+                for (Map.Entry<String, Item> entry : items.entrySet()) {
+                    String segment = entry.getValue().segment;
+                    if (segment!=null && mergingSet.contains(segment)) records.put(entry.getKey(), entry.getValue());
+                }
+                if (keepDeletes) {
+                    for (Map.Entry<String, String> entry : deletedPaths.entrySet()) {
+                        if (mergingSet.contains(entry.getValue())) records.put(entry.getKey(), null);
+                    }
+                }
+            }
+            String segment = writeSegment(records);
+            List<String> newSegments = ImmutableList.<String>builder().addAll(segments.subList(0, start)).add(segment).build();
+            writeManifest(newSegments);
+            segments = newSegments;
+            synchronized (this) {
+                assignRecords(segment, records, totalRecordBytes(records), keepDeletes);
+                for (String merged : mergingSet) {
+                    segmentLiveBytes.remove(merged);
+                    segmentBytes.remove(merged);
+                }
+                if (!keepDeletes) deletedPaths.values().removeAll(mergingSet);
+            }
+            
+            if (keepDeletes) {
+                for (String merged : mergingSet) {
+                    newBlobAccessor(merged).delete();
+                }
+            } else {
+                for (String path : super.listContentsWithSubPath(PACKED_SUB_PATH)) {
+                    String name = Strings.removeFromStart(path.substring(path.lastIndexOf(subPathSeparator())+1), subPathSeparator());
+                    if (!name.equals(MANIFEST_NAME) && !newSegments.contains(name)) {
+                        newBlobAccessor(name).delete();
+                    }
+                }
+            }
+            if (log.isDebugEnabled()) log.debug("Merged {} segment(s) of {} into segment {}, with {} records", new Object[] {mergingSet.size(), this, segment, records.size()});
+        }
+    }
+
+    protected String writeSegment(final Map<String, Item> records) {
+        String name = "segment-"+System.currentTimeMillis()+"-"+segmentCounter.incrementAndGet()+"-"+Identifiers.makeRandomId(6);
+        newBlobAccessor(name).put(new ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(SEGMENT_MAGIC);
+                data.writeInt(records.size());
+                for (Map.Entry<String, Item> record : records.entrySet()) {
+                    Item item = record.getValue();
+                    data.writeByte(item==null ? RECORD_DELETE : RECORD_PUT);
+                    data.writeUTF(record.getKey());
+                    if (item!=null) {
+                        data.writeLong(item.timestamp);
+                        data.writeInt(item.contents.length);
+                        data.write(item.contents);
+                    }
+                }
+                data.flush();
+            }
+        });
+        return name;
+    }
+
+    protected void writeManifest(List<String> segments) {
+        String manifest = MANIFEST_HEADER + "\n" + Joiner.on("\n").join(segments);
+        newBlobAccessor(MANIFEST_NAME).put(manifest);
+        lastManifest = manifest;
+    }
+
+    protected void ensureLoaded() {
+        synchronized (segmentsMutex) {
+            if (!loaded) load();
+        }
+    }
+    
+    /**
+     * Reads the manifest, and applies any segments not yet applied;
+     * or, if the segments have been compacted by another node, re-reads all of them.
+     */
+    protected void load() {
+        synchronized (segmentsMutex) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    loadOnce();
+                    loaded = true;
+                    return;
+                } catch (RuntimeException e) {
+                    // a segment may be deleted by compaction between our reading the manifest and the segment
+                    if (attempt >= MAX_LOAD_ATTEMPTS) throw e;
+                    log.debug("Unable to load "+this+" (attempt "+attempt+", retrying): "+e);
+                }
+            }
+        }
+    }
+    
+    private void loadOnce() {
+        String manifest = newBlobAccessor(MANIFEST_NAME).get();
+        if (manifest==null || manifest.equals(lastManifest)) return;
+        List<String> lines = Splitter.on('\n').omitEmptyStrings().trimResults().splitToList(manifest);
+        if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) {
+            throw new IllegalStateException("Invalid manifest in "+this+": "+Strings.maxlen(manifest, 100));
+        }
+        List<String> newSegments = lines.subList(1, lines.size());
+        boolean incremental = lastManifest!=null && newSegments.size() >= segments.size() 
+                && newSegments.subList(0, segments.size()).equals(segments);
+        List<String> toRead = incremental ? newSegments.subList(segments.size(), newSegments.size()) : newSegments;
+        
+        List<byte[]> contents = readSegments(toRead);
+        synchronized (this) {
+            if (!incremental) {
+                items.clear();
+                deletedPaths.clear();
+                segmentLiveBytes.clear();
+                segmentBytes.clear();
+            }
+            for (int i=0; i<toRead.size(); i++) {
+                applySegment(toRead.get(i), contents.get(i));
+            }
+            // our own unflushed writes take precedence
+            for (Map.Entry<String, Item> entry : pending.entrySet()) {
+                supersede(entry.getKey());
+                if (entry.getValue()==null) items.remove(entry.getKey());
+                else items.put(entry.getKey(), entry.getValue());
+            }
+        }
+        segments = ImmutableList.copyOf(newSegments);
+        lastManifest = manifest;
+        if (log.isDebugEnabled()) log.debug("Loaded {} segment(s) of {}, now {} items", new Object[] {toRead.size(), this, items.size()});
+    }
+
+    /** fetches the given segments in parallel, returning their contents in the same order */
+    protected List<byte[]> readSegments(List<String> names) {
+        if (names.isEmpty()) return ImmutableList.of();
+        try {
+            List<ListenableFuture<byte[]>> futures = Lists.newArrayList();
+            for (final String name : names) {
+                futures.add(loadExecutor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        byte[] result = newBlobAccessor(name).getBytes();
+                        if (result==null) throw new IllegalStateException("Segment "+name+" not found in "+PackedJcloudsBlobStoreBasedObjectStore.this);
+                        return result;
+                    }
+                }));
+            }
+            return Futures.allAsList(futures).get();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /** applies the records of the given segment; caller must hold this */
+    private void applySegment(String name, byte[] segment) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(segment));
+            if (data.readInt()!=SEGMENT_MAGIC) throw new IllegalStateException("Invalid segment "+name+" in "+this);
+            int count = data.readInt();
+            segmentLiveBytes.put(name, 0L);
+            segmentBytes.put(name, (long)segment.length);
+            for (int i=0; i<count; i++) {
+                byte type = data.readByte();
+                String path = data.readUTF();
+                supersede(path);
+                if (type==RECORD_DELETE) {
+                    items.remove(path);
+                    deletedPaths.put(path, name);
+                    addLiveBytes(name, recordBytes(path, null));
+                } else if (type==RECORD_PUT) {
+                    long timestamp = data.readLong();
+                    byte[] contents = new byte[data.readInt()];
+                    data.readFully(contents);
+                    Item item = new Item(contents, timestamp);
+                    item.segment = name;
+                    items.put(path, item);
+                    addLiveBytes(name, recordBytes(path, item));
+                } else {
+                    throw new IllegalStateException("Invalid record type "+type+" in segment "+name+" of "+this);
+                }
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public void deleteCompletely() {
+        super.deleteCompletely();
+        synchronized (segmentsMutex) {
+            synchronized (this) {
+                items.clear();
+                pending.clear();
+                deletedPaths.clear();
+                segmentLiveBytes.clear();
+                segmentBytes.clear();
+            }
+            segments = ImmutableList.of();
+            lastManifest = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.warn("Unable to flush "+this+" on close: "+e, e);
+        }
+        loadExecutor.shutdownNow();
+        super.close();
+    }
+
+    private class PackedStoreObjectAccessor implements StoreObjectAccessor {
+        private final String path;
+        
+        PackedStoreObjectAccessor(String path) {
+            this.path = path;
+        }
+        
+        @Override
+        public String get() {
+            byte[] result = getBytes();
+            return result==null ? null : new String(result, Charsets.UTF_8);
+        }
+
+        @Override
+        public byte[] getBytes() {
+            Item item = items.get(path);
+            return item==null ? null : item.contents;
+        }
+
+        @Override
+        public InputStream getStream() {
+            byte[] result = getBytes();
+            return result==null ? null : new ByteArrayInputStream(result);
+        }
+
+        @Override
+        public boolean exists() {
+            return items.containsKey(path);
+        }
+
+        @Override
+        public void put(String contentsToReplaceOrCreate) {
+            write(path, contentsToReplaceOrCreate.getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void put(ContentWriter contentWriter) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                contentWriter.write(out);
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+            write(path, out.toByteArray());
+        }
+
+        @Override
+        public void append(String contentsToAppendOrCreate) {
+            synchronized (PackedJcloudsBlobStoreBasedObjectStore.this) {
+                String existing = get();
+                put(existing==null ? contentsToAppendOrCreate : existing+contentsToAppendOrCreate);
+            }
+        }
+
+        @Override
+        public void delete() {
+            synchronized (PackedJcloudsBlobStoreBasedObjectStore.this) {
+                if (exists()) write(path, null);
+            }
+        }
+
+        @Override
+        public Date getLastModifiedDate() {
+            Item item = items.get(path);
+            return item==null ? null : new Date(item.timestamp);
+        }
+        
+        @Override
+        public String toString() {
+            return PackedJcloudsBlobStoreBasedObjectStore.this+":"+path;
+        }
+    }
+
+}
@@ -77,6 +77,8 @@ import org.apache.brooklyn.core.mgmt.internal.LocalLocationManager;
 import org.apache.brooklyn.core.mgmt.persist.LocationWithObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.jclouds.JcloudsBlobStoreBasedObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.jclouds.PackedJcloudsBlobStoreBasedObjectStore;
+import org.apache.brooklyn.core.server.BrooklynServerConfig;
 import org.apache.brooklyn.location.jclouds.JcloudsPredicates.NodeInLocation;
 import org.apache.brooklyn.location.jclouds.networking.JcloudsPortForwarderExtension;
 import org.apache.brooklyn.location.jclouds.templates.PortableTemplateBuilder;
@@ -3141,6 +3143,9 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
 
     @Override
     public PersistenceObjectStore newPersistenceObjectStore(String container) {
+        if (getManagementContext() != null && Boolean.TRUE.equals(getManagementContext().getConfig().getConfig(BrooklynServerConfig.PERSISTENCE_PACKED_BLOB_STORE))) {
+            return new PackedJcloudsBlobStoreBasedObjectStore(this, container);
+        }
         return new JcloudsBlobStoreBasedObjectStore(this, container);
     }
 
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.mgmt.persist.BufferingPersistenceObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.PersistMode;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.core.mgmt.persist.jclouds.JcloudsBlobStoreBasedObjectStore;
@@ -47,10 +48,10 @@ public class BlobStorePersistencePerformanceTest extends AbstractPerformanceTest
     public void setUp() throws Exception {
         super.setUp();
 
-        objectStore = new JcloudsBlobStoreBasedObjectStore(LOCATION_SPEC, "BlobStorePersistencePerformanceTest");
+        objectStore = newObjectStore("BlobStorePersistencePerformanceTest");
         objectStore.injectManagementContext(mgmt);
         objectStore.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.AUTO);
-        blobstoreAccessor = objectStore.newAccessor(Identifiers.makeRandomId(8));
+        blobstoreAccessor = objectStore.newAccessor("entities/"+Identifiers.makeRandomId(8));
         
         app.start(ImmutableList.of(loc));
     }
@@ -66,6 +67,10 @@ public class BlobStorePersistencePerformanceTest extends AbstractPerformanceTest
         }
     }
     
+    protected JcloudsBlobStoreBasedObjectStore newObjectStore(String containerName) {
+        return new JcloudsBlobStoreBasedObjectStore(LOCATION_SPEC, containerName);
+    }
+    
     protected int numIterations() {
         return 100;
     }
@@ -86,6 +91,34 @@ public class BlobStorePersistencePerformanceTest extends AbstractPerformanceTest
                      }}));
      }
  
+     @Test(groups={"Live", "Acceptance"})
+     public void testStoreObjectDeltaWrites() throws Exception {
+         // as the persister writes a delta: several items, then a flush if the store buffers them
+         int numIterations = numIterations();
+         double minRatePerSec = PERFORMANCE_EXPECTATION;
+         final int itemsPerDelta = 10;
+         final List<StoreObjectAccessor> blobstoreAccessors = Lists.newArrayList();
+         for (int i = 0; i < itemsPerDelta; i++) {
+             blobstoreAccessors.add(objectStore.newAccessor("entities/storeObjectDelta-"+i));
+         }
+         final AtomicInteger i = new AtomicInteger();
+         
+         measure(PerformanceTestDescriptor.create()
+                 .summary("StoreObjectAccessor.put for a delta of "+itemsPerDelta+" items")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     public void run() {
+                         String val = ""+i.incrementAndGet();
+                         for (StoreObjectAccessor blobstoreAccessor : blobstoreAccessors) {
+                             blobstoreAccessor.put(val);
+                         }
+                         if (objectStore instanceof BufferingPersistenceObjectStore) {
+                             ((BufferingPersistenceObjectStore)objectStore).flush();
+                         }
+                     }}));
+     }
+ 
      @Test(groups={"Live", "Acceptance"})
      public void testStoreObjectGet() throws Exception {
          // The file system will have done a lot of caching here - we are unlikely to touch the disk more than once.
@@ -110,7 +143,7 @@ public class BlobStorePersistencePerformanceTest extends AbstractPerformanceTest
          // Will do 10% warm up runs first
          final List<StoreObjectAccessor> blobstoreAccessors = Lists.newArrayList();
          for (int i = 0; i < (numIterations * 1.1 + 1); i++) {
-             blobstoreAccessors.add(objectStore.newAccessor("storeObjectDelete-"+i));
+             blobstoreAccessors.add(objectStore.newAccessor("entities/storeObjectDelete-"+i));
          }
          
          final AtomicInteger i = new AtomicInteger();
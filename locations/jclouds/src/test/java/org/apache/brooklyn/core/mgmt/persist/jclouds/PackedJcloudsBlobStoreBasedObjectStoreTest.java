@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+*/
+package org.apache.brooklyn.core.mgmt.persist.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.ContentWriter;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+public class PackedJcloudsBlobStoreBasedObjectStoreTest {
+
+    private static final String CONTAINER = "brooklyn-packed-test";
+    
+    private LocalManagementContext mgmt;
+    private BlobStoreContext context;
+    
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance();
+        context = TransientBlobStorePersistencePerformanceTest.newTransientBlobStoreContext();
+    }
+    
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (mgmt != null) Entities.destroyAll(mgmt);
+        if (context != null) context.close();
+    }
+
+    private PackedJcloudsBlobStoreBasedObjectStore newObjectStore() {
+        PackedJcloudsBlobStoreBasedObjectStore result = new PackedJcloudsBlobStoreBasedObjectStore(context, CONTAINER);
+        result.injectManagementContext(mgmt);
+        result.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.AUTO);
+        return result;
+    }
+    
+    @Test
+    public void testWritesVisibleImmediatelyAndDurableAfterFlush() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.newAccessor("entities/a").put("A");
+        store.newAccessor("entities/b").put("B");
+        store.newAccessor("locations/c").put("C");
+        assertEquals(store.newAccessor("entities/a").get(), "A");
+        assertEquals(store.listContentsWithSubPath("entities"), ImmutableList.of("entities/a", "entities/b"));
+        
+        assertEquals(newObjectStore().listContentsWithSubPath("entities"), ImmutableList.of());
+        
+        store.flush();
+        assertEquals(store.getSegmentCount(), 1);
+        
+        PackedJcloudsBlobStoreBasedObjectStore reloaded = newObjectStore();
+        assertEquals(reloaded.listContentsWithSubPath("entities"), ImmutableList.of("entities/a", "entities/b"));
+        assertEquals(reloaded.listContentsWithSubPath("locations"), ImmutableList.of("locations/c"));
+        assertEquals(reloaded.newAccessor("entities/b").get(), "B");
+        assertTrue(reloaded.newAccessor("entities/b").getLastModifiedDate() != null);
+    }
+
+    @Test
+    public void testStreamedPutBuffersSmallContentsAndSpillsLargeContents() throws Exception {
+        JcloudsStoreObjectAccessor accessor = new JcloudsStoreObjectAccessor(context.getBlobStore(), CONTAINER, "streamed/blob");
+        for (int size : new int[] {10, JcloudsStoreObjectAccessor.IN_MEMORY_THRESHOLD + 10}) {
+            final byte[] contents = new byte[size];
+            Arrays.fill(contents, (byte)'x');
+            accessor.put(new ContentWriter() {
+                @Override public void write(OutputStream out) throws IOException {
+                    out.write(contents, 0, 5);
+                    out.write(contents, 5, contents.length-5);
+                }});
+            assertEquals(accessor.getBytes(), contents);
+        }
+    }
+
+    @Test
+    public void testSpillingOutputStreamMovesToFileAboveThreshold() throws Exception {
+        JcloudsStoreObjectAccessor.SpillingOutputStream out = new JcloudsStoreObjectAccessor.SpillingOutputStream(4);
+        try {
+            out.write(new byte[] {1, 2, 3});
+            assertTrue(out.isInMemory());
+            out.write(4);
+            assertTrue(out.isInMemory());
+            out.write(new byte[] {5, 6});
+            assertFalse(out.isInMemory());
+            out.close();
+            assertEquals(out.size(), 6);
+            assertEquals(out.asByteSource().read(), new byte[] {1, 2, 3, 4, 5, 6});
+        } finally {
+            out.deleteFile();
+        }
+    }
+
+    @Test
+    public void testLaterSegmentsOverwriteAndDelete() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.newAccessor("entities/a").put("A1");
+        store.newAccessor("entities/b").put("B");
+        store.flush();
+        
+        PackedJcloudsBlobStoreBasedObjectStore standby = newObjectStore();
+        assertEquals(standby.newAccessor("entities/a").get(), "A1");
+        
+        store.newAccessor("entities/a").put("A2");
+        store.newAccessor("entities/b").delete();
+        store.flush();
+        assertEquals(store.getSegmentCount(), 2);
+        
+        // listing picks up the new segment
+        assertEquals(standby.listContentsWithSubPath("entities"), ImmutableList.of("entities/a"));
+        assertEquals(standby.newAccessor("entities/a").get(), "A2");
+        assertFalse(standby.newAccessor("entities/b").exists());
+        assertNull(standby.newAccessor("entities/b").get());
+    }
+
+    @Test
+    public void testCompactsSegments() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.setMaxSegments(3);
+        for (int i = 0; i < 4; i++) {
+            store.newAccessor("entities/e"+i).put("val"+i);
+            store.newAccessor("entities/e0").put("latest"+i);
+            store.flush();
+        }
+        assertEquals(store.getSegmentCount(), 1);
+        // only the manifest and the compacted segment remain
+        assertEquals(store.listContentsWithSubPath(PackedJcloudsBlobStoreBasedObjectStore.PACKED_SUB_PATH).size(), 2);
+        
+        PackedJcloudsBlobStoreBasedObjectStore reloaded = newObjectStore();
+        List<String> contents = reloaded.listContentsWithSubPath("entities");
+        assertEquals(contents, ImmutableList.of("entities/e0", "entities/e1", "entities/e2", "entities/e3"));
+        assertEquals(reloaded.newAccessor("entities/e0").get(), "latest3");
+        assertEquals(reloaded.newAccessor("entities/e3").get(), "val3");
+    }
+
+    @Test
+    public void testSmallDeltasDoNotRewriteBulkOfItems() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.setMaxSegments(4);
+        String bigContents = Strings.repeat("x", 1000);
+        for (int i = 0; i < 100; i++) {
+            store.newAccessor("entities/big"+i).put(bigContents);
+        }
+        store.flush();
+        List<String> initialBlobs = store.listContentsWithSubPath(PackedJcloudsBlobStoreBasedObjectStore.PACKED_SUB_PATH);
+        
+        for (int i = 0; i < 50; i++) {
+            store.newAccessor("entities/small").put("val"+i);
+            store.newAccessor("entities/small"+i).put("val"+i);
+            store.flush();
+            assertTrue(store.getSegmentCount() <= 5, "segments="+store.getSegmentCount());
+        }
+        // the segment with the big items has not been rewritten
+        assertTrue(store.listContentsWithSubPath(PackedJcloudsBlobStoreBasedObjectStore.PACKED_SUB_PATH).containsAll(initialBlobs));
+        
+        // but once they are superseded, it is merged with the rest
+        for (int i = 0; i < 100; i++) {
+            store.newAccessor("entities/big"+i).put("small"+i);
+        }
+        store.newAccessor("entities/small").put("latest");
+        store.flush();
+        for (int i = 0; i < 4 && store.getSegmentCount() > 1; i++) {
+            store.newAccessor("entities/small"+i).put("again"+i);
+            store.flush();
+        }
+        assertEquals(store.getSegmentCount(), 1);
+        assertEquals(store.listContentsWithSubPath(PackedJcloudsBlobStoreBasedObjectStore.PACKED_SUB_PATH).size(), 2);
+        
+        PackedJcloudsBlobStoreBasedObjectStore reloaded = newObjectStore();
+        assertEquals(reloaded.listContentsWithSubPath("entities").size(), 100 + 1 + 50);
+        assertEquals(reloaded.newAccessor("entities/small").get(), "latest");
+        assertEquals(reloaded.newAccessor("entities/small49").get(), "val49");
+        assertEquals(reloaded.newAccessor("entities/big99").get(), "small99");
+    }
+
+    @Test
+    public void testMergingNewestSegmentsKeepsDeletes() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.setMaxSegments(2);
+        String bigContents = Strings.repeat("x", 1000);
+        store.newAccessor("entities/big").put(bigContents);
+        store.newAccessor("entities/a").put("A");
+        store.flush();
+        store.newAccessor("entities/a").delete();
+        store.flush();
+        store.newAccessor("entities/b").put("B");
+        store.flush();
+        // the newest two are merged, keeping the delete of a, which is still in the first
+        assertEquals(store.getSegmentCount(), 2);
+        
+        PackedJcloudsBlobStoreBasedObjectStore reloaded = newObjectStore();
+        assertEquals(reloaded.listContentsWithSubPath("entities"), ImmutableList.of("entities/b", "entities/big"));
+    }
+
+    @Test
+    public void testOtherPathsNotPacked() throws Exception {
+        PackedJcloudsBlobStoreBasedObjectStore store = newObjectStore();
+        store.newAccessor("plane/id").put("plane");
+        assertEquals(context.getBlobStore().getBlob(CONTAINER, "plane/id").getPayload().getContentMetadata().getContentLength(), (Long)5L);
+        assertEquals(store.listContentsWithSubPath("plane"), ImmutableList.of("plane/id"));
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+*/
+package org.apache.brooklyn.core.mgmt.persist.jclouds;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStoreContext;
+
+/**
+ * Runs {@link BlobStorePersistencePerformanceTest} against jclouds' in-memory "transient" blob store,
+ * so measures the client-side cost of each request without needing cloud credentials.
+ */
+public class TransientBlobStorePersistencePerformanceTest extends BlobStorePersistencePerformanceTest {
+
+    public static BlobStoreContext newTransientBlobStoreContext() {
+        return ContextBuilder.newBuilder("transient")
+                .credentials("identity", "credential")
+                .buildView(BlobStoreContext.class);
+    }
+    
+    @Override
+    protected JcloudsBlobStoreBasedObjectStore newObjectStore(String containerName) {
+        return new JcloudsBlobStoreBasedObjectStore(newTransientBlobStoreContext(), containerName);
+    }
+    
+}
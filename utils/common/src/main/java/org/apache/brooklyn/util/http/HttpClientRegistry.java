@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpTool.HttpClientBuilder;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Shares {@link HttpClient}s with pooled, kept-alive connections between all users with the same settings
+ * (scheme, host, port, credentials, trust, redirect and timeouts), so that e.g. many feeds polling the same
+ * endpoint do not each open and close their own connections.
+ * <p>
+ * Each client has its own connection pool, bounded per route and in total; a request waiting longer than the
+ * lease timeout for a pooled connection fails, rather than blocking indefinitely behind requests to a slow host.
+ * Connections idle for longer than the idle timeout are closed periodically. A client is discarded once no
+ * caller refers to it, and its connection manager is then shut down explicitly.
+ * <p>
+ * Clients whose builder supplies its own connection manager, socket factory, reuse strategy or http params
+ * are not shared; {@link #getClient(HttpClientBuilder)} just builds them.
+ */
+@Beta
+public class HttpClientRegistry implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientRegistry.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 4;
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.THIRTY_SECONDS;
+    public static final Duration DEFAULT_LEASE_TIMEOUT = Duration.THIRTY_SECONDS;
+
+    private final int maxConnectionsPerRoute;
+    private final int maxConnections;
+    private final Duration idleTimeout;
+    private final Duration leaseTimeout;
+
+    /** refers weakly to a shared client, holding its connection manager so it can be shut down once the client is collected */
+    private static class ClientReference extends WeakReference<HttpClient> {
+        final List<Object> key;
+        final ClientConnectionManager connectionManager;
+        ClientReference(HttpClient client, List<Object> key, ReferenceQueue<HttpClient> queue) {
+            super(client, queue);
+            this.key = key;
+            this.connectionManager = client.getConnectionManager();
+        }
+    }
+
+    /** guarded by this */
+    private final Map<List<Object>, ClientReference> clients = Maps.newHashMap();
+    private final ReferenceQueue<HttpClient> collectedClients = new ReferenceQueue<HttpClient>();
+
+    private ScheduledExecutorService idleConnectionEvictor;
+    private boolean closed = false;
+
+    public HttpClientRegistry() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_TIMEOUT, DEFAULT_LEASE_TIMEOUT);
+    }
+
+    /**
+     * @param maxConnectionsPerRoute the max connections each client keeps open to any one host
+     * @param maxConnections the max connections each client keeps open in total
+     * @param idleTimeout how long a pooled connection may be idle before it is closed
+     * @param leaseTimeout how long a request may wait for a pooled connection before failing
+     */
+    public HttpClientRegistry(int maxConnectionsPerRoute, int maxConnections, Duration idleTimeout, Duration leaseTimeout) {
+        checkArgument(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive");
+        checkArgument(maxConnections >= maxConnectionsPerRoute, "maxConnections must be at least maxConnectionsPerRoute");
+        checkArgument(checkNotNull(idleTimeout, "idleTimeout").isPositive(), "idleTimeout must be positive");
+        checkArgument(checkNotNull(leaseTimeout, "leaseTimeout").isPositive(), "leaseTimeout must be positive");
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Returns a client for the settings in the given builder; this is shared with all other callers
+     * supplying the same settings, built from the given builder (using a pooled connection manager) if there is none yet.
+     * If the builder's settings cannot be shared then the builder's client is returned, unshared.
+     */
+    public synchronized HttpClient getClient(HttpClientBuilder builder) {
+        List<Object> key = builder.sharingKey();
+        if (key == null) return builder.build();
+        if (closed) throw new IllegalStateException("HTTP client registry "+this+" has been closed");
+        startIdleConnectionEvictor();
+        shutDownCollectedClients();
+        
+        ClientReference ref = clients.get(key);
+        HttpClient result = (ref == null) ? null : ref.get();
+        if (result == null) {
+            PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault());
+            connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            connectionManager.setMaxTotal(maxConnections);
+            result = builder.clientConnectionManager(connectionManager).build();
+            HttpClientParams.setConnectionManagerTimeout(result.getParams(), leaseTimeout.toMilliseconds());
+            clients.put(key, new ClientReference(result, key, collectedClients));
+        }
+        return result;
+    }
+
+    /** the number of shared clients currently in use */
+    public synchronized long size() {
+        shutDownCollectedClients();
+        return clients.size();
+    }
+
+    /** closes connections which have been idle for longer than the idle timeout, or which have expired */
+    public void closeIdleConnections() {
+        List<ClientConnectionManager> connectionManagers;
+        synchronized (this) {
+            shutDownCollectedClients();
+            connectionManagers = Lists.newArrayList();
+            for (ClientReference ref : clients.values()) {
+                connectionManagers.add(ref.connectionManager);
+            }
+        }
+        for (ClientConnectionManager connectionManager : connectionManagers) {
+            try {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.debug("Error closing idle connections of "+connectionManager+" (continuing)", e);
+            }
+        }
+    }
+
+    /** shuts down all shared clients; subsequent attempts to get a client fail */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (idleConnectionEvictor != null) idleConnectionEvictor.shutdownNow();
+        for (ClientReference ref : clients.values()) {
+            shutDown(ref.connectionManager);
+        }
+        clients.clear();
+    }
+
+    /** shuts down the connection managers of clients which no caller refers to any longer; caller must hold this */
+    private void shutDownCollectedClients() {
+        Reference<? extends HttpClient> collected;
+        while ((collected = collectedClients.poll()) != null) {
+            ClientReference ref = (ClientReference) collected;
+            if (clients.get(ref.key) == ref) clients.remove(ref.key);
+            shutDown(ref.connectionManager);
+        }
+    }
+
+    private void shutDown(ClientConnectionManager connectionManager) {
+        try {
+            connectionManager.shutdown();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.debug("Error shutting down "+connectionManager+" (continuing)", e);
+        }
+    }
+
+    private void startIdleConnectionEvictor() {
+        if (idleConnectionEvictor != null) return;
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-http-idle-connection-evictor-%d")
+                .setDaemon(true)
+                .build());
+        long periodMillis = Math.max(1000, idleTimeout.toMilliseconds() / 2);
+        idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                closeIdleConnections();
+            }}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientRegistry@"+Integer.toHexString(System.identityHashCode(this));
+    }
+}
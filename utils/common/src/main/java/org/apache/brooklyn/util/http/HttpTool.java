@@ -29,7 +29,9 @@ import java.net.URLConnection;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
@@ -79,11 +81,13 @@ import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -249,6 +253,8 @@ public class HttpTool {
         private ConnectionReuseStrategy reuseStrategy;
         private boolean trustAll;
         private boolean trustSelfSigned;
+        /** whether http params were supplied other than by {@link #connectionTimeout(Duration)} and {@link #socketTimeout(Duration)} */
+        private boolean customHttpParams;
 
         public HttpClientBuilder clientConnectionManager(ClientConnectionManager val) {
             this.clientConnectionManager = checkNotNull(val, "clientConnectionManager");
@@ -257,6 +263,7 @@ public class HttpTool {
         public HttpClientBuilder httpParams(HttpParams val) {
             checkState(httpParams == null, "Must not call httpParams multiple times, or after other methods like connectionTimeout");
             this.httpParams = checkNotNull(val, "httpParams");
+            customHttpParams = true;
             return this;
         }
         public HttpClientBuilder connectionTimeout(Duration val) {
@@ -317,6 +324,31 @@ public class HttpTool {
             this.trustSelfSigned = true;
             return this;
         }
+        /**
+         * A key identifying the settings of the client which would be built, so that clients with the same settings 
+         * can be shared (see {@link HttpClientRegistry}); or null if the client should not be shared, 
+         * i.e. if a connection manager, socket factory, reuse strategy or http params have been supplied.
+         */
+        List<Object> sharingKey() {
+            if (clientConnectionManager != null || socketFactory != null || reuseStrategy != null || customHttpParams) return null;
+            boolean isHttps = (https == Boolean.TRUE || (uri!=null && uri.toString().startsWith("https:")));
+            return Arrays.<Object>asList(isHttps, 
+                    (uri == null) ? null : uri.getHost(), 
+                    (port != null) ? port : (uri == null) ? null : uri.getPort(),
+                    credentialsKey(credentials), trustAll, trustSelfSigned, laxRedirect,
+                    (httpParams == null) ? null : HttpConnectionParams.getConnectionTimeout(httpParams),
+                    (httpParams == null) ? null : HttpConnectionParams.getSoTimeout(httpParams));
+        }
+        /**
+         * The credentials' type, user and a hash of the password; the credentials themselves are not used
+         * as (e.g. for {@link UsernamePasswordCredentials}) they are equal whenever the user is, whatever the password.
+         */
+        private static List<Object> credentialsKey(Credentials credentials) {
+            if (credentials == null) return null;
+            String password = credentials.getPassword();
+            return Arrays.<Object>asList(credentials.getClass(), credentials.getUserPrincipal(),
+                    (password == null) ? null : Hashing.sha256().hashString(password, Charsets.UTF_8).toString());
+        }
         public HttpClient build() {
             final DefaultHttpClient httpClient = new DefaultHttpClient(clientConnectionManager);
             httpClient.setParams(httpParams);
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class HttpClientRegistryTest {
+
+    private HttpClientRegistry registry;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        registry = new HttpClientRegistry(2, 10, Duration.ONE_SECOND, Duration.FIVE_SECONDS);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (registry != null) registry.close();
+    }
+
+    @Test
+    public void testSharesClientWithSameSettings() throws Exception {
+        HttpClient client1 = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/a").trustAll().socketTimeout(Duration.TEN_SECONDS));
+        HttpClient client2 = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/b").trustAll().socketTimeout(Duration.TEN_SECONDS));
+        assertSame(client1, client2);
+        assertTrue(client1.getConnectionManager() instanceof PoolingClientConnectionManager, "manager="+client1.getConnectionManager());
+        PoolingClientConnectionManager connectionManager = (PoolingClientConnectionManager) client1.getConnectionManager();
+        assertEquals(connectionManager.getDefaultMaxPerRoute(), 2);
+        assertEquals(connectionManager.getMaxTotal(), 10);
+        assertEquals(HttpClientParams.getConnectionManagerTimeout(client1.getParams()), 5000);
+        assertEquals(registry.size(), 1);
+    }
+
+    @Test
+    public void testShutsDownConnectionManagerOfUnreferencedClient() throws Exception {
+        HttpClient client = registry.getClient(HttpTool.httpClientBuilder().uri("http://example.com/"));
+        final PoolingClientConnectionManager connectionManager = (PoolingClientConnectionManager) client.getConnectionManager();
+        client = null;
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                System.gc();
+                assertEquals(registry.size(), 0);
+            }});
+        try {
+            connectionManager.requestConnection(new HttpRoute(new HttpHost("example.com")), null);
+            Asserts.shouldHaveFailedPreviously();
+        } catch (IllegalStateException e) {
+            Asserts.expectedFailureContains(e, "shut down");
+        }
+    }
+
+    @Test
+    public void testDoesNotShareClientWithDifferentSettings() throws Exception {
+        HttpClient client = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll());
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8444/").trustAll()), client);
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.org:8443/").trustAll()), client);
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/")), client);
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll().laxRedirect(true)), client);
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll().connectionTimeout(Duration.ONE_SECOND)), client);
+        assertNotSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll()
+                .credentials(new UsernamePasswordCredentials("user", "pass"))), client);
+
+        HttpClient clientWithCredentials = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll()
+                .credentials(new UsernamePasswordCredentials("user", "pass")));
+        assertSame(registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/").trustAll()
+                .credentials(new UsernamePasswordCredentials("user", "pass"))), clientWithCredentials);
+    }
+
+    @Test
+    public void testDoesNotShareClientForSameUserWithDifferentPassword() throws Exception {
+        HttpClient client1 = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/")
+                .credentials(new UsernamePasswordCredentials("user", "pass1")));
+        HttpClient client2 = registry.getClient(HttpTool.httpClientBuilder().uri("https://example.com:8443/")
+                .credentials(new UsernamePasswordCredentials("user", "pass2")));
+        assertNotSame(client1, client2);
+        assertEquals(registry.size(), 2);
+    }
+
+    @Test
+    public void testDoesNotShareClientWithOwnConnectionManager() throws Exception {
+        BasicClientConnectionManager connectionManager = new BasicClientConnectionManager();
+        HttpClient client = registry.getClient(HttpTool.httpClientBuilder().uri("http://example.com/").clientConnectionManager(connectionManager));
+        assertSame(client.getConnectionManager(), connectionManager);
+        assertEquals(registry.size(), 0);
+    }
+
+    @Test
+    public void testClosedRegistryRefusesClients() throws Exception {
+        registry.getClient(HttpTool.httpClientBuilder().uri("http://example.com/"));
+        registry.close();
+        try {
+            registry.getClient(HttpTool.httpClientBuilder().uri("http://example.com/"));
+            Asserts.shouldHaveFailedPreviously();
+        } catch (IllegalStateException e) {
+            Asserts.expectedFailureContains(e, "closed");
+        }
+    }
+}